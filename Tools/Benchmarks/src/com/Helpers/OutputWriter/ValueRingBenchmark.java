@@ -0,0 +1,200 @@
+package com.Helpers.OutputWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ring the state values recorded by the nodes go through, from a node adding a value to the result
+ * thread handing it to the sink. The sink only counts the values, so the ring is measured without the cost of a
+ * database or file. Each invocation adds a batch of values and waits until the sink has them all, and each
+ * operation is one value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ValueRingBenchmark
+{
+    /**
+     * Number of values added in each invocation.
+     */
+    private static final int VALUES = 4096;
+
+    /**
+     * Most values passed to the sink at once, the same as the WriterThread.
+     */
+    private static final int DRAIN_BATCH = 4096;
+
+    /**
+     * Number of nodes the values are spread over.
+     */
+    private static final int NODES = 1024;
+
+    /**
+     * Sink that only counts the values it's given.
+     */
+    private static class CountingSink implements ResultSink
+    {
+        /**
+         * Number of values given to the sink.
+         */
+        private volatile long count = 0;
+
+        /**
+         * Nothing to get ready.
+         */
+        public void start()
+        {
+        }
+
+        /**
+         * Count a value.
+         */
+        public void add(int iterationNumber, int nodeID, int nodeIndex, int variableID, String variableName,
+                        double value)
+        {
+            count++;
+        }
+
+        /**
+         * Nothing is held back.
+         */
+        public void endOfBatch()
+        {
+        }
+
+        /**
+         * Nothing to release.
+         */
+        public void close()
+        {
+        }
+    }
+
+    /**
+     * Number of values the ring holds.
+     */
+    @Param({"65536", "1024"})
+    public int ringSize;
+
+    /**
+     * How the result thread waits for values.
+     */
+    @Param({"BUSY_SPIN", "YIELDING", "SLEEPING"})
+    public WaitStrategy waitStrategy;
+
+    /**
+     * Ring being measured.
+     */
+    private ValueRing valueRing;
+
+    /**
+     * Sink the ring is drained into.
+     */
+    private CountingSink sink;
+
+    /**
+     * Thread that drains the ring, like the result thread of the WriterThread.
+     */
+    private Thread resultThread;
+
+    /**
+     * Determines if the result thread should stop.
+     */
+    private volatile boolean isClosing = false;
+
+    /**
+     * Number of values added so far.
+     */
+    private long added = 0;
+
+    /**
+     * Start a result thread that drains the ring into a counting sink.
+     */
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        valueRing = new ValueRing(ringSize);
+
+        sink = new CountingSink();
+
+        resultThread = new Thread(this::drain, "ResultWriter");
+
+        resultThread.start();
+    }
+
+    /**
+     * Run method of the result thread, which drains the ring the same way as WriterThread.saveResults.
+     */
+    private void drain()
+    {
+        int attempt = 0;
+
+        while(!isClosing)
+        {
+            int count = valueRing.drain(sink, DRAIN_BATCH);
+
+            if(count == DRAIN_BATCH) continue;
+
+            sink.endOfBatch();
+
+            if(count > 0)
+            {
+                attempt = 0;
+            }
+            else
+            {
+                waitStrategy.idle(attempt++);
+            }
+        }
+    }
+
+    /**
+     * Add a batch of values to the ring, and wait until the sink has them all.
+     */
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void addAndDrain()
+    {
+        for(int i = 0; i < VALUES; i++)
+        {
+            long sequence = added++;
+
+            valueRing.add((int)(sequence / NODES), (int)(sequence % NODES), (int)(sequence % NODES), 0, "x",
+                          sequence);
+        }
+
+        for(int attempt = 0; sink.count < added; attempt++)
+        {
+            WaitStrategy.SLEEPING.idle(attempt);
+        }
+    }
+
+    /**
+     * Stop the result thread.
+     * @throws InterruptedException
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException
+    {
+        isClosing = true;
+
+        resultThread.join();
+    }
+}
@@ -0,0 +1,124 @@
+package com.Helpers.OutputWriter;
+
+import com.Network.BenchmarkNetwork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the queue of write jobs of the WriterThread, from a node adding a line for a file output to the writer
+ * thread writing it. Each invocation adds a batch of lines and waits for the writer to flush them, and each operation
+ * is one line. The file is deleted after every iteration so it doesn't grow for the whole run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class WriterThreadBenchmark
+{
+    /**
+     * Number of lines added in each invocation.
+     */
+    private static final int LINES = 4096;
+
+    /**
+     * Name of the output the lines are written to.
+     */
+    private static final String OUTPUT = "benchmark";
+
+    /**
+     * Line written to the output, about as long as a trace message of a node.
+     */
+    private static final String LINE = "Iteration 42 - Node 17 updated value of X to 0.12345678901234567";
+
+    /**
+     * Directory the output is written to.
+     */
+    private Path outputDirectory;
+
+    /**
+     * Writer thread being measured.
+     */
+    private WriterThread writer;
+
+    /**
+     * Start a writer thread that writes to a temporary directory.
+     * @throws IOException
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        outputDirectory = Files.createTempDirectory("benchmark-output");
+
+        writer = new WriterThread(BenchmarkNetwork.config("result_sink : none",
+                                                          "output_directory : " + outputDirectory,
+                                                          "output_flush_millis : 1000"),
+                                  BenchmarkNetwork.buildRing(16, 2).getTopology());
+
+        // The writer thread never stops on its own
+        writer.setDaemon(true);
+
+        writer.start();
+    }
+
+    /**
+     * Add a batch of lines for a file output, and wait until the writer thread has written and flushed them.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void writeToFile()
+    {
+        for(int i = 0; i < LINES; i++)
+        {
+            writer.writeToFile(OUTPUT, LINE);
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Close and delete the file written in the last iteration.
+     * @throws IOException
+     */
+    @TearDown(Level.Iteration)
+    public void deleteOutput() throws IOException
+    {
+        writer.closeFiles();
+
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(outputDirectory))
+        {
+            for(Path file : files)
+            {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Delete the output directory.
+     * @throws IOException
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        Files.delete(outputDirectory);
+    }
+}
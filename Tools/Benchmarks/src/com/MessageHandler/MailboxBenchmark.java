@@ -0,0 +1,174 @@
+package com.MessageHandler;
+
+import com.GraphLoaders.GraphInput;
+import com.Network.BenchmarkNetwork;
+import com.Network.GraphTopology;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures local delivery of messages, from MessagePasser.sendMessage on the sending threads to Mailbox.take on the
+ * node that receives them. Each operation is one message. The benchmark thread plays the receiving node, and a
+ * number of producer threads, standing in for its neighbors, share the messages of each invocation between them, so
+ * the receiver parks and is unparked as it would be during a run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MailboxBenchmark
+{
+    /**
+     * Number of messages sent in each invocation, shared between the producers.
+     */
+    private static final int MESSAGES = 4096;
+
+    /**
+     * Number of messages each producer sends when it picks up a share of an invocation.
+     */
+    private static final int SHARE = 256;
+
+    /**
+     * ID of the node that receives the messages.
+     */
+    private static final int RECEIVER_ID = 0;
+
+    /**
+     * Number of threads sending messages at once.
+     */
+    @Param({"1", "2", "4"})
+    public int producers;
+
+    /**
+     * Message passer of a one cluster network.
+     */
+    private MessagePasser messagePasser;
+
+    /**
+     * Mailbox of the receiving node.
+     */
+    private Mailbox mailbox;
+
+    /**
+     * Message each producer sends.
+     */
+    private Message message;
+
+    /**
+     * Permits for the shares of messages waiting to be sent.
+     */
+    private Semaphore shares = new Semaphore(0);
+
+    /**
+     * Threads sending the messages.
+     */
+    private Thread[] producerThreads;
+
+    /**
+     * Build the network and start the producers, which wait for shares of messages to send.
+     * @throws IOException
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        GraphInput input = BenchmarkNetwork.buildRing(64, 8);
+
+        GraphTopology topology = input.getTopology();
+
+        messagePasser = new MessagePasser(topology, BenchmarkNetwork.config("result_sink : none"));
+
+        mailbox = messagePasser.getMailbox(topology.getIndex(RECEIVER_ID));
+
+        message = new Message();
+
+        message.setType(MessageType.RESPONSE);
+
+        message.setSenderID(1);
+
+        message.addData("xMinusy", 1.0);
+
+        producerThreads = new Thread[producers];
+
+        for(int i = 0; i < producers; i++)
+        {
+            producerThreads[i] = new Thread(this::produce, "Producer-" + i);
+
+            producerThreads[i].setDaemon(true);
+
+            producerThreads[i].start();
+        }
+    }
+
+    /**
+     * Run method of the producers, which send a share of messages whenever one is available.
+     */
+    private void produce()
+    {
+        try
+        {
+            while(true)
+            {
+                shares.acquire();
+
+                for(int i = 0; i < SHARE; i++)
+                {
+                    messagePasser.sendMessage(RECEIVER_ID, message);
+                }
+            }
+        }
+        catch(InterruptedException ex)
+        {
+            // Interrupted at the end of the trial
+        }
+    }
+
+    /**
+     * Have the producers send MESSAGES messages, and take every one of them out of the mailbox.
+     * @return Last message taken
+     */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public Message sendAndTake()
+    {
+        shares.release(MESSAGES / SHARE);
+
+        Message received = null;
+
+        for(int i = 0; i < MESSAGES; i++)
+        {
+            received = mailbox.take();
+        }
+
+        return received;
+    }
+
+    /**
+     * Stop the producers.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        for(Thread producerThread : producerThreads)
+        {
+            producerThread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.MessageHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding a message like the ones nodes send their neighbors every iteration, which holds the
+ * header fields and one double. MessageCodec is the format messages to other clusters are sent in, and the YAML
+ * string of serializeMessage is only used for debugging, but is measured for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MessageBenchmark
+{
+    /**
+     * Message sent to a neighbor.
+     */
+    private Message message;
+
+    /**
+     * Codec reused by every encode, like the codec of a ClusterConnection.
+     */
+    private MessageCodec codec;
+
+    /**
+     * Message encoded by MessageCodec.
+     */
+    private byte[] encodedMessage;
+
+    /**
+     * Message serialized as YAML.
+     */
+    private String serializedMessage;
+
+    /**
+     * Build the message and its encoded forms.
+     */
+    @Setup
+    public void setup()
+    {
+        Message outgoingMessage = new Message();
+
+        outgoingMessage.setType(MessageType.RESPONSE);
+
+        outgoingMessage.setSenderID(17);
+
+        outgoingMessage.addData("xMinusy", 0.123456789);
+
+        message = outgoingMessage.addressedTo(18, 42);
+
+        codec = new MessageCodec();
+
+        encodedMessage = codec.encode(message);
+
+        serializedMessage = message.serializeMessage();
+    }
+
+    /**
+     * Encode a message into the buffer of the codec.
+     * @return
+     */
+    @Benchmark
+    public ByteBuffer encode()
+    {
+        return codec.encodeToBuffer(message);
+    }
+
+    /**
+     * Decode a message from its bytes.
+     * @return
+     */
+    @Benchmark
+    public Message decode()
+    {
+        return MessageCodec.decode(encodedMessage);
+    }
+
+    /**
+     * Encode a message and decode it again.
+     * @return
+     */
+    @Benchmark
+    public Message encodeAndDecode()
+    {
+        return MessageCodec.decode(codec.encodeToBuffer(message));
+    }
+
+    /**
+     * Serialize a message as YAML.
+     * @return
+     */
+    @Benchmark
+    public String serializeYaml()
+    {
+        return message.serializeMessage();
+    }
+
+    /**
+     * Parse a message from YAML.
+     * @return
+     */
+    @Benchmark
+    public Message parseYaml()
+    {
+        return new Message(serializedMessage);
+    }
+}
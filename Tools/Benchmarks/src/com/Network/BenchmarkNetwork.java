@@ -0,0 +1,76 @@
+package com.Network;
+
+import com.GraphLoaders.GraphInput;
+import com.GraphLoaders.GraphLoader;
+import com.GraphLoaders.LoadOptions;
+import com.Helpers.ConfigReader;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Builds the networks and configuration the benchmarks run on. Every network is a ring lattice, where each node is
+ * connected to the nodes up to degree/2 positions before and after it, so every node has exactly degree neighbors
+ * and the same number of messages is sent every iteration of every run. Configuration is written to a file of its
+ * own instead of being read from config.yml, so the results don't depend on the directory the benchmarks run in.
+ */
+public class BenchmarkNetwork
+{
+    /**
+     * Build a ring lattice in one cluster, with the state variables of CustomNode set on every node.
+     * @param nodeCount
+     * @param degree Number of neighbors of each node, an even number below nodeCount
+     * @return GraphInput of the network
+     * @throws IOException
+     */
+    public static GraphInput buildRing(int nodeCount, int degree) throws IOException
+    {
+        Path edgeList = Files.createTempFile("benchmark-ring", ".txt");
+
+        try
+        {
+            try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(edgeList)))
+            {
+                for(int node = 0; node < nodeCount; node++)
+                {
+                    for(int offset = 1; offset <= degree / 2; offset++)
+                    {
+                        out.println(node + " " + (node + offset) % nodeCount);
+                    }
+                }
+            }
+
+            return GraphLoader.load(edgeList.toString(),
+                                    LoadOptions.parse(new String[] {"--init", "x=1,y=0,t=0"}, 0));
+        }
+        finally
+        {
+            Files.delete(edgeList);
+        }
+    }
+
+    /**
+     * Read configuration values from the given lines, which follow the format of config.yml. Values that aren't
+     * given keep their defaults.
+     * @param lines
+     * @return Configuration values
+     * @throws IOException
+     */
+    public static ConfigReader config(String... lines) throws IOException
+    {
+        Path configFile = Files.createTempFile("benchmark-config", ".yml");
+
+        try
+        {
+            Files.write(configFile, String.join(System.lineSeparator(), lines).getBytes());
+
+            return new ConfigReader(configFile.toString());
+        }
+        finally
+        {
+            Files.delete(configFile);
+        }
+    }
+}
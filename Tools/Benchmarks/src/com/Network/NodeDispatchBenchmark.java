@@ -0,0 +1,178 @@
+package com.Network;
+
+import com.GraphLoaders.GraphInput;
+import com.Helpers.ConfigReader;
+import com.Helpers.OutputWriter.WriterThread;
+import com.MessageHandler.Message;
+import com.MessageHandler.MessagePasser;
+import com.MessageHandler.MessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast nodes take the messages of an iteration out of their mailboxes, sort them into the window of
+ * iterations and hand them to the algorithm, which sends the messages of the next iteration. Each invocation runs one
+ * iteration of every node on the benchmark thread, the way a SuperstepEngine worker does, and each operation is one
+ * message. Both ways of receiving messages are measured - computeIteration with CustomNode, and processResponse with
+ * a node that averages the messages of its neighbors one at a time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class NodeDispatchBenchmark
+{
+    /**
+     * Number of nodes in the network.
+     */
+    private static final int NODES = 1024;
+
+    /**
+     * Number of neighbors of each node.
+     */
+    private static final int DEGREE = 8;
+
+    /**
+     * Node that receives the values of its neighbors one message at a time in processResponse, like the algorithms
+     * in GraphInputs/Algorithms.
+     */
+    private static class ProcessResponseNode extends GenericNode
+    {
+        /**
+         * Sum of the values received in the current iteration.
+         */
+        private double sum = 0;
+
+        /**
+         * Number of values received in the current iteration.
+         */
+        private int responses = 0;
+
+        /**
+         * Primary constructor.
+         */
+        ProcessResponseNode(int nodeIndex, GraphTopology topology, MessagePasser messagePasser, WriterThread writer,
+                            StateStore state, int iterationMax)
+        {
+            super(nodeIndex, topology, messagePasser, writer, state, iterationMax);
+        }
+
+        /**
+         * Send x to every neighbor.
+         */
+        @Override
+        protected void startNode()
+        {
+            sendValueToNeighbors("x", getDouble("x"));
+        }
+
+        /**
+         * Add up the values of the neighbors, and once every one has arrived, set x to their average and send it.
+         * @param incomingMessage
+         */
+        @Override
+        protected void processResponse(Message incomingMessage)
+        {
+            sum += incomingMessage.getDouble("x");
+
+            if(++responses < neighbors.size()) return;
+
+            double average = sum / responses;
+
+            sum = 0;
+
+            responses = 0;
+
+            setDouble("x", average);
+
+            goToNextIteration();
+
+            sendValueToNeighbors("x", average);
+        }
+    }
+
+    /**
+     * How the nodes receive the values of their neighbors.
+     */
+    @Param({"computeIteration", "processResponse"})
+    public String receiveWith;
+
+    /**
+     * Nodes of the network, in the order they're run.
+     */
+    private List<GenericNode> nodes = new ArrayList<>();
+
+    /**
+     * Build the network and start every node, which sends the messages of the first iteration.
+     * @throws IOException
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        GraphInput input = BenchmarkNetwork.buildRing(NODES, DEGREE);
+
+        GraphTopology topology = input.getTopology();
+
+        ConfigReader configValues = BenchmarkNetwork.config("result_sink : none", "trace_level : none");
+
+        MessagePasser messagePasser = new MessagePasser(topology, configValues);
+
+        // Without a result sink the writer only queues console output, and the nodes never finish, so it's not
+        // started
+        WriterThread writer = new WriterThread(configValues, topology);
+
+        StateStore state = new StateStore(0, NODES, false);
+
+        state.load(input);
+
+        Message startMessage = new Message();
+
+        startMessage.setType(MessageType.START);
+
+        startMessage.setIterationNumber(0);
+
+        for(int index = 0; index < NODES; index++)
+        {
+            GenericNode node = receiveWith.equals("computeIteration") ?
+                    new CustomNode(index, topology, messagePasser, writer, state, Integer.MAX_VALUE) :
+                    new ProcessResponseNode(index, topology, messagePasser, writer, state, Integer.MAX_VALUE);
+
+            node.sendMessage(node.getSelfID(), startMessage);
+
+            nodes.add(node);
+        }
+
+        runIteration();
+    }
+
+    /**
+     * Run one iteration of every node.
+     */
+    @Benchmark
+    @OperationsPerInvocation(NODES * DEGREE)
+    public void runIteration()
+    {
+        for(GenericNode node : nodes)
+        {
+            node.runIteration();
+        }
+    }
+}
@@ -1,9 +1,15 @@
+import com.GraphLoaders.BinaryGraphFormat;
+import com.GraphLoaders.GraphInput;
+import com.Helpers.SocketInfo;
+import com.Network.GraphTopology;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.PrintWriter;
 import java.lang.Exception;
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,22 +35,46 @@ public class InputGenerator
     private int numberOfPartitions;
 
     /**
-     * Number of groups of nodes that are connected to each other.
+     * Number of clusters the nodes are split between, by ranges of node IDs.
      */
-    // TODO: Need to support generating multiple clusters
     private int numberOfClusters = 1;
 
+    /**
+     * Determines if every node is also added to the neighbors of the nodes it lists, so each node hears back from
+     * every neighbor it sends to.
+     */
+    private boolean isUndirected = false;
+
+    /**
+     * Port of the first cluster. Each following cluster listens on the next port.
+     */
+    private static final int BASE_PORT = 2005;
+
     /**
      * State variables each node should hold.
      */
     private String[] stateVariables;
 
     /**
-     * Primary constructor.
+     * Constructor for a network that runs in one cluster.
      * @param numberOfNodes
      * @param numberOfNeighbors
      */
     public InputGenerator(int numberOfNodes, int numberOfNeighbors, int numberOfPartitions, String[] stateVariables)
+    {
+        this(numberOfNodes, numberOfNeighbors, numberOfPartitions, 1, stateVariables);
+    }
+
+    /**
+     * Primary constructor.
+     * @param numberOfNodes
+     * @param numberOfNeighbors
+     * @param numberOfPartitions
+     * @param numberOfClusters Number of clusters the nodes are split between, by ranges of node IDs
+     * @param stateVariables
+     */
+    public InputGenerator(int numberOfNodes, int numberOfNeighbors, int numberOfPartitions, int numberOfClusters,
+                          String[] stateVariables)
     {
         this.numberOfNodes = numberOfNodes;
 
@@ -52,12 +82,31 @@ public class InputGenerator
 
         this.numberOfPartitions = numberOfPartitions;
 
-        // TODO: Default to 1 for now
-        this.numberOfClusters = 1;
+        this.numberOfClusters = numberOfClusters;
 
         this.stateVariables = stateVariables;
     }
 
+    /**
+     * Set whether every node is also added to the neighbors of the nodes it lists. Nodes that wait for a value from
+     * every neighbor each iteration, like CustomNode, need this unless every node lists all of its partition.
+     * @param isUndirected
+     */
+    public void setUndirected(boolean isUndirected)
+    {
+        this.isUndirected = isUndirected;
+    }
+
+    /**
+     * Finds the cluster a node runs in.
+     * @param nodeID
+     * @return Position of the cluster
+     */
+    private int getClusterOfNode(int nodeID)
+    {
+        return (int)((long)nodeID * numberOfClusters / numberOfNodes);
+    }
+
     /**
      * Generates the neighbors of this node.
      * @param nodeID
@@ -108,6 +157,49 @@ public class InputGenerator
         return neighbors;
     }
 
+    /**
+     * Generates the neighbors of every node. When the graph is undirected, each node is added to the neighbors of
+     * the nodes it lists that don't list it back.
+     * @return List of neighbors of each node, by node ID
+     */
+    private List[] generateNeighborLists()
+    {
+        List[] neighborLists = new List[numberOfNodes];
+
+        for(int currentNodeID = 0; currentNodeID < numberOfNodes; currentNodeID++)
+        {
+            neighborLists[currentNodeID] = generateNeighborsForNode(currentNodeID);
+        }
+
+        if(!isUndirected) return neighborLists;
+
+        List[] reverseNeighbors = new List[numberOfNodes];
+
+        for(int currentNodeID = 0; currentNodeID < numberOfNodes; currentNodeID++)
+        {
+            for(Object neighbor : neighborLists[currentNodeID])
+            {
+                int neighborID = (Integer)neighbor;
+
+                if(neighborLists[neighborID].contains(currentNodeID)) continue;
+
+                if(reverseNeighbors[neighborID] == null) reverseNeighbors[neighborID] = new ArrayList();
+
+                reverseNeighbors[neighborID].add(currentNodeID);
+            }
+        }
+
+        for(int currentNodeID = 0; currentNodeID < numberOfNodes; currentNodeID++)
+        {
+            if(reverseNeighbors[currentNodeID] != null)
+            {
+                neighborLists[currentNodeID].addAll(reverseNeighbors[currentNodeID]);
+            }
+        }
+
+        return neighborLists;
+    }
+
     /**
      * Generates the state values of this node.
      * @param nodeID
@@ -126,17 +218,21 @@ public class InputGenerator
     }
 
     /**
-     * Generates the list of nodes with the given options
+     * Generates the list of nodes in a cluster with the given options
+     * @param clusterID Position of the cluster
+     * @param neighborLists List of neighbors of each node
      */
-    private Map generateNodeList()
+    private Map generateNodeList(int clusterID, List[] neighborLists)
     {
         Map nodeList = new HashMap();
 
         for(int currentNodeID = 0; currentNodeID < numberOfNodes; currentNodeID++)
         {
+            if(getClusterOfNode(currentNodeID) != clusterID) continue;
+
             Map currentNode = new HashMap();
 
-            List currentNeighbors = generateNeighborsForNode(currentNodeID);
+            List currentNeighbors = neighborLists[currentNodeID];
             currentNode.put("neighbors", currentNeighbors);
 
             Map currentData = generateDataForNode(currentNodeID);
@@ -155,16 +251,17 @@ public class InputGenerator
     {
         Map clusterList = new HashMap();
 
+        List[] neighborLists = generateNeighborLists();
+
         for(int currentClusterID = 0; currentClusterID < numberOfClusters; currentClusterID++)
         {
             Map currentCluster = new HashMap();
 
-            // TODO: Currently only supports generating 1 cluster
-            currentCluster.put("isSelfCluster", true);
+            currentCluster.put("isSelfCluster", currentClusterID == 0);
             currentCluster.put("ip", "localhost");
-            currentCluster.put("port", 2005);
+            currentCluster.put("port", BASE_PORT + currentClusterID);
 
-            Map currentNodeList = generateNodeList();
+            Map currentNodeList = generateNodeList(currentClusterID, neighborLists);
             currentCluster.put("nodeList", currentNodeList);
 
             clusterList.put("Cluster" + currentClusterID, currentCluster);
@@ -177,6 +274,15 @@ public class InputGenerator
      * Generates an input file with the given options.
      */
     public void generateInput()
+    {
+        generateInput("Tools/InputGenerator/GraphInput.yml");
+    }
+
+    /**
+     * Generates an input file with the given options, at the given path.
+     * @param outputFile
+     */
+    public void generateInput(String outputFile)
     {
         Map clusterList = generateClusterList();
 
@@ -188,7 +294,7 @@ public class InputGenerator
 
         try
         {
-            PrintWriter fileOut = new PrintWriter("Tools/InputGenerator/GraphInput.yml");
+            PrintWriter fileOut = new PrintWriter(outputFile);
 
             fileOut.println(yaml.dump(clusterList));
 
@@ -199,4 +305,92 @@ public class InputGenerator
             ex.printStackTrace();
         }
     }
+
+    /**
+     * Generates a binary graph file with the given options. The topology is built directly in arrays, so large
+     * inputs never have to be held as YAML.
+     */
+    public void generateBinaryInput()
+    {
+        generateBinaryInput("Tools/InputGenerator/GraphInput" + BinaryGraphFormat.EXTENSION);
+    }
+
+    /**
+     * Generates a binary graph file with the given options, at the given path.
+     * @param outputFile
+     */
+    public void generateBinaryInput(String outputFile)
+    {
+        int[] nodeIDs = new int[numberOfNodes];
+
+        int[] offsets = new int[numberOfNodes + 1];
+
+        int[] targets = new int[numberOfNodes * numberOfNeighbors];
+
+        int edgeCount = 0;
+
+        List[] neighborLists = generateNeighborLists();
+
+        for(int currentNodeID = 0; currentNodeID < numberOfNodes; currentNodeID++)
+        {
+            nodeIDs[currentNodeID] = currentNodeID;
+
+            offsets[currentNodeID] = edgeCount;
+
+            for(Object neighbor : neighborLists[currentNodeID])
+            {
+                if(edgeCount == targets.length) targets = Arrays.copyOf(targets, targets.length * 2 + 1);
+
+                targets[edgeCount++] = (Integer)neighbor;
+            }
+        }
+
+        offsets[numberOfNodes] = edgeCount;
+
+        String[] clusterIDs = new String[numberOfClusters];
+
+        SocketInfo[] clusterSockets = new SocketInfo[numberOfClusters];
+
+        int[] clusterStarts = new int[numberOfClusters + 1];
+
+        for(int currentClusterID = 0; currentClusterID < numberOfClusters; currentClusterID++)
+        {
+            clusterIDs[currentClusterID] = "Cluster" + currentClusterID;
+
+            clusterSockets[currentClusterID] = new SocketInfo("localhost", BASE_PORT + currentClusterID);
+
+            // Node IDs are their indexes, so each cluster starts at the first node getClusterOfNode puts in it
+            clusterStarts[currentClusterID] = (int)(((long)currentClusterID * numberOfNodes + numberOfClusters - 1) /
+                                                    numberOfClusters);
+        }
+
+        clusterStarts[numberOfClusters] = numberOfNodes;
+
+        GraphTopology topology = new GraphTopology(clusterIDs, clusterSockets, 0, clusterStarts, nodeIDs, offsets,
+                                                   Arrays.copyOf(targets, edgeCount));
+
+        DoubleBuffer[] initialValues = new DoubleBuffer[stateVariables.length];
+
+        for(int variable = 0; variable < stateVariables.length; variable++)
+        {
+            double[] column = new double[numberOfNodes];
+
+            for(int currentNodeID = 0; currentNodeID < numberOfNodes; currentNodeID++)
+            {
+                column[currentNodeID] = NodeDataGenerator.calculateInitialValue(stateVariables[variable],
+                                                                                currentNodeID);
+            }
+
+            initialValues[variable] = DoubleBuffer.wrap(column);
+        }
+
+        try
+        {
+            BinaryGraphFormat.write(new GraphInput(topology, stateVariables, initialValues), outputFile);
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+        }
+    }
 }
@@ -10,11 +10,21 @@ public class Main
 
         int numberOfNeighbors = Integer.parseInt(args[2]);
 
-        String[] stateVariables = Arrays.copyOfRange(args, 3, args.length);
+        // Optional --binary argument at the end writes a binary graph file instead of YAML
+        boolean isBinary = args[args.length - 1].equals("--binary");
+
+        String[] stateVariables = Arrays.copyOfRange(args, 3, isBinary ? args.length - 1 : args.length);
 
         InputGenerator generator = new InputGenerator(numberOfNodes, numberOfNeighbors,
                                                         numberOfPartitions, stateVariables);
 
-        generator.generateInput();
+        if(isBinary)
+        {
+            generator.generateBinaryInput();
+        }
+        else
+        {
+            generator.generateInput();
+        }
     }
 }
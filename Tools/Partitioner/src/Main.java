@@ -0,0 +1,85 @@
+import com.GraphLoaders.GraphInput;
+import com.GraphLoaders.GraphLoader;
+import com.GraphLoaders.LoadOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Main
+{
+    public static void main(String[] args)
+    {
+        if(args.length < 3)
+        {
+            System.out.println("Need input file, number of clusters and the YAML file to write, optionally followed " +
+                                "by --imbalance, --passes, --assignment-out and the options used to load edge lists.");
+
+            System.exit(1);
+        }
+
+        String inputFile = args[0];
+
+        int numberOfClusters = Integer.parseInt(args[1]);
+
+        String outputFile = args[2];
+
+        double imbalance = 0.03;
+
+        int numberOfPasses = 20;
+
+        String assignmentFile = null;
+
+        // Options of the partitioner are taken out, the rest are options for loading the input
+        List<String> loadArgs = new ArrayList<>();
+
+        for(int i = 3; i < args.length; i++)
+        {
+            switch(args[i])
+            {
+                case "--imbalance":
+                    imbalance = Double.parseDouble(args[++i]);
+                    break;
+
+                case "--passes":
+                    numberOfPasses = Integer.parseInt(args[++i]);
+                    break;
+
+                case "--assignment-out":
+                    assignmentFile = args[++i];
+                    break;
+
+                default:
+                    loadArgs.add(args[i]);
+            }
+        }
+
+        try
+        {
+            LoadOptions options = LoadOptions.parse(loadArgs.toArray(new String[0]), 0);
+
+            GraphInput input = GraphLoader.load(inputFile, options);
+
+            long startTime = System.nanoTime();
+
+            Partitioner partitioner = new Partitioner(input, numberOfClusters, imbalance, numberOfPasses);
+
+            partitioner.partition();
+
+            System.out.println(String.format("Partitioned %d nodes into %d clusters in %.3f seconds",
+                                             input.getTopology().getNodeCount(), numberOfClusters,
+                                             (System.nanoTime() - startTime) / 1e9));
+
+            partitioner.printReport();
+
+            partitioner.writeYAML(outputFile, options.getHost(), options.getBasePort());
+
+            if(assignmentFile != null) partitioner.writeAssignment(assignmentFile);
+        }
+        catch(Exception ex)
+        {
+            ex.printStackTrace();
+
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,587 @@
+import com.GraphLoaders.GraphInput;
+import com.Network.GraphTopology;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Class to split the nodes of a network into balanced clusters that cut as few edges as possible, since every edge
+ * between two clusters is a message sent over the network each iteration. The nodes are first dealt out in
+ * breadth-first order, so each cluster starts out as a connected region of the graph, and then refined with label
+ * propagation: each node in turn moves to the cluster most of its neighbors are in, as long as that doesn't take
+ * either cluster outside the allowed imbalance.
+ */
+public class Partitioner
+{
+    /**
+     * Seed of the order nodes are visited in, so the same input always gives the same partition.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Network being partitioned.
+     */
+    private GraphInput input;
+
+    /**
+     * Structure of the network being partitioned.
+     */
+    private GraphTopology topology;
+
+    /**
+     * Number of clusters to split the nodes into.
+     */
+    private int numberOfClusters;
+
+    /**
+     * Fraction a cluster can be above or below an even share of the nodes.
+     */
+    private double imbalance;
+
+    /**
+     * Most refinement passes made over the nodes, stopping sooner if no node moves.
+     */
+    private int numberOfPasses;
+
+    /**
+     * Cluster of each node, by the node's index in the topology.
+     */
+    private int[] clusterOfNode;
+
+    /**
+     * Number of nodes in each cluster.
+     */
+    private int[] clusterLoads;
+
+    /**
+     * Primary constructor.
+     * @param input Network to partition
+     * @param numberOfClusters
+     * @param imbalance Fraction a cluster can be above or below an even share of the nodes
+     * @param numberOfPasses Most refinement passes made over the nodes
+     */
+    public Partitioner(GraphInput input, int numberOfClusters, double imbalance, int numberOfPasses)
+    {
+        this.input = input;
+
+        this.topology = input.getTopology();
+
+        this.numberOfClusters = numberOfClusters;
+
+        this.imbalance = imbalance;
+
+        this.numberOfPasses = numberOfPasses;
+    }
+
+    /**
+     * Split the nodes into clusters. When the input already has the same number of clusters, its clusters are
+     * rebalanced and refined as well, and whichever partition cuts fewer edges is kept.
+     */
+    public void partition()
+    {
+        int nodeCount = topology.getNodeCount();
+
+        // Deal the nodes out in breadth-first order, an even share to each cluster
+        int[] order = breadthFirstOrder();
+
+        int[] clusters = new int[nodeCount];
+
+        for(int position = 0; position < nodeCount; position++)
+        {
+            clusters[order[position]] = (int)((long)position * numberOfClusters / nodeCount);
+        }
+
+        refine(clusters);
+
+        clusterOfNode = clusters;
+
+        if(topology.getClusterCount() == numberOfClusters)
+        {
+            int[] inputClusters = getInputClusters();
+
+            // Refining never moves a node out of a cluster that is too small, so the loads are fixed first
+            rebalance(inputClusters);
+
+            refine(inputClusters);
+
+            if(countCutEdges(inputClusters) < countCutEdges(clusterOfNode)) clusterOfNode = inputClusters;
+        }
+
+        clusterLoads = new int[numberOfClusters];
+
+        for(int cluster : clusterOfNode)
+        {
+            clusterLoads[cluster]++;
+        }
+    }
+
+    /**
+     * Improve an assignment of nodes to clusters with label propagation, moving each node in turn to the cluster most
+     * of its neighbors are in while keeping every cluster within the allowed imbalance.
+     * @param clusters Cluster of each node, updated in place
+     */
+    private void refine(int[] clusters)
+    {
+        int nodeCount = clusters.length;
+
+        int[] loads = new int[numberOfClusters];
+
+        for(int cluster : clusters)
+        {
+            loads[cluster]++;
+        }
+
+        int maxLoad = getMaxLoad(nodeCount);
+
+        int minLoad = getMinLoad(nodeCount);
+
+        int[] neighborCounts = new int[numberOfClusters];
+
+        int[] touchedClusters = new int[numberOfClusters];
+
+        int[] order = new int[nodeCount];
+
+        for(int index = 0; index < nodeCount; index++)
+        {
+            order[index] = index;
+        }
+
+        Random random = new Random(SEED);
+
+        for(int pass = 0; pass < numberOfPasses; pass++)
+        {
+            shuffle(order, random);
+
+            int movedNodes = 0;
+
+            for(int index : order)
+            {
+                int currentCluster = clusters[index];
+
+                if(loads[currentCluster] <= minLoad) continue;
+
+                // Count the neighbors of the node in each cluster
+                int touchedCount = 0;
+
+                for(int edge = topology.getFirstEdge(index); edge < topology.getEndEdge(index); edge++)
+                {
+                    int cluster = clusters[topology.getTarget(edge)];
+
+                    if(neighborCounts[cluster]++ == 0) touchedClusters[touchedCount++] = cluster;
+                }
+
+                int bestCluster = currentCluster;
+
+                for(int i = 0; i < touchedCount; i++)
+                {
+                    int cluster = touchedClusters[i];
+
+                    if(neighborCounts[cluster] > neighborCounts[bestCluster] && loads[cluster] < maxLoad)
+                    {
+                        bestCluster = cluster;
+                    }
+                }
+
+                for(int i = 0; i < touchedCount; i++)
+                {
+                    neighborCounts[touchedClusters[i]] = 0;
+                }
+
+                if(bestCluster != currentCluster)
+                {
+                    clusters[index] = bestCluster;
+
+                    loads[currentCluster]--;
+
+                    loads[bestCluster]++;
+
+                    movedNodes++;
+                }
+            }
+
+            if(movedNodes == 0) break;
+        }
+    }
+
+    /**
+     * Get the most nodes a cluster can hold within the allowed imbalance.
+     * @param nodeCount
+     * @return
+     */
+    private int getMaxLoad(int nodeCount)
+    {
+        return (int)Math.ceil((double)nodeCount / numberOfClusters * (1 + imbalance));
+    }
+
+    /**
+     * Get the fewest nodes a cluster can hold within the allowed imbalance.
+     * @param nodeCount
+     * @return
+     */
+    private int getMinLoad(int nodeCount)
+    {
+        return (int)Math.floor((double)nodeCount / numberOfClusters * (1 - imbalance));
+    }
+
+    /**
+     * Move nodes between clusters until every cluster is within the allowed imbalance. Each round moves nodes from
+     * the largest cluster to the smallest, picking the nodes with the most neighbors in the smallest cluster and the
+     * fewest in the largest, so the moves cut as few extra edges as possible. An assignment that is already balanced
+     * is left as it is.
+     * @param clusters Cluster of each node, updated in place
+     */
+    private void rebalance(int[] clusters)
+    {
+        int nodeCount = clusters.length;
+
+        int maxLoad = getMaxLoad(nodeCount);
+
+        int minLoad = getMinLoad(nodeCount);
+
+        int[] loads = new int[numberOfClusters];
+
+        for(int cluster : clusters)
+        {
+            loads[cluster]++;
+        }
+
+        while(true)
+        {
+            int largest = 0;
+
+            int smallest = 0;
+
+            for(int cluster = 1; cluster < numberOfClusters; cluster++)
+            {
+                if(loads[cluster] > loads[largest]) largest = cluster;
+
+                if(loads[cluster] < loads[smallest]) smallest = cluster;
+            }
+
+            // Every move takes the largest cluster closer to maxLoad or the smallest closer to minLoad, without
+            // pushing either one past the other bound
+            int moves;
+
+            if(loads[largest] > maxLoad)
+            {
+                moves = Math.min(loads[largest] - maxLoad, maxLoad - loads[smallest]);
+            }
+            else if(loads[smallest] < minLoad)
+            {
+                moves = Math.min(minLoad - loads[smallest], loads[largest] - minLoad);
+            }
+            else
+            {
+                break;
+            }
+
+            // Sort the nodes of the largest cluster by how many more of their neighbors are in the smallest cluster,
+            // most first, and by index to break ties
+            long[] keys = new long[loads[largest]];
+
+            int keyCount = 0;
+
+            for(int index = 0; index < nodeCount; index++)
+            {
+                if(clusters[index] != largest) continue;
+
+                int gain = 0;
+
+                for(int edge = topology.getFirstEdge(index); edge < topology.getEndEdge(index); edge++)
+                {
+                    int cluster = clusters[topology.getTarget(edge)];
+
+                    if(cluster == smallest) gain++;
+
+                    else if(cluster == largest) gain--;
+                }
+
+                keys[keyCount++] = ((long)-gain << 32) | index;
+            }
+
+            Arrays.sort(keys);
+
+            for(int i = 0; i < moves; i++)
+            {
+                clusters[(int)keys[i]] = smallest;
+            }
+
+            loads[largest] -= moves;
+
+            loads[smallest] += moves;
+        }
+    }
+
+    /**
+     * Get the cluster of each node in the input file.
+     * @return Position of the cluster of each node, by the node's index
+     */
+    private int[] getInputClusters()
+    {
+        int[] clusters = new int[topology.getNodeCount()];
+
+        for(int index = 0; index < clusters.length; index++)
+        {
+            clusters[index] = topology.getClusterOf(index);
+        }
+
+        return clusters;
+    }
+
+    /**
+     * Count the edges between nodes in different clusters.
+     * @param clusters Cluster of each node
+     * @return
+     */
+    private long countCutEdges(int[] clusters)
+    {
+        long cutEdges = 0;
+
+        for(int index = 0; index < clusters.length; index++)
+        {
+            for(int edge = topology.getFirstEdge(index); edge < topology.getEndEdge(index); edge++)
+            {
+                if(clusters[topology.getTarget(edge)] != clusters[index]) cutEdges++;
+            }
+        }
+
+        return cutEdges;
+    }
+
+    /**
+     * Order the nodes breadth first, starting a new search from the lowest index not yet reached whenever the
+     * graph is disconnected.
+     * @return Indexes of the nodes in the order they were reached
+     */
+    private int[] breadthFirstOrder()
+    {
+        int nodeCount = topology.getNodeCount();
+
+        int[] order = new int[nodeCount];
+
+        boolean[] isReached = new boolean[nodeCount];
+
+        int head = 0;
+
+        int tail = 0;
+
+        for(int root = 0; root < nodeCount; root++)
+        {
+            if(isReached[root]) continue;
+
+            isReached[root] = true;
+
+            order[tail++] = root;
+
+            while(head < tail)
+            {
+                int index = order[head++];
+
+                for(int edge = topology.getFirstEdge(index); edge < topology.getEndEdge(index); edge++)
+                {
+                    int neighbor = topology.getTarget(edge);
+
+                    if(!isReached[neighbor])
+                    {
+                        isReached[neighbor] = true;
+
+                        order[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+
+        return order;
+    }
+
+    /**
+     * Shuffle an array in place.
+     * @param values
+     * @param random
+     */
+    private static void shuffle(int[] values, Random random)
+    {
+        for(int i = values.length - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+
+            int swap = values[i];
+
+            values[i] = values[j];
+
+            values[j] = swap;
+        }
+    }
+
+    /**
+     * Print the fraction of edges cut and the load of each cluster, for both the clusters of the input and the new
+     * partition.
+     */
+    public void printReport()
+    {
+        System.out.println("Input clusters:");
+
+        printReport(getInputClusters(), topology.getClusterCount());
+
+        System.out.println("Partitioned clusters:");
+
+        printReport(clusterOfNode, numberOfClusters);
+    }
+
+    /**
+     * Print the fraction of edges cut and the load of each cluster for one assignment of nodes to clusters.
+     * @param clusters Cluster of each node
+     * @param clusterCount
+     */
+    private void printReport(int[] clusters, int clusterCount)
+    {
+        int[] nodes = new int[clusterCount];
+
+        long[] edges = new long[clusterCount];
+
+        long[] cutEdges = new long[clusterCount];
+
+        long totalCutEdges = 0;
+
+        for(int index = 0; index < clusters.length; index++)
+        {
+            int cluster = clusters[index];
+
+            nodes[cluster]++;
+
+            for(int edge = topology.getFirstEdge(index); edge < topology.getEndEdge(index); edge++)
+            {
+                edges[cluster]++;
+
+                if(clusters[topology.getTarget(edge)] != cluster)
+                {
+                    cutEdges[cluster]++;
+
+                    totalCutEdges++;
+                }
+            }
+        }
+
+        System.out.println(String.format("  Cut edges: %d of %d (%.2f%%)", totalCutEdges, topology.getEdgeCount(),
+                                         100.0 * totalCutEdges / Math.max(1, topology.getEdgeCount())));
+
+        for(int cluster = 0; cluster < clusterCount; cluster++)
+        {
+            System.out.println(String.format("  Cluster%d: %d nodes, %d edges, %d cut", cluster, nodes[cluster],
+                                             edges[cluster], cutEdges[cluster]));
+        }
+    }
+
+    /**
+     * Write the partitioned network as a YAML input file, with the nodes of each cluster listed under it. The file is
+     * written directly instead of through a YAML library so large networks don't have to be built as maps first.
+     * @param outputFile
+     * @param host Host every cluster runs on
+     * @param basePort Port of the first cluster, each following cluster listens on the next port
+     * @throws IOException
+     */
+    public void writeYAML(String outputFile, String host, int basePort) throws IOException
+    {
+        int[] indexesByCluster = sortIndexesByCluster();
+
+        try(PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(outputFile), 1 << 20)))
+        {
+            int position = 0;
+
+            for(int cluster = 0; cluster < numberOfClusters; cluster++)
+            {
+                out.println("Cluster" + cluster + ":");
+                out.println("  isSelfCluster: " + (cluster == 0));
+                out.println("  ip: " + host);
+                out.println("  port: " + (basePort + cluster));
+                out.println("  nodeList:");
+
+                for(int i = 0; i < clusterLoads[cluster]; i++)
+                {
+                    writeNode(out, indexesByCluster[position++]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write one node of the YAML input file.
+     * @param out
+     * @param index Index of the node in the topology
+     */
+    private void writeNode(PrintWriter out, int index)
+    {
+        out.println("    " + topology.getNodeID(index) + ":");
+
+        StringBuilder neighbors = new StringBuilder("      neighbors: [");
+
+        for(int edge = topology.getFirstEdge(index); edge < topology.getEndEdge(index); edge++)
+        {
+            if(edge > topology.getFirstEdge(index)) neighbors.append(',');
+
+            neighbors.append(topology.getNodeID(topology.getTarget(edge)));
+        }
+
+        out.println(neighbors.append(']'));
+
+        out.println("      data:");
+
+        for(int variable = 0; variable < input.getVariableCount(); variable++)
+        {
+            DoubleBuffer values = input.getInitialValues(variable);
+
+            if(!Double.isNaN(values.get(index)))
+            {
+                out.println("        " + input.getVariableName(variable) + ": " + values.get(index));
+            }
+        }
+    }
+
+    /**
+     * Write the cluster of each node as a file that can be passed to --assignment when loading an edge list.
+     * @param outputFile
+     * @throws IOException
+     */
+    public void writeAssignment(String outputFile) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(outputFile), 1 << 20)))
+        {
+            for(int index = 0; index < clusterOfNode.length; index++)
+            {
+                out.println(topology.getNodeID(index) + " Cluster" + clusterOfNode[index]);
+            }
+        }
+    }
+
+    /**
+     * Sort the indexes of the nodes by cluster, keeping them ordered by node ID within each cluster.
+     * @return Indexes of the nodes of the first cluster, followed by those of the second cluster, and so on
+     */
+    private int[] sortIndexesByCluster()
+    {
+        int nodeCount = topology.getNodeCount();
+
+        long[] keys = new long[nodeCount];
+
+        for(int index = 0; index < nodeCount; index++)
+        {
+            keys[index] = ((long)clusterOfNode[index] << 32) | (topology.getNodeID(index) & 0xFFFFFFFFL);
+        }
+
+        Arrays.sort(keys);
+
+        int[] indexes = new int[nodeCount];
+
+        for(int position = 0; position < nodeCount; position++)
+        {
+            indexes[position] = topology.getIndex((int)keys[position]);
+        }
+
+        return indexes;
+    }
+}
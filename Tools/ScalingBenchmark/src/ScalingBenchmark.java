@@ -0,0 +1,305 @@
+import com.Coordinator.Launcher;
+import com.GraphLoaders.BinaryGraphFormat;
+import com.GraphLoaders.LoadOptions;
+import com.Network.RunMetrics;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Measures how the simulator scales. Graphs are generated by the InputGenerator for every combination of the given
+ * node counts, neighbor counts, partitions and cluster counts, and each one is run in this process through the
+ * Launcher, with every cluster on its own thread. The throughput, iteration latency, peak heap and peak thread count
+ * of every run are written to a CSV and a JSON file. The runs use config.yml like any other run, so the engine and
+ * result sink being measured are set there.
+ */
+public class ScalingBenchmark
+{
+    /**
+     * State variables CustomNode reads and sets.
+     */
+    private static final String[] STATE_VARIABLES = {"x", "y", "t"};
+
+    /**
+     * Number of bytes in a megabyte.
+     */
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    /**
+     * Options of the benchmark and their defaults, by name.
+     */
+    private Map<String,String> options = new LinkedHashMap<>();
+
+    /**
+     * Results of the measured runs.
+     */
+    private ScalingReport report = new ScalingReport();
+
+    /**
+     * Primary constructor that reads the options given on the command line, in the form --name value.
+     * @param args
+     * @throws IllegalArgumentException If an option isn't recognized or is missing its value
+     */
+    public ScalingBenchmark(String[] args)
+    {
+        options.put("--nodes", "1000,10000");
+        options.put("--neighbors", "4");
+        options.put("--partitions", "1");
+        options.put("--clusters", "1,2");
+        options.put("--iterations", "100");
+        options.put("--warmup", "1");
+        options.put("--repeat", "3");
+        options.put("--output", "scaling-results");
+
+        for(int i = 0; i < args.length; i += 2)
+        {
+            if(!options.containsKey(args[i]))
+            {
+                throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+            }
+
+            if(i + 1 >= args.length)
+            {
+                throw new IllegalArgumentException("Option " + args[i] + " needs a value.");
+            }
+
+            options.put(args[i], args[i + 1]);
+        }
+    }
+
+    /**
+     * Get the values of an option that takes a list of numbers separated by commas.
+     * @param name
+     * @return
+     */
+    private int[] getList(String name)
+    {
+        String[] parts = options.get(name).split(",");
+
+        int[] values = new int[parts.length];
+
+        for(int i = 0; i < parts.length; i++)
+        {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+
+        return values;
+    }
+
+    /**
+     * Get the value of an option that takes one number.
+     * @param name
+     * @return
+     */
+    private int getInt(String name)
+    {
+        return Integer.parseInt(options.get(name).trim());
+    }
+
+    /**
+     * Run every combination of the options, writing the report after each one so the runs finished so far are kept
+     * if a later one fails.
+     * @throws Exception
+     */
+    public void runAll() throws Exception
+    {
+        for(int nodes : getList("--nodes"))
+        {
+            for(int neighbors : getList("--neighbors"))
+            {
+                for(int partitions : getList("--partitions"))
+                {
+                    for(int clusters : getList("--clusters"))
+                    {
+                        runConfiguration(nodes, neighbors, partitions, clusters);
+
+                        report.writeCsv(options.get("--output") + ".csv");
+
+                        report.writeJson(options.get("--output") + ".json");
+                    }
+                }
+            }
+        }
+
+        System.out.println("Results written to " + options.get("--output") + ".csv and " +
+                           options.get("--output") + ".json");
+    }
+
+    /**
+     * Generate the graph of one combination of the options, and run it the configured number of times.
+     * @param nodes
+     * @param neighbors
+     * @param partitions
+     * @param clusters
+     * @throws Exception
+     */
+    private void runConfiguration(int nodes, int neighbors, int partitions, int clusters) throws Exception
+    {
+        String description = String.format("%d nodes, %d neighbors, %d partitions, %d clusters", nodes, neighbors,
+                                           partitions, clusters);
+
+        // The InputGenerator exits if a node can't get its neighbors from its own partition
+        if(partitions < 1 || neighbors >= nodes / partitions || clusters < 1 || clusters > nodes)
+        {
+            System.out.println("Skipping " + description + " - neighbors must be fewer than the nodes in a " +
+                               "partition, and there can't be more clusters than nodes.");
+
+            return;
+        }
+
+        File graphFile = File.createTempFile("ScalingBenchmark", BinaryGraphFormat.EXTENSION);
+
+        try
+        {
+            InputGenerator generator = new InputGenerator(nodes, neighbors, partitions, clusters, STATE_VARIABLES);
+
+            generator.setUndirected(true);
+
+            generator.generateBinaryInput(graphFile.getPath());
+
+            int iterationMax = getInt("--iterations");
+
+            int warmup = getInt("--warmup");
+
+            for(int run = 0; run < warmup + getInt("--repeat"); run++)
+            {
+                boolean isWarmup = run < warmup;
+
+                System.out.println((isWarmup ? "Warming up on " : "Measuring ") + description);
+
+                measureRun(graphFile.getPath(), iterationMax, clusters, isWarmup ? -1 : run - warmup,
+                           new Object[] {nodes, neighbors, partitions, clusters, iterationMax});
+            }
+        }
+        finally
+        {
+            graphFile.delete();
+        }
+    }
+
+    /**
+     * Run every cluster of a graph on its own thread, and add the metrics of the whole network to the report.
+     * @param graphFile
+     * @param iterationMax
+     * @param clusters
+     * @param run Number of the measured run, or -1 for a warmup run, which isn't reported
+     * @param configuration Values of the options of the run, in the order of the columns of the report
+     * @throws InterruptedException
+     */
+    private void measureRun(String graphFile, int iterationMax, int clusters, int run, Object[] configuration)
+            throws InterruptedException
+    {
+        // Start from a collected heap, and forget the peaks of earlier runs
+        System.gc();
+
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if(pool.getType() != MemoryType.HEAP) continue;
+
+            pool.resetPeakUsage();
+
+            heapPools.add(pool);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        threads.resetPeakThreadCount();
+
+        RunMetrics[] clusterMetrics = new RunMetrics[clusters];
+
+        CyclicBarrier finishedClusters = clusters > 1 ? new CyclicBarrier(clusters) : null;
+
+        Thread[] clusterThreads = new Thread[clusters];
+
+        for(int cluster = 0; cluster < clusters; cluster++)
+        {
+            int clusterIndex = cluster;
+
+            clusterThreads[cluster] = new Thread(() ->
+            {
+                LoadOptions loadOptions = new LoadOptions();
+
+                loadOptions.setSelfClusterID("Cluster" + clusterIndex);
+
+                clusterMetrics[clusterIndex] = Launcher.launchNetwork(graphFile, iterationMax, loadOptions,
+                                                                      finishedClusters);
+            }, "Cluster" + cluster);
+
+            clusterThreads[cluster].start();
+        }
+
+        for(Thread clusterThread : clusterThreads)
+        {
+            clusterThread.join();
+        }
+
+        // Each pool peaks at its own time, so their sum is an upper bound of the peak of the whole heap
+        long peakHeap = 0;
+
+        for(MemoryPoolMXBean pool : heapPools)
+        {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        int peakThreads = threads.getPeakThreadCount();
+
+        List<RunMetrics> metrics = new ArrayList<>();
+
+        for(RunMetrics clusterMetric : clusterMetrics)
+        {
+            if(clusterMetric == null)
+            {
+                System.out.println("A cluster failed, so the run isn't reported.");
+
+                return;
+            }
+
+            metrics.add(clusterMetric);
+        }
+
+        if(run < 0) return;
+
+        RunMetrics network = RunMetrics.combine(metrics);
+
+        System.out.println(String.format("Run %d: %.1f iterations/s, %.0f messages/s, p50 %.3f ms, p99 %.3f ms, " +
+                                         "peak heap %.1f MB, peak threads %d", run, network.getIterationsPerSecond(),
+                                         network.getMessagesPerSecond(), network.getLatencyPercentile(50),
+                                         network.getLatencyPercentile(99), peakHeap / BYTES_PER_MB, peakThreads));
+
+        report.addRow(configuration[0], configuration[1], configuration[2], configuration[3], configuration[4], run,
+                      network.getIterations(), network.getMessagesReceived(), network.getElapsedSeconds(),
+                      network.getIterationsPerSecond(), network.getMessagesPerSecond(),
+                      network.getLatencyPercentile(50), network.getLatencyPercentile(99), peakHeap / BYTES_PER_MB,
+                      peakThreads);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        try
+        {
+            new ScalingBenchmark(args).runAll();
+        }
+        catch(IllegalArgumentException ex)
+        {
+            System.out.println(ex.getMessage());
+
+            System.out.println("Options are --nodes, --neighbors, --partitions and --clusters, each a list " +
+                               "separated by commas, and --iterations, --warmup, --repeat and --output, the name " +
+                               "of the CSV and JSON files without their extensions.");
+
+            System.exit(1);
+        }
+
+        System.exit(0);
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Class that collects the results of the runs of the scaling benchmark and writes them to a CSV and a JSON file.
+ */
+public class ScalingReport
+{
+    /**
+     * Names of the columns of the report, in order. The same names are used as the keys of the JSON objects.
+     */
+    private static final String[] COLUMNS = {"nodes", "neighbors", "partitions", "clusters", "iterationMax", "run",
+                                             "iterations", "messages", "elapsedSeconds", "iterationsPerSecond",
+                                             "messagesPerSecond", "p50LatencyMillis", "p99LatencyMillis",
+                                             "peakHeapMB", "peakThreads"};
+
+    /**
+     * Values of each run, in the order of the columns.
+     */
+    private List<Object[]> rows = new ArrayList<>();
+
+    /**
+     * Add the results of a run.
+     * @param values Values of the run, in the order of the columns
+     */
+    public void addRow(Object... values)
+    {
+        if(values.length != COLUMNS.length)
+        {
+            throw new IllegalArgumentException("Expected " + COLUMNS.length + " values but got " + values.length + ".");
+        }
+
+        rows.add(values);
+    }
+
+    /**
+     * Format a value for the report, with doubles rounded to three decimals.
+     * @param value
+     * @return
+     */
+    private static String format(Object value)
+    {
+        if(value instanceof Double) return String.format(Locale.ROOT, "%.3f", (Double)value);
+
+        return String.valueOf(value);
+    }
+
+    /**
+     * Write every run to a CSV file with a header row.
+     * @param csvFile
+     * @throws IOException
+     */
+    public void writeCsv(String csvFile) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(csvFile))
+        {
+            out.println(String.join(",", COLUMNS));
+
+            for(Object[] row : rows)
+            {
+                List<String> values = new ArrayList<>();
+
+                for(Object value : row)
+                {
+                    values.add(format(value));
+                }
+
+                out.println(String.join(",", values));
+            }
+        }
+    }
+
+    /**
+     * Write every run to a JSON file as an array of objects.
+     * @param jsonFile
+     * @throws IOException
+     */
+    public void writeJson(String jsonFile) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(jsonFile))
+        {
+            out.println("[");
+
+            for(int row = 0; row < rows.size(); row++)
+            {
+                List<String> fields = new ArrayList<>();
+
+                for(int column = 0; column < COLUMNS.length; column++)
+                {
+                    String value = format(rows.get(row)[column]);
+
+                    // Runs without a finished iteration have no latency, which JSON can only hold as null
+                    if(value.equals("NaN")) value = "null";
+
+                    fields.add("\"" + COLUMNS[column] + "\": " + value);
+                }
+
+                out.println("  {" + String.join(", ", fields) + "}" + (row < rows.size() - 1 ? "," : ""));
+            }
+
+            out.println("]");
+        }
+    }
+}
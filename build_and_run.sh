@@ -1,14 +1,14 @@
 #!/usr/bin/env bash
 
-# Check if there is more than 1 argument
-if [ "$#" -ne 2 ]; then
-    echo "Too many arguments - only need input YAML file that has the graph representation along with maximum number of iterations."
+# Check if there are at least 2 arguments, followed by options such as --cluster
+if [ "$#" -lt 2 ]; then
+    echo "Wrong number of arguments - need input file that has the graph representation along with maximum number of iterations, and optionally --cluster followed by the cluster to run."
     exit 1
 fi
 
-# Check if the 1 argument is a YAML file
-if [[ $1 != *".yml" ]]; then
-    echo "The first argument has to be a YAML(*.yml) file."
+# Check if the 1 argument exists, since edge lists can have any extension
+if [ ! -f "$1" ]; then
+    echo "The first argument has to be a YAML(*.yml), binary graph(*.gsim), Matrix Market(*.mtx) or edge list file."
     exit 1
 fi
 
@@ -19,6 +19,6 @@ ant
 # TODO: Find a way to output the build results while also searching the output for "BUILD SUCCESSFUL". Right now
 # TODO: running ANT once to build and another time to parse the output.
 if  ant | grep -q "BUILD SUCCESSFUL"; then
-    java -cp Modules/*:bin/GraphSim/ com.Main $1 $2
+    java -cp Modules/*:bin/GraphSim/ com.Main "$@"
 fi
 
@@ -0,0 +1,8 @@
+#!/usr/bin/env bash
+# Builds the JMH benchmarks in Tools/Benchmarks with Maven and runs them, saving the results to
+# benchmark-results.json. Any JMH options can be passed, e.g. a benchmark to run and its parameters:
+# ./run_benchmarks.sh MailboxBenchmark -p producers=4
+
+if mvn -q -f Tools/Benchmarks/pom.xml package; then
+    java -jar Tools/Benchmarks/target/benchmarks.jar -rf json -rff benchmark-results.json "$@"
+fi
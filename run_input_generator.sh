@@ -5,5 +5,5 @@
 ant inputgenerator 
 
 if  ant inputgenerator | grep -q "BUILD SUCCESSFUL"; then
-    java -cp Modules/*:bin/InputGenerator/ Main "$@"
+    java -cp Modules/*:bin/GraphSim/:bin/InputGenerator/ Main "$@"
 fi
@@ -0,0 +1,7 @@
+#!/usr/bin/env bash
+
+ant partitioner
+
+if  ant partitioner | grep -q "BUILD SUCCESSFUL"; then
+    java -cp Modules/*:bin/GraphSim/:bin/Partitioner/ Main "$@"
+fi
@@ -0,0 +1,8 @@
+#!/usr/bin/env bash
+# Generates graphs with the InputGenerator and runs them in one process to see how the simulator scales, writing the
+# results to scaling-results.csv and scaling-results.json. Every option takes a value, e.g.
+# ./run_scaling_benchmark.sh --nodes 1000,10000,100000 --neighbors 4,8 --clusters 1,2,4 --iterations 50
+
+if  ant scalingbenchmark | grep -q "BUILD SUCCESSFUL"; then
+    java -cp Modules/*:bin/GraphSim/:bin/InputGenerator/:bin/ScalingBenchmark/ ScalingBenchmark "$@"
+fi
@@ -1,14 +1,21 @@
 package com.Coordinator;
 
+import com.GraphLoaders.GraphInput;
+import com.GraphLoaders.GraphLoader;
+import com.GraphLoaders.LoadOptions;
+import com.Helpers.ConfigReader;
 import com.Helpers.OutputWriter.WriterThread;
 import com.MessageHandler.Message;
 import com.MessageHandler.MessagePasser;
+import com.MessageHandler.MessageType;
 import com.Network.Cluster;
-import com.Parser;
+import com.Network.GraphTopology;
+import com.Network.RunMetrics;
 
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.util.Map;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.CyclicBarrier;
 
 /**
  * Class to control and configure node network.
@@ -16,47 +23,106 @@ import java.util.Map;
 public class Launcher
 {
     /**
-     * TODO: Refactor function
+     * Build nodes in this cluster, running the cluster marked as the self cluster in the input file.
+     * @param inputFile
+     * @param iterationMax
+     * @return Metrics of the run, or null if it failed
+     */
+    public static RunMetrics launchNetwork(String inputFile, int iterationMax)
+    {
+        return launchNetwork(inputFile, iterationMax, new LoadOptions());
+    }
+
+    /**
+     * Build nodes in this cluster, running the given cluster instead of the one marked in the input file.
+     * @param inputFile YAML or binary graph file
+     * @param iterationMax
+     * @param selfClusterID ID of the cluster to run on this instance, or null to use the one marked in the input file
+     * @return Metrics of the run, or null if it failed
+     */
+    public static RunMetrics launchNetwork(String inputFile, int iterationMax, String selfClusterID)
+    {
+        LoadOptions options = new LoadOptions();
+
+        options.setSelfClusterID(selfClusterID);
+
+        return launchNetwork(inputFile, iterationMax, options);
+    }
+
+    /**
      * Build nodes in this cluster, wait for all the other clusters to start up, and then send out start messages
      * to nodes on this cluster.
-     * @param inputFile
+     * @param inputFile YAML, binary graph, edge list or Matrix Market file
+     * @param iterationMax
+     * @param options Cluster to run, and the clusters and initial state of edge lists and Matrix Market files
+     * @return Metrics of the run, or null if it failed
+     */
+    public static RunMetrics launchNetwork(String inputFile, int iterationMax, LoadOptions options)
+    {
+        return launchNetwork(inputFile, iterationMax, options, null);
+    }
+
+    /**
+     * TODO: Refactor function
+     * Build nodes in this cluster, wait for all the other clusters to start up, and then send out start messages
+     * to nodes on this cluster. Once the nodes have finished, the listener and writer of the cluster are closed, so
+     * another run can follow in the same process.
+     * @param inputFile YAML, binary graph, edge list or Matrix Market file
      * @param iterationMax
+     * @param options Cluster to run, and the clusters and initial state of edge lists and Matrix Market files
+     * @param finishedClusters Barrier every cluster of the network running in this process waits at once it has sent
+     *                         its last messages, so none stops listening while another is still sending, or null if
+     *                         the other clusters run elsewhere
+     * @return Metrics of the run, or null if it failed
      */
-    public static void launchNetwork(String inputFile, int iterationMax)
+    public static RunMetrics launchNetwork(String inputFile, int iterationMax, LoadOptions options,
+                                           CyclicBarrier finishedClusters)
     {
         try
         {
             // Read input file
-            Map networkRepresentation = Parser.readYAMLFile(inputFile);
+            long loadStartTime = System.nanoTime();
 
-            if(networkRepresentation == null)
-            {
-                System.out.println("Invalid input file. Exiting.");
+            GraphInput input = GraphLoader.load(inputFile, options);
 
-                System.exit(0);
-            }
+            GraphTopology topology = input.getTopology();
 
-            MessagePasser messagePasser = new MessagePasser(networkRepresentation);
+            System.out.println(String.format("Loaded %d nodes and %d edges in %.3f seconds", topology.getNodeCount(),
+                                             topology.getEdgeCount(), (System.nanoTime() - loadStartTime) / 1e9));
+
+            ConfigReader configValues = new ConfigReader();
+
+            if(options.getOutputDirectory() != null) configValues.setOutputDirectory(options.getOutputDirectory());
+
+            MessagePasser messagePasser = new MessagePasser(topology, configValues);
 
             // Creating listening socket to use for ready messages and messages from other nodes
-            ServerSocket listeningSocket = new ServerSocket();
+            ServerSocketChannel listeningChannel = ServerSocketChannel.open();
 
-            listeningSocket.setReuseAddress(true);
+            listeningChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
 
-            listeningSocket.bind(new InetSocketAddress(messagePasser.socketInfo.getPort()));
+            listeningChannel.bind(new InetSocketAddress(messagePasser.socketInfo.getPort()));
 
-            // Start listening for Ready messages from other clusters
-            Thread readyListener = new ReadyListener(messagePasser.otherClusters, listeningSocket);
+            // Start waiting for Ready messages from other clusters
+            ReadyListener readyListener = new ReadyListener(messagePasser.otherClusters);
 
             readyListener.start();
 
+            // Begin listening for connections from other clusters, which carry their Ready messages and then the
+            // messages from their nodes
+            NetworkListener networkListener = new NetworkListener(messagePasser, readyListener, listeningChannel);
+
+            networkListener.start();
+
             // Creating writer thread to handle secondary tasks like console output, so primary threads can keep
             // processing work
-            WriterThread writer = new WriterThread();
+            WriterThread writer = new WriterThread(configValues, topology);
 
             writer.start();
 
-            Cluster selfCluster = new Cluster(networkRepresentation, iterationMax, messagePasser, writer);
+            Cluster selfCluster = new Cluster(input, iterationMax, messagePasser, writer, configValues);
+
+            networkListener.setConvergenceMonitor(selfCluster.getConvergenceMonitor());
 
             // Let other clusters in network know this cluster is ready
             notifyNetworkReady(messagePasser);
@@ -64,20 +130,31 @@ public class Launcher
             // Wait for all clusters to become ready
             readyListener.join();
 
-            // Begin listening for messages from nodes of other clusters
-            Thread networkListener = new NetworkListener(messagePasser, listeningSocket);
+            // Let cluster start processing work
+            RunMetrics runMetrics = selfCluster.startWork();
 
-            networkListener.start();
+            // Every message for the other clusters has been sent once the nodes in this cluster have finished
+            messagePasser.closeConnections();
 
-            // Let cluster start processing work
-            selfCluster.startWork();
+            if(finishedClusters != null) finishedClusters.await();
 
-            writer.pushValuesToDB();
+            networkListener.close();
+
+            // Make sure every value recorded before the nodes stopped is saved
+            writer.flush();
+
+            writer.closeResultSink();
+
+            writer.close();
+
+            return runMetrics;
         }
         catch(Exception ex)
         {
             ex.printStackTrace();
         }
+
+        return null;
     }
 
     /**
@@ -90,9 +167,9 @@ public class Launcher
         {
             Message readyMessage = new Message();
 
-            readyMessage.addData("Type", "Ready");
+            readyMessage.setType(MessageType.READY);
 
-            readyMessage.addData("SendingCluster", messagePasser.selfClusterID);
+            readyMessage.addData("senderCluster", messagePasser.selfClusterID);
 
             messagePasser.sendMessageToCluster(receivingClusterID, readyMessage);
         }
@@ -1,71 +1,365 @@
 package com.Coordinator;
 
 import com.MessageHandler.Message;
+import com.MessageHandler.MessageCodec;
 import com.MessageHandler.MessagePasser;
+import com.MessageHandler.MessageType;
+import com.Network.ConvergenceMonitor;
 
-import java.io.DataInputStream;
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * Class that will listen for messages from nodes in other clusters that are being sent to nodes in this cluster.
+ * Each other cluster keeps one connection open for the whole run. All the connections are multiplexed on a single
+ * non-blocking selector, so a slow or large frame from one cluster doesn't hold up the messages from the others.
+ * Each frame is acknowledged by its sequence number. A cluster that reconnects sends its unacknowledged frames again,
+ * and the ones that already arrived are dropped.
  */
 public class NetworkListener extends Thread
 {
     /**
-     * Socket that this server listens to for messages from other clusters.
+     * Initial size of the buffer each connection is read into. Grown if a frame does not fit.
      */
-    private ServerSocket listeningSocket;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Class that holds the read buffer of one connection and decodes the frames that have fully arrived in it.
+     */
+    private class FrameReader
+    {
+        /**
+         * Buffer the connection is read into, reused for the whole connection.
+         */
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /**
+         * ID of the cluster on the other end of the connection, named in its Hello frame.
+         */
+        private String senderCluster;
+
+        /**
+         * Acknowledgement being written back to the other cluster, empty once it's fully written.
+         */
+        private ByteBuffer acknowledgement = ByteBuffer.wrap(new byte[Long.BYTES], 0, 0);
+
+        /**
+         * Highest sequence number acknowledged on the connection.
+         */
+        private long acknowledgedSequence = 0;
+
+        /**
+         * Read whatever is available on the connection, dispatch every complete frame and acknowledge them.
+         * @param channel
+         * @return False if the other cluster closed the connection
+         * @throws IOException
+         */
+        public boolean read(SocketChannel channel) throws IOException
+        {
+            int bytesRead;
+
+            while((bytesRead = channel.read(buffer)) > 0)
+            {
+                buffer.flip();
+
+                dispatchFrames();
+
+                buffer.compact();
+
+                // Make room for a frame that is bigger than the buffer
+                if(!buffer.hasRemaining())
+                {
+                    ByteBuffer largerBuffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+
+                    buffer.flip();
+
+                    largerBuffer.put(buffer);
+
+                    buffer = largerBuffer;
+                }
+            }
+
+            if(bytesRead < 0) return false;
+
+            acknowledge(channel);
+
+            return true;
+        }
+
+        /**
+         * Tell the other cluster the highest sequence number it has sent that arrived. Acknowledgements cover every
+         * frame up to them, so a new one is skipped while an earlier one is still being written.
+         * @param channel
+         * @throws IOException
+         */
+        private void acknowledge(SocketChannel channel) throws IOException
+        {
+            if(acknowledgement.hasRemaining()) channel.write(acknowledgement);
+
+            if(acknowledgement.hasRemaining() || senderCluster == null) return;
+
+            long lastSequence = lastSequences.getOrDefault(senderCluster, 0L);
+
+            if(lastSequence <= acknowledgedSequence) return;
+
+            acknowledgement.clear();
+
+            acknowledgement.putLong(lastSequence).flip();
+
+            channel.write(acknowledgement);
+
+            acknowledgedSequence = lastSequence;
+        }
+
+        /**
+         * Decode and dispatch every complete frame between the position and limit of the buffer, leaving the
+         * position at the start of the first incomplete frame. Frames that already arrived on an earlier connection
+         * are skipped.
+         */
+        private void dispatchFrames()
+        {
+            while(buffer.remaining() >= Integer.BYTES)
+            {
+                int frameLength = buffer.getInt(buffer.position());
+
+                if(buffer.remaining() < Integer.BYTES + frameLength) return;
+
+                int frameEnd = buffer.position() + Integer.BYTES + frameLength;
+
+                int limit = buffer.limit();
+
+                buffer.position(buffer.position() + Integer.BYTES);
+
+                long sequence = buffer.getLong();
+
+                buffer.limit(frameEnd);
+
+                if(sequence == 0)
+                {
+                    senderCluster = MessageCodec.decode(buffer).getData("senderCluster");
+                }
+                else if(sequence > lastSequences.getOrDefault(senderCluster, 0L))
+                {
+                    lastSequences.put(senderCluster, sequence);
+
+                    dispatchMessage(MessageCodec.decode(buffer));
+                }
+
+                buffer.limit(limit);
+
+                buffer.position(frameEnd);
+            }
+        }
+    }
+
+    /**
+     * Channel that this server listens to for connections from other clusters.
+     */
+    private ServerSocketChannel listeningChannel;
 
     /**
      * MessagePasser that will handle sending messages to the nodes in this cluster.
      */
     private MessagePasser messagePasser;
 
+    /**
+     * Listener that is notified when Ready messages arrive from other clusters.
+     */
+    private ReadyListener readyListener;
+
+    /**
+     * Monitor that combines the shares of the convergence residual sent by other clusters, or null if convergence
+     * isn't being watched.
+     */
+    private volatile ConvergenceMonitor convergenceMonitor;
+
+    /**
+     * Selector the listening channel and the connections from other clusters are multiplexed on.
+     */
+    private final Selector selector;
+
+    /**
+     * Highest sequence number that has arrived from each other cluster, over all of its connections.
+     */
+    private Map<String,Long> lastSequences = new HashMap<>();
+
+    /**
+     * Set once the listener should stop and close its connections.
+     */
+    private volatile boolean isClosed = false;
+
     /**
      * Primary constructor
      * @param messagePasser
-     * @param listeningSocket
+     * @param readyListener
+     * @param listeningChannel
+     * @throws IOException If the selector can't be opened
      */
-    public NetworkListener(MessagePasser messagePasser, ServerSocket listeningSocket)
+    public NetworkListener(MessagePasser messagePasser, ReadyListener readyListener,
+                           ServerSocketChannel listeningChannel) throws IOException
     {
+        this.selector = Selector.open();
+
+        this.listeningChannel = listeningChannel;
+
+        this.messagePasser = messagePasser;
+
+        this.readyListener = readyListener;
+    }
+
+    /**
+     * Set the monitor that Convergence messages from other clusters are passed on to. Must be set before this
+     * cluster tells the others it is ready.
+     * @param convergenceMonitor
+     */
+    public void setConvergenceMonitor(ConvergenceMonitor convergenceMonitor)
+    {
+        this.convergenceMonitor = convergenceMonitor;
+    }
+
+    /**
+     * Stop listening and close the listening channel and the connections from the other clusters, waiting until that
+     * is done. Should only be called once the other clusters have sent their last messages.
+     */
+    public void close()
+    {
+        isClosed = true;
+
+        selector.wakeup();
+
         try
         {
-            this.listeningSocket = listeningSocket;
+            join();
+        }
+        catch(InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
 
-            this.messagePasser =  messagePasser;
+    /**
+     * Pass a message from another cluster on to the ReadyListener, the convergence monitor, or the node it is
+     * addressed to.
+     * @param incomingMessage
+     */
+    private void dispatchMessage(Message incomingMessage)
+    {
+        if(incomingMessage.getType() == MessageType.READY)
+        {
+            readyListener.clusterReady(incomingMessage.getData("senderCluster"));
+        }
+        else if(incomingMessage.getType() == MessageType.CONVERGENCE)
+        {
+            if(convergenceMonitor != null) convergenceMonitor.receiveShare(incomingMessage);
         }
-        catch(Exception ex)
+        else
+        {
+            int receiverID = incomingMessage.getReceiverID();
+
+            messagePasser.sendMessage(receiverID, incomingMessage);
+        }
+    }
+
+    /**
+     * Accept a new connection from another cluster and register it with the selector.
+     * @param selector
+     * @throws IOException
+     */
+    private void acceptConnection(Selector selector) throws IOException
+    {
+        SocketChannel channel = listeningChannel.accept();
+
+        if(channel == null) return;
+
+        channel.configureBlocking(false);
+
+        channel.register(selector, SelectionKey.OP_READ, new FrameReader());
+    }
+
+    /**
+     * Read from a connection that has data available, closing it if the other cluster closed it.
+     * @param key
+     */
+    private void readConnection(SelectionKey key)
+    {
+        SocketChannel channel = (SocketChannel)key.channel();
+
+        FrameReader reader = (FrameReader)key.attachment();
+
+        try
+        {
+            if(reader.read(channel)) return;
+        }
+        catch(IOException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        key.cancel();
+
+        try
+        {
+            channel.close();
+        }
+        catch(IOException ex)
         {
             ex.printStackTrace();
         }
     }
 
     /**
-     * Run method that will listen for messages from other clusters
+     * Run method that will accept connections from other clusters and read from all of them until the listener is
+     * closed
      */
     public void run()
     {
-        try
+        try(selector)
         {
-            while(true)
+            listeningChannel.configureBlocking(false);
+
+            listeningChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+            while(!isClosed)
             {
-                Socket socketToClient = listeningSocket.accept();
+                selector.select();
+
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
 
-                DataInputStream in = new DataInputStream(socketToClient.getInputStream());
+                while(selectedKeys.hasNext())
+                {
+                    SelectionKey key = selectedKeys.next();
 
-                Message incomingMessage = new Message(in.readUTF());
+                    selectedKeys.remove();
 
-                int receiverID = Integer.parseInt(incomingMessage.getData("receiverID"));
+                    if(!key.isValid()) continue;
 
-                messagePasser.sendMessage(receiverID, incomingMessage);
+                    if(key.isAcceptable())
+                    {
+                        acceptConnection(selector);
+                    }
+                    else if(key.isReadable())
+                    {
+                        readConnection(key);
+                    }
+                }
+            }
+
+            // Includes the listening channel, so the port is free for the next run
+            for(SelectionKey key : selector.keys())
+            {
+                key.channel().close();
             }
         }
         catch(IOException ex)
         {
             ex.printStackTrace();
         }
-
     }
 }
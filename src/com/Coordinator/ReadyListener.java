@@ -1,17 +1,13 @@
 package com.Coordinator;
 
-import com.MessageHandler.Message;
-
-import java.io.DataInputStream;
-import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket; import java.util.ArrayList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
- * Thread class that will listen for Ready messages from the other clusters that will indicate the network can begin
- * doing work.
+ * Thread class that will wait for Ready messages from the other clusters that will indicate the network can begin
+ * doing work. The messages themselves are received by the NetworkListener.
  */
 public class ReadyListener extends Thread
 {
@@ -20,11 +16,6 @@ public class ReadyListener extends Thread
     public static final String ANSI_BOLD = "\u001B[1m";
     public static final String ANSI_CYAN = "\u001B[36m";
 
-    /**
-     * Socket that this cluster listens on for ready messages from other clusters.
-     */
-    private ServerSocket listeningSocket;
-
     /**
      * A set of the other clusters in the network that should send ready messages before starting the network.
      */
@@ -35,28 +26,35 @@ public class ReadyListener extends Thread
      */
     List<String> clusterResponsesReceived;
 
+    /**
+     * Queue of clusters whose ready messages have arrived but have not been counted yet.
+     */
+    private LinkedBlockingQueue<String> readyClusters;
+
     /**
      * Constructor for ReadyListener.
      * @param otherClusters ID's of other clusters in network
      */
-    public ReadyListener(Set<String> otherClusters, ServerSocket listeningSocket)
+    public ReadyListener(Set<String> otherClusters)
     {
-        try
-        {
-            this.listeningSocket = listeningSocket;
+        this.otherClusters = otherClusters;
 
-            this.otherClusters = otherClusters;
+        this.clusterResponsesReceived = new ArrayList<>();
 
-            this.clusterResponsesReceived = new ArrayList<>();
-        }
-        catch (Exception ex)
-        {
-            ex.printStackTrace();
-        }
+        this.readyClusters = new LinkedBlockingQueue<>();
+    }
+
+    /**
+     * Record that a ready message was received from a cluster.
+     * @param sendingCluster
+     */
+    public void clusterReady(String sendingCluster)
+    {
+        readyClusters.add(sendingCluster);
     }
 
     /**
-     * Run method that will do the actual listening.
+     * Run method that will do the actual waiting.
      */
     public void run()
     {
@@ -66,20 +64,14 @@ public class ReadyListener extends Thread
 
             while(clusterResponsesReceived.size() < otherClusters.size())
             {
-                Socket socketToClient = listeningSocket.accept();
-
-                DataInputStream in = new DataInputStream(socketToClient.getInputStream());
-
-                Message incomingMessage = new Message(in.readUTF());
-
-                String sendingCluster = incomingMessage.getData("senderCluster");
+                String sendingCluster = readyClusters.take();
 
                 System.out.println("Ready received from " + sendingCluster);
 
                 clusterResponsesReceived.add(sendingCluster);
             }
         }
-        catch (IOException ex)
+        catch (InterruptedException ex)
         {
             ex.printStackTrace();
         }
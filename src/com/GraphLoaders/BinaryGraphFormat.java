@@ -0,0 +1,417 @@
+package com.GraphLoaders;
+
+import com.Helpers.SocketInfo;
+import com.Network.GraphTopology;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact binary form of an input file that is memory mapped instead of parsed, so loading a large network takes
+ * almost no time or heap, and clusters on the same host share the pages of the file. All values are little endian.
+ * The file is laid out as:
+ *
+ *   Header - magic number, version, number of clusters, nodes, edges and state variables, default self cluster,
+ *            and the length of the header
+ *   Cluster table - ID, ip and port of each cluster, followed by the index of the first node of each cluster and
+ *                   the total number of nodes
+ *   State variable names
+ *   Sections, each starting on a multiple of 8 bytes - node IDs, sorted node IDs, sorted indexes, CSR offsets, CSR
+ *                                                     targets, boundary edge flags, and a column of initial values
+ *                                                     for each state variable
+ */
+public class BinaryGraphFormat
+{
+    /**
+     * Extension of binary graph files.
+     */
+    public static final String EXTENSION = ".gsim";
+
+    /**
+     * Number at the start of every binary graph file, "GSIM" in ASCII.
+     */
+    private static final int MAGIC = 0x4753494D;
+
+    /**
+     * Version of the layout, increased whenever it changes.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Number of bytes in the fixed part of the header.
+     */
+    private static final int FIXED_HEADER_BYTES = 8 * Integer.BYTES;
+
+    /**
+     * Write a network to a binary graph file. The self cluster of the topology is stored as the default self cluster.
+     * @param input Topology and initial state of the network
+     * @param outputFile
+     * @throws IOException
+     */
+    public static void write(GraphInput input, String outputFile) throws IOException
+    {
+        GraphTopology topology = input.getTopology();
+
+        ByteBuffer header = encodeHeader(input);
+
+        int nodeCount = topology.getNodeCount();
+
+        int edgeCount = topology.getEdgeCount();
+
+        try(FileChannel channel = FileChannel.open(Paths.get(outputFile), StandardOpenOption.CREATE,
+                                                   StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            channel.write(header, 0);
+
+            long position = align(header.limit());
+
+            position = writeInts(channel, position, topology.getNodeIDs(), nodeCount);
+
+            position = writeInts(channel, position, topology.getSortedNodeIDs(), nodeCount);
+
+            position = writeInts(channel, position, topology.getSortedIndexes(), nodeCount);
+
+            position = writeInts(channel, position, topology.getOffsets(), nodeCount + 1);
+
+            position = writeInts(channel, position, topology.getTargets(), edgeCount);
+
+            LongBuffer boundaryFlags = topology.getBoundaryFlags();
+
+            MappedByteBuffer flagSection = map(channel, FileChannel.MapMode.READ_WRITE, position,
+                                               (long)flagWords(edgeCount) * Long.BYTES);
+
+            flagSection.asLongBuffer().put((LongBuffer)limit(boundaryFlags, flagWords(edgeCount)));
+
+            position = align(position + flagSection.capacity());
+
+            for(int variable = 0; variable < input.getVariableCount(); variable++)
+            {
+                MappedByteBuffer column = map(channel, FileChannel.MapMode.READ_WRITE, position,
+                                              (long)nodeCount * Double.BYTES);
+
+                column.asDoubleBuffer().put((DoubleBuffer)limit(input.getInitialValues(variable), nodeCount));
+
+                position = align(position + column.capacity());
+            }
+        }
+    }
+
+    /**
+     * Map a binary graph file and build the topology and initial state of the network on top of it.
+     * @param inputFile
+     * @param selfClusterID ID of the cluster that runs on this instance, or null to use the default in the file
+     * @return GraphInput of the network
+     * @throws IOException
+     */
+    public static GraphInput read(String inputFile, String selfClusterID) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ))
+        {
+            ByteBuffer fixedHeader = ByteBuffer.allocate(FIXED_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            channel.read(fixedHeader, 0);
+
+            fixedHeader.flip();
+
+            if(fixedHeader.remaining() < FIXED_HEADER_BYTES || fixedHeader.getInt() != MAGIC)
+            {
+                throw new IOException(inputFile + " isn't a binary graph file.");
+            }
+
+            int version = fixedHeader.getInt();
+
+            if(version != VERSION)
+            {
+                throw new IOException(inputFile + " has version " + version + ", expected " + VERSION + ".");
+            }
+
+            int clusterCount = fixedHeader.getInt();
+
+            int nodeCount = fixedHeader.getInt();
+
+            int edgeCount = fixedHeader.getInt();
+
+            int variableCount = fixedHeader.getInt();
+
+            int selfCluster = fixedHeader.getInt();
+
+            int headerLength = fixedHeader.getInt();
+
+            ByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, headerLength);
+
+            header.position(FIXED_HEADER_BYTES);
+
+            String[] clusterIDs = new String[clusterCount];
+
+            SocketInfo[] clusterSockets = new SocketInfo[clusterCount];
+
+            for(int cluster = 0; cluster < clusterCount; cluster++)
+            {
+                clusterIDs[cluster] = readString(header);
+
+                String ip = readString(header);
+
+                clusterSockets[cluster] = new SocketInfo(ip, header.getInt());
+            }
+
+            int[] clusterOffsets = new int[clusterCount + 1];
+
+            for(int cluster = 0; cluster <= clusterCount; cluster++)
+            {
+                clusterOffsets[cluster] = header.getInt();
+            }
+
+            String[] variableNames = new String[variableCount];
+
+            for(int variable = 0; variable < variableCount; variable++)
+            {
+                variableNames[variable] = readString(header);
+            }
+
+            if(selfClusterID != null)
+            {
+                selfCluster = Arrays.asList(clusterIDs).indexOf(selfClusterID);
+
+                if(selfCluster < 0)
+                {
+                    throw new IllegalArgumentException("Cluster " + selfClusterID + " isn't in " + inputFile + ".");
+                }
+            }
+
+            long position = align(headerLength);
+
+            IntBuffer nodeIDs = mapInts(channel, position, nodeCount);
+
+            position = align(position + (long)nodeCount * Integer.BYTES);
+
+            IntBuffer sortedNodeIDs = mapInts(channel, position, nodeCount);
+
+            position = align(position + (long)nodeCount * Integer.BYTES);
+
+            IntBuffer sortedIndexes = mapInts(channel, position, nodeCount);
+
+            position = align(position + (long)nodeCount * Integer.BYTES);
+
+            IntBuffer offsets = mapInts(channel, position, nodeCount + 1);
+
+            position = align(position + (long)(nodeCount + 1) * Integer.BYTES);
+
+            IntBuffer targets = mapInts(channel, position, edgeCount);
+
+            position = align(position + (long)edgeCount * Integer.BYTES);
+
+            LongBuffer boundaryFlags = map(channel, FileChannel.MapMode.READ_ONLY, position,
+                                           (long)flagWords(edgeCount) * Long.BYTES).asLongBuffer();
+
+            position = align(position + (long)flagWords(edgeCount) * Long.BYTES);
+
+            DoubleBuffer[] initialValues = new DoubleBuffer[variableCount];
+
+            for(int variable = 0; variable < variableCount; variable++)
+            {
+                initialValues[variable] = map(channel, FileChannel.MapMode.READ_ONLY, position,
+                                              (long)nodeCount * Double.BYTES).asDoubleBuffer();
+
+                position = align(position + (long)nodeCount * Double.BYTES);
+            }
+
+            GraphTopology topology = new GraphTopology(clusterIDs, clusterSockets, selfCluster, clusterOffsets,
+                                                       nodeIDs, sortedNodeIDs, sortedIndexes, offsets, targets,
+                                                       boundaryFlags);
+
+            return new GraphInput(topology, variableNames, initialValues);
+        }
+    }
+
+    /**
+     * Encode the header, cluster table and state variable names of a network.
+     * @param input
+     * @return Buffer holding the header, ready to be written
+     */
+    private static ByteBuffer encodeHeader(GraphInput input)
+    {
+        GraphTopology topology = input.getTopology();
+
+        int clusterCount = topology.getClusterCount();
+
+        byte[][] clusterIDs = new byte[clusterCount][];
+
+        byte[][] clusterIPs = new byte[clusterCount][];
+
+        int headerLength = FIXED_HEADER_BYTES + (clusterCount + 1) * Integer.BYTES;
+
+        for(int cluster = 0; cluster < clusterCount; cluster++)
+        {
+            clusterIDs[cluster] = topology.getClusterID(cluster).getBytes(StandardCharsets.UTF_8);
+
+            clusterIPs[cluster] = topology.getSocketInfo(cluster).getIP().getBytes(StandardCharsets.UTF_8);
+
+            headerLength += 2 * Short.BYTES + clusterIDs[cluster].length + clusterIPs[cluster].length + Integer.BYTES;
+        }
+
+        byte[][] variableNames = new byte[input.getVariableCount()][];
+
+        for(int variable = 0; variable < variableNames.length; variable++)
+        {
+            variableNames[variable] = input.getVariableName(variable).getBytes(StandardCharsets.UTF_8);
+
+            headerLength += Short.BYTES + variableNames[variable].length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+
+        header.putInt(MAGIC);
+
+        header.putInt(VERSION);
+
+        header.putInt(clusterCount);
+
+        header.putInt(topology.getNodeCount());
+
+        header.putInt(topology.getEdgeCount());
+
+        header.putInt(variableNames.length);
+
+        header.putInt(topology.getSelfCluster());
+
+        header.putInt(headerLength);
+
+        for(int cluster = 0; cluster < clusterCount; cluster++)
+        {
+            putString(header, clusterIDs[cluster]);
+
+            putString(header, clusterIPs[cluster]);
+
+            header.putInt(topology.getSocketInfo(cluster).getPort());
+        }
+
+        for(int clusterOffset : topology.getClusterOffsets())
+        {
+            header.putInt(clusterOffset);
+        }
+
+        for(byte[] variableName : variableNames)
+        {
+            putString(header, variableName);
+        }
+
+        header.flip();
+
+        return header;
+    }
+
+    /**
+     * Write a section of ints to the file.
+     * @param channel
+     * @param position Position in the file the section starts at
+     * @param values
+     * @param count Number of values in the section
+     * @return Position of the next section
+     * @throws IOException
+     */
+    private static long writeInts(FileChannel channel, long position, IntBuffer values, int count) throws IOException
+    {
+        MappedByteBuffer section = map(channel, FileChannel.MapMode.READ_WRITE, position, (long)count * Integer.BYTES);
+
+        section.asIntBuffer().put((IntBuffer)limit(values, count));
+
+        return align(position + section.capacity());
+    }
+
+    /**
+     * Map a section of ints from the file.
+     * @param channel
+     * @param position Position in the file the section starts at
+     * @param count Number of values in the section
+     * @return IntBuffer over the section
+     * @throws IOException
+     */
+    private static IntBuffer mapInts(FileChannel channel, long position, int count) throws IOException
+    {
+        return map(channel, FileChannel.MapMode.READ_ONLY, position, (long)count * Integer.BYTES).asIntBuffer();
+    }
+
+    /**
+     * Map a section of the file in little endian order.
+     * @param channel
+     * @param mode Whether the section is mapped to be read or written
+     * @param position
+     * @param size
+     * @return Mapped buffer
+     * @throws IOException
+     */
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size)
+            throws IOException
+    {
+        return (MappedByteBuffer)channel.map(mode, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Get a view of the first values of a buffer.
+     * @param buffer
+     * @param count
+     * @return Buffer positioned at 0 and limited to count values
+     */
+    private static Buffer limit(Buffer buffer, int count)
+    {
+        return buffer.position(0).limit(count);
+    }
+
+    /**
+     * Round a position up to the next multiple of 8 bytes.
+     * @param position
+     * @return Aligned position
+     */
+    private static long align(long position)
+    {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Get the number of longs needed to hold a flag for every edge.
+     * @param edgeCount
+     * @return
+     */
+    private static int flagWords(int edgeCount)
+    {
+        return (edgeCount + 63) / 64;
+    }
+
+    /**
+     * Write a string prefixed with its length.
+     * @param buffer
+     * @param bytes UTF-8 bytes of the string
+     */
+    private static void putString(ByteBuffer buffer, byte[] bytes)
+    {
+        buffer.putShort((short)bytes.length);
+
+        buffer.put(bytes);
+    }
+
+    /**
+     * Read a string prefixed with its length.
+     * @param buffer
+     * @return
+     */
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,265 @@
+package com.GraphLoaders;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Parses the edges of a text file where each line starts with the IDs of the two nodes of an edge, such as a SNAP
+ * edge list or the entries of a Matrix Market file. The file is memory mapped and split into chunks that are parsed
+ * in parallel, one chunk per task, so parsing is spread across every core and never holds the text on the heap.
+ * A line belongs to the chunk its first byte is in, so lines that cross the end of a chunk are finished by the chunk
+ * they started in. Anything after the two IDs on a line is ignored, as are blank lines and lines starting with a
+ * comment character.
+ */
+class EdgeChunkParser
+{
+    /**
+     * Number of bytes of the file each task parses.
+     */
+    private static final int CHUNK_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Number of bytes past the end of its chunk a task maps to finish its last line. Lines are never this long.
+     */
+    private static final int LINE_OVERRUN = 1024 * 1024;
+
+    /**
+     * Edges parsed from one chunk of the file, held as two growable arrays of node IDs.
+     */
+    static class EdgeChunk
+    {
+        /**
+         * ID of the first node of each edge.
+         */
+        int[] sources;
+
+        /**
+         * ID of the second node of each edge.
+         */
+        int[] targets;
+
+        /**
+         * Number of edges in the chunk.
+         */
+        int count = 0;
+
+        /**
+         * Largest node ID in the chunk, -1 if it has no edges.
+         */
+        int maxID = -1;
+
+        /**
+         * Primary constructor.
+         * @param capacity Number of edges the chunk can hold before it has to grow
+         */
+        EdgeChunk(int capacity)
+        {
+            this.sources = new int[capacity];
+
+            this.targets = new int[capacity];
+        }
+
+        /**
+         * Add an edge to the chunk.
+         * @param source
+         * @param target
+         */
+        void add(int source, int target)
+        {
+            if(count == sources.length)
+            {
+                sources = Arrays.copyOf(sources, count * 2 + 16);
+
+                targets = Arrays.copyOf(targets, count * 2 + 16);
+            }
+
+            sources[count] = source;
+
+            targets[count] = target;
+
+            count++;
+
+            maxID = Math.max(maxID, Math.max(source, target));
+        }
+    }
+
+    /**
+     * Parse every edge of a file in parallel.
+     * @param inputFile
+     * @param dataStart Position in the file the edges start at, after any header
+     * @param commentCharacters Characters that mark a line as a comment when they start it
+     * @return Edges of each chunk of the file
+     * @throws IOException
+     */
+    static EdgeChunk[] parse(String inputFile, long dataStart, String commentCharacters) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+
+            int chunkCount = (int)Math.max(1, (size - dataStart + CHUNK_BYTES - 1) / CHUNK_BYTES);
+
+            try
+            {
+                return IntStream.range(0, chunkCount).parallel().mapToObj(chunk ->
+                {
+                    long start = dataStart + (long)chunk * CHUNK_BYTES;
+
+                    long end = Math.min(size, start + CHUNK_BYTES);
+
+                    return parseChunk(channel, start, end, dataStart, size, commentCharacters);
+
+                }).toArray(EdgeChunk[]::new);
+            }
+            catch(UncheckedIOException ex)
+            {
+                throw ex.getCause();
+            }
+        }
+    }
+
+    /**
+     * Parse the lines that start in one chunk of the file.
+     * @param channel
+     * @param start Position of the first byte of the chunk
+     * @param end Position after the last byte of the chunk
+     * @param dataStart Position in the file the edges start at
+     * @param size Size of the file
+     * @param commentCharacters Characters that mark a line as a comment
+     * @return Edges of the chunk
+     */
+    private static EdgeChunk parseChunk(FileChannel channel, long start, long end, long dataStart, long size,
+                                        String commentCharacters)
+    {
+        // Also map the byte before the chunk to tell if the chunk starts on a new line
+        long mapStart = start > dataStart ? start - 1 : start;
+
+        long mapEnd = Math.min(size, end + LINE_OVERRUN);
+
+        MappedByteBuffer buffer;
+
+        try
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        }
+        catch(IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+
+        int limit = buffer.limit();
+
+        int chunkEnd = (int)(end - mapStart);
+
+        int position = 0;
+
+        if(mapStart < start)
+        {
+            position = buffer.get(0) == '\n' ? 1 : skipLine(buffer, 0, limit);
+        }
+
+        EdgeChunk chunk = new EdgeChunk((int)((end - start) / 16) + 16);
+
+        while(position < chunkEnd)
+        {
+            position = skipSpaces(buffer, position, limit);
+
+            if(position >= limit) break;
+
+            byte character = buffer.get(position);
+
+            if(character == '\n' || character == '\r' || commentCharacters.indexOf(character) >= 0)
+            {
+                position = skipLine(buffer, position, limit);
+
+                continue;
+            }
+
+            long source = 0;
+
+            int digitsStart = position;
+
+            while(position < limit && isDigit(buffer.get(position)))
+            {
+                source = source * 10 + (buffer.get(position++) - '0');
+            }
+
+            int sourceEnd = position;
+
+            position = skipSpaces(buffer, position, limit);
+
+            long target = 0;
+
+            int targetStart = position;
+
+            while(position < limit && isDigit(buffer.get(position)))
+            {
+                target = target * 10 + (buffer.get(position++) - '0');
+            }
+
+            if(sourceEnd == digitsStart || position == targetStart || source > Integer.MAX_VALUE ||
+               target > Integer.MAX_VALUE)
+            {
+                throw new IllegalArgumentException("Couldn't parse the edge at byte " + (mapStart + digitsStart) +
+                                                   " - each line needs two node IDs between 0 and " +
+                                                   Integer.MAX_VALUE + ".");
+            }
+
+            chunk.add((int)source, (int)target);
+
+            position = skipLine(buffer, position, limit);
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Check if a byte is an ASCII digit.
+     * @param character
+     * @return
+     */
+    private static boolean isDigit(byte character)
+    {
+        return character >= '0' && character <= '9';
+    }
+
+    /**
+     * Skip the spaces and tabs at a position.
+     * @param buffer
+     * @param position
+     * @param limit
+     * @return Position of the first byte that isn't a space or tab
+     */
+    private static int skipSpaces(MappedByteBuffer buffer, int position, int limit)
+    {
+        while(position < limit && (buffer.get(position) == ' ' || buffer.get(position) == '\t'))
+        {
+            position++;
+        }
+
+        return position;
+    }
+
+    /**
+     * Skip to the start of the next line.
+     * @param buffer
+     * @param position
+     * @param limit
+     * @return Position after the next newline, or the limit if there is none
+     */
+    private static int skipLine(MappedByteBuffer buffer, int position, int limit)
+    {
+        while(position < limit && buffer.get(position) != '\n')
+        {
+            position++;
+        }
+
+        return Math.min(position + 1, limit);
+    }
+}
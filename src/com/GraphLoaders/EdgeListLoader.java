@@ -0,0 +1,28 @@
+package com.GraphLoaders;
+
+import java.io.IOException;
+
+/**
+ * Loads networks from edge lists, such as the SNAP datasets, where each line holds the IDs of the two nodes of an
+ * edge. Lines starting with # or % are comments. The file is parsed in parallel chunks and the topology is built
+ * straight from the edges, so loading needs little more memory than the network itself.
+ */
+public class EdgeListLoader
+{
+    /**
+     * Characters that start a comment line in an edge list.
+     */
+    private static final String COMMENT_CHARACTERS = "#%";
+
+    /**
+     * Load an edge list.
+     * @param inputFile
+     * @param options Clusters and initial state of the nodes
+     * @return GraphInput of the network
+     * @throws IOException
+     */
+    public static GraphInput load(String inputFile, LoadOptions options) throws IOException
+    {
+        return GraphAssembler.assemble(EdgeChunkParser.parse(inputFile, 0, COMMENT_CHARACTERS), options);
+    }
+}
@@ -0,0 +1,476 @@
+package com.GraphLoaders;
+
+import com.GraphLoaders.EdgeChunkParser.EdgeChunk;
+import com.Helpers.SocketInfo;
+import com.Network.GraphTopology;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Builds the topology and initial state of a network straight from parsed edges, without going through a tree of
+ * maps. Every edge is added in both directions and duplicate edges are dropped, since nodes expect a message from
+ * every neighbor they send to. Only nodes that have at least one edge are part of the network. The clusters of the
+ * nodes and their initial state come from the LoadOptions.
+ */
+class GraphAssembler
+{
+    /**
+     * Build the network from the edges of an input file.
+     * @param chunks Edges parsed from each chunk of the file
+     * @param options Clusters and initial state of the nodes
+     * @return GraphInput of the network
+     * @throws IOException If the assignment or state file couldn't be read
+     */
+    static GraphInput assemble(EdgeChunk[] chunks, LoadOptions options) throws IOException
+    {
+        int[] nodeIDs = collectNodeIDs(chunks);
+
+        int nodeCount = nodeIDs.length;
+
+        // Assign each node to a cluster, by its position in nodeIDs
+        List<String> clusterIDs = new ArrayList<>();
+
+        int[] clusterOfNode = assignClusters(nodeIDs, options, clusterIDs);
+
+        // Order the nodes by cluster, keeping them ordered by node ID within each cluster
+        int[] clusterOffsets = new int[clusterIDs.size() + 1];
+
+        for(int cluster : clusterOfNode)
+        {
+            clusterOffsets[cluster + 1]++;
+        }
+
+        for(int cluster = 0; cluster < clusterIDs.size(); cluster++)
+        {
+            clusterOffsets[cluster + 1] += clusterOffsets[cluster];
+        }
+
+        int[] cursors = Arrays.copyOf(clusterOffsets, clusterIDs.size());
+
+        int[] indexOfNode = new int[nodeCount];
+
+        int[] indexedNodeIDs = new int[nodeCount];
+
+        for(int node = 0; node < nodeCount; node++)
+        {
+            int index = cursors[clusterOfNode[node]]++;
+
+            indexOfNode[node] = index;
+
+            indexedNodeIDs[index] = nodeIDs[node];
+        }
+
+        // Replace the node IDs of the edges with indexes, looking them up in a table when it is small enough
+        int maxID = nodeCount == 0 ? -1 : nodeIDs[nodeCount - 1];
+
+        int[] indexOfID = null;
+
+        if(maxID < 4L * nodeCount + 1024)
+        {
+            indexOfID = new int[maxID + 1];
+
+            for(int node = 0; node < nodeCount; node++)
+            {
+                indexOfID[nodeIDs[node]] = indexOfNode[node];
+            }
+        }
+
+        int[] indexTable = indexOfID;
+
+        IntStream.range(0, chunks.length).parallel().forEach(chunk ->
+        {
+            EdgeChunk edges = chunks[chunk];
+
+            for(int edge = 0; edge < edges.count; edge++)
+            {
+                if(indexTable != null)
+                {
+                    edges.sources[edge] = indexTable[edges.sources[edge]];
+
+                    edges.targets[edge] = indexTable[edges.targets[edge]];
+                }
+                else
+                {
+                    edges.sources[edge] = indexOfNode[Arrays.binarySearch(nodeIDs, edges.sources[edge])];
+
+                    edges.targets[edge] = indexOfNode[Arrays.binarySearch(nodeIDs, edges.targets[edge])];
+                }
+            }
+        });
+
+        int[] offsets = new int[nodeCount + 1];
+
+        int[] targets = buildAdjacency(chunks, offsets);
+
+        SocketInfo[] clusterSockets = new SocketInfo[clusterIDs.size()];
+
+        for(int cluster = 0; cluster < clusterIDs.size(); cluster++)
+        {
+            clusterSockets[cluster] = new SocketInfo(options.getHost(), options.getBasePort() + cluster);
+        }
+
+        int selfCluster = options.getSelfClusterID() == null ? 0 : clusterIDs.indexOf(options.getSelfClusterID());
+
+        if(selfCluster < 0)
+        {
+            throw new IllegalArgumentException("Cluster " + options.getSelfClusterID() + " isn't in the network.");
+        }
+
+        GraphTopology topology = new GraphTopology(clusterIDs.toArray(new String[0]), clusterSockets, selfCluster,
+                                                   clusterOffsets, indexedNodeIDs, offsets, targets);
+
+        return buildInitialState(topology, options);
+    }
+
+    /**
+     * Find every node ID that is part of an edge.
+     * @param chunks
+     * @return Sorted array of the node IDs, without duplicates
+     */
+    private static int[] collectNodeIDs(EdgeChunk[] chunks)
+    {
+        int maxID = -1;
+
+        long endpointCount = 0;
+
+        for(EdgeChunk chunk : chunks)
+        {
+            maxID = Math.max(maxID, chunk.maxID);
+
+            endpointCount += 2L * chunk.count;
+        }
+
+        // Mark the IDs in a table when it is no bigger than the edges, otherwise sort them
+        if(maxID < 2 * endpointCount + 1024)
+        {
+            boolean[] isNode = new boolean[maxID + 1];
+
+            IntStream.range(0, chunks.length).parallel().forEach(chunk ->
+            {
+                EdgeChunk edges = chunks[chunk];
+
+                for(int edge = 0; edge < edges.count; edge++)
+                {
+                    isNode[edges.sources[edge]] = true;
+
+                    isNode[edges.targets[edge]] = true;
+                }
+            });
+
+            int nodeCount = 0;
+
+            for(boolean node : isNode)
+            {
+                if(node) nodeCount++;
+            }
+
+            int[] nodeIDs = new int[nodeCount];
+
+            int position = 0;
+
+            for(int nodeID = 0; nodeID <= maxID; nodeID++)
+            {
+                if(isNode[nodeID]) nodeIDs[position++] = nodeID;
+            }
+
+            return nodeIDs;
+        }
+
+        int[] endpoints = new int[Math.toIntExact(endpointCount)];
+
+        int position = 0;
+
+        for(EdgeChunk chunk : chunks)
+        {
+            System.arraycopy(chunk.sources, 0, endpoints, position, chunk.count);
+
+            System.arraycopy(chunk.targets, 0, endpoints, position + chunk.count, chunk.count);
+
+            position += 2 * chunk.count;
+        }
+
+        Arrays.parallelSort(endpoints);
+
+        int nodeCount = 0;
+
+        for(int i = 0; i < endpoints.length; i++)
+        {
+            if(i == 0 || endpoints[i] != endpoints[i - 1]) endpoints[nodeCount++] = endpoints[i];
+        }
+
+        return Arrays.copyOf(endpoints, nodeCount);
+    }
+
+    /**
+     * Assign every node to a cluster, either from the assignment file or by splitting the node IDs into ranges.
+     * @param nodeIDs Sorted node IDs
+     * @param options
+     * @param clusterIDs List the IDs of the clusters are added to
+     * @return Position in clusterIDs of the cluster of each node
+     * @throws IOException
+     */
+    private static int[] assignClusters(int[] nodeIDs, LoadOptions options, List<String> clusterIDs)
+            throws IOException
+    {
+        int[] clusterOfNode = new int[nodeIDs.length];
+
+        if(options.getAssignmentFile() == null)
+        {
+            int clusterCount = options.getClusterCount();
+
+            for(int cluster = 0; cluster < clusterCount; cluster++)
+            {
+                clusterIDs.add("Cluster" + cluster);
+            }
+
+            for(int node = 0; node < nodeIDs.length; node++)
+            {
+                clusterOfNode[node] = (int)((long)node * clusterCount / nodeIDs.length);
+            }
+
+            return clusterOfNode;
+        }
+
+        Arrays.fill(clusterOfNode, -1);
+
+        Map<String,Integer> clusterPositions = new HashMap<>();
+
+        Map<Integer,String> assignments = new HashMap<>();
+
+        try(BufferedReader reader = new BufferedReader(new FileReader(options.getAssignmentFile())))
+        {
+            String line;
+
+            while((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+
+                if(line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] parts = line.split("\\s+");
+
+                assignments.put(Integer.parseInt(parts[0]), parts[1]);
+
+                clusterPositions.put(parts[1], 0);
+            }
+        }
+
+        clusterIDs.addAll(clusterPositions.keySet());
+
+        Collections.sort(clusterIDs);
+
+        for(int cluster = 0; cluster < clusterIDs.size(); cluster++)
+        {
+            clusterPositions.put(clusterIDs.get(cluster), cluster);
+        }
+
+        for(int node = 0; node < nodeIDs.length; node++)
+        {
+            String clusterID = assignments.get(nodeIDs[node]);
+
+            if(clusterID == null)
+            {
+                throw new IllegalArgumentException("Node " + nodeIDs[node] + " isn't assigned to a cluster in " +
+                                                   options.getAssignmentFile() + ".");
+            }
+
+            clusterOfNode[node] = clusterPositions.get(clusterID);
+        }
+
+        return clusterOfNode;
+    }
+
+    /**
+     * Build the CSR adjacency of the nodes from the edges, adding each edge in both directions and dropping
+     * duplicates. The arrays of the chunks are released as they are copied.
+     * @param chunks Edges with node indexes instead of IDs
+     * @param offsets Array the offsets of the nodes are written to
+     * @return Targets of the adjacency
+     */
+    private static int[] buildAdjacency(EdgeChunk[] chunks, int[] offsets)
+    {
+        int nodeCount = offsets.length - 1;
+
+        long edgeCount = 0;
+
+        for(EdgeChunk chunk : chunks)
+        {
+            for(int edge = 0; edge < chunk.count; edge++)
+            {
+                offsets[chunk.sources[edge] + 1]++;
+
+                offsets[chunk.targets[edge] + 1]++;
+            }
+
+            edgeCount += 2L * chunk.count;
+        }
+
+        if(edgeCount > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Networks can have at most " + Integer.MAX_VALUE + " edges.");
+        }
+
+        for(int index = 0; index < nodeCount; index++)
+        {
+            offsets[index + 1] += offsets[index];
+        }
+
+        int[] targets = new int[(int)edgeCount];
+
+        int[] cursors = Arrays.copyOf(offsets, nodeCount);
+
+        for(int chunk = 0; chunk < chunks.length; chunk++)
+        {
+            EdgeChunk edges = chunks[chunk];
+
+            for(int edge = 0; edge < edges.count; edge++)
+            {
+                targets[cursors[edges.sources[edge]]++] = edges.targets[edge];
+
+                targets[cursors[edges.targets[edge]]++] = edges.sources[edge];
+            }
+
+            chunks[chunk] = null;
+        }
+
+        // Sort the neighbors of each node and drop duplicates, leaving the number of neighbors kept in cursors
+        IntStream.range(0, nodeCount).parallel().forEach(index ->
+        {
+            int start = offsets[index];
+
+            int end = offsets[index + 1];
+
+            Arrays.sort(targets, start, end);
+
+            int kept = start;
+
+            for(int edge = start; edge < end; edge++)
+            {
+                if(edge == start || targets[edge] != targets[edge - 1]) targets[kept++] = targets[edge];
+            }
+
+            cursors[index] = kept - start;
+        });
+
+        // Move the kept neighbors together, which only ever moves them towards the start
+        int position = 0;
+
+        for(int index = 0; index < nodeCount; index++)
+        {
+            int start = offsets[index];
+
+            offsets[index] = position;
+
+            System.arraycopy(targets, start, targets, position, cursors[index]);
+
+            position += cursors[index];
+        }
+
+        offsets[nodeCount] = position;
+
+        return position == targets.length ? targets : Arrays.copyOf(targets, position);
+    }
+
+    /**
+     * Build the initial state of the nodes, first giving every node the default values and then reading the state
+     * file. The first line of the state file names the state variables, and each following line holds a node ID
+     * followed by its value of each variable.
+     * @param topology
+     * @param options
+     * @return GraphInput of the network
+     * @throws IOException
+     */
+    private static GraphInput buildInitialState(GraphTopology topology, LoadOptions options) throws IOException
+    {
+        int nodeCount = topology.getNodeCount();
+
+        Map<String,double[]> initialValues = new LinkedHashMap<>();
+
+        for(Map.Entry<String,Double> defaultValue : options.getDefaultValues().entrySet())
+        {
+            double[] column = new double[nodeCount];
+
+            Arrays.fill(column, defaultValue.getValue());
+
+            initialValues.put(defaultValue.getKey(), column);
+        }
+
+        if(options.getStateFile() != null)
+        {
+            try(BufferedReader reader = new BufferedReader(new FileReader(options.getStateFile())))
+            {
+                String[] header = reader.readLine().trim().split("\\s+");
+
+                double[][] columns = new double[header.length][];
+
+                for(int variable = 1; variable < header.length; variable++)
+                {
+                    columns[variable] = initialValues.get(header[variable]);
+
+                    if(columns[variable] == null)
+                    {
+                        columns[variable] = new double[nodeCount];
+
+                        Arrays.fill(columns[variable], Double.NaN);
+
+                        initialValues.put(header[variable], columns[variable]);
+                    }
+                }
+
+                int unknownNodes = 0;
+
+                String line;
+
+                while((line = reader.readLine()) != null)
+                {
+                    line = line.trim();
+
+                    if(line.isEmpty() || line.startsWith("#")) continue;
+
+                    String[] values = line.split("\\s+");
+
+                    int index = topology.getIndex(Integer.parseInt(values[0]));
+
+                    if(index < 0)
+                    {
+                        unknownNodes++;
+
+                        continue;
+                    }
+
+                    for(int variable = 1; variable < values.length && variable < header.length; variable++)
+                    {
+                        columns[variable][index] = Double.parseDouble(values[variable]);
+                    }
+                }
+
+                if(unknownNodes > 0)
+                {
+                    System.out.println("Skipped the state of " + unknownNodes + " nodes that don't have any edges.");
+                }
+            }
+        }
+
+        DoubleBuffer[] columns = new DoubleBuffer[initialValues.size()];
+
+        int variable = 0;
+
+        for(double[] column : initialValues.values())
+        {
+            columns[variable++] = DoubleBuffer.wrap(column);
+        }
+
+        return new GraphInput(topology, initialValues.keySet().toArray(new String[0]), columns);
+    }
+}
@@ -0,0 +1,39 @@
+package com.GraphLoaders;
+
+/**
+ * Tool to convert an input file to a binary graph file, so large networks can be memory mapped instead of parsed
+ * every run.
+ */
+public class GraphConverter
+{
+    public static void main(String[] args)
+    {
+        if(args.length < 2 || !args[1].endsWith(BinaryGraphFormat.EXTENSION))
+        {
+            System.out.println("Need input file to convert, followed by the binary graph file to write(*" +
+                                BinaryGraphFormat.EXTENSION + "), and optionally the options of edge lists such " +
+                                "as --clusters and --state.");
+
+            System.exit(1);
+        }
+
+        try
+        {
+            long startTime = System.nanoTime();
+
+            GraphInput input = GraphLoader.load(args[0], LoadOptions.parse(args, 2));
+
+            BinaryGraphFormat.write(input, args[1]);
+
+            System.out.println(String.format("Converted %d nodes and %d edges in %.3f seconds",
+                                             input.getTopology().getNodeCount(), input.getTopology().getEdgeCount(),
+                                             (System.nanoTime() - startTime) / 1e9));
+        }
+        catch(Exception ex)
+        {
+            ex.printStackTrace();
+
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.GraphLoaders;
+
+import com.Network.GraphTopology;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Everything read from an input file that is needed to build a cluster - the topology of the network and the initial
+ * value of every state variable of every node.
+ */
+public class GraphInput
+{
+    /**
+     * Structure of the network.
+     */
+    private GraphTopology topology;
+
+    /**
+     * Names of the state variables in the input.
+     */
+    private String[] variableNames;
+
+    /**
+     * Initial values of each state variable, indexed by the index of the node in the topology. NaN for nodes that
+     * don't have the variable.
+     */
+    private DoubleBuffer[] initialValues;
+
+    /**
+     * Primary constructor.
+     * @param topology Structure of the network
+     * @param variableNames Names of the state variables
+     * @param initialValues Initial values of each state variable, indexed by the index of the node
+     */
+    public GraphInput(GraphTopology topology, String[] variableNames, DoubleBuffer[] initialValues)
+    {
+        this.topology = topology;
+
+        this.variableNames = variableNames;
+
+        this.initialValues = initialValues;
+    }
+
+    /**
+     * Get the structure of the network.
+     * @return
+     */
+    public GraphTopology getTopology()
+    {
+        return topology;
+    }
+
+    /**
+     * Get the number of state variables in the input.
+     * @return
+     */
+    public int getVariableCount()
+    {
+        return variableNames.length;
+    }
+
+    /**
+     * Get the name of a state variable.
+     * @param variable Position of the variable
+     * @return
+     */
+    public String getVariableName(int variable)
+    {
+        return variableNames[variable];
+    }
+
+    /**
+     * Get a read-only view of the initial values of a state variable, indexed by the index of the node.
+     * @param variable Position of the variable
+     * @return
+     */
+    public DoubleBuffer getInitialValues(int variable)
+    {
+        return initialValues[variable].asReadOnlyBuffer();
+    }
+}
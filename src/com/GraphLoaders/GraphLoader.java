@@ -0,0 +1,75 @@
+package com.GraphLoaders;
+
+import com.Parser;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reads an input file in whichever format it is in and builds the topology and initial state of the network from it.
+ */
+public class GraphLoader
+{
+    /**
+     * Load an input file, choosing the format by its extension.
+     * @param inputFile
+     * @param selfClusterID ID of the cluster that runs on this instance, or null to use the one marked in the file
+     * @return GraphInput of the network
+     * @throws IOException
+     */
+    public static GraphInput load(String inputFile, String selfClusterID) throws IOException
+    {
+        LoadOptions options = new LoadOptions();
+
+        options.setSelfClusterID(selfClusterID);
+
+        return load(inputFile, options);
+    }
+
+    /**
+     * Load an input file, choosing the format by its extension. Binary graph files are memory mapped, YAML files are
+     * parsed into a tree of maps, Matrix Market files are read as coordinate matrices, and anything else is read as
+     * an edge list. The clusters and initial state of edge lists and Matrix Market files come from the options.
+     * @param inputFile
+     * @param options
+     * @return GraphInput of the network
+     * @throws IOException
+     */
+    public static GraphInput load(String inputFile, LoadOptions options) throws IOException
+    {
+        if(inputFile.endsWith(BinaryGraphFormat.EXTENSION))
+        {
+            return BinaryGraphFormat.read(inputFile, options.getSelfClusterID());
+        }
+
+        if(inputFile.endsWith(MatrixMarketLoader.EXTENSION))
+        {
+            return MatrixMarketLoader.load(inputFile, options);
+        }
+
+        if(!inputFile.endsWith(".yml") && !inputFile.endsWith(".yaml"))
+        {
+            return EdgeListLoader.load(inputFile, options);
+        }
+
+        Map<String,Object> networkRepresentation = readYAMLFile(inputFile);
+
+        if(networkRepresentation == null)
+        {
+            throw new IOException("Invalid input file " + inputFile + ".");
+        }
+
+        return Parser.buildGraphInput(networkRepresentation, options.getSelfClusterID());
+    }
+
+    /**
+     * Read a YAML input file. The top level of the file maps each cluster ID to the details of that cluster.
+     * @param inputFile
+     * @return Map representation of the graph, or null if the file is empty
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String,Object> readYAMLFile(String inputFile)
+    {
+        return (Map<String,Object>)Parser.readYAMLFile(inputFile);
+    }
+}
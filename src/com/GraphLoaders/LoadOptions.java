@@ -0,0 +1,206 @@
+package com.GraphLoaders;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Options from the command line that control how an input file is loaded. Edge lists and Matrix Market files only
+ * hold the edges of a graph, so the clusters and initial state of the nodes are given here instead. The directory the
+ * output of the run is written to can also be given here in place of the one in the config file.
+ */
+public class LoadOptions
+{
+    /**
+     * Default port of the first cluster when the clusters aren't read from the input file. Each following cluster
+     * listens on the next port.
+     */
+    public static final int DEFAULT_BASE_PORT = 20005;
+
+    /**
+     * ID of the cluster that runs on this instance, or null to use the default of the input file.
+     */
+    private String selfClusterID;
+
+    /**
+     * Number of clusters the nodes of an edge list are split between, by ranges of node IDs.
+     */
+    private int clusterCount = 1;
+
+    /**
+     * File with the cluster of each node of an edge list, or null to split the nodes by ranges of node IDs.
+     */
+    private String assignmentFile;
+
+    /**
+     * File with the initial state values of the nodes of an edge list, or null if there is none.
+     */
+    private String stateFile;
+
+    /**
+     * Initial values given to every node of an edge list, before any values from the state file.
+     */
+    private Map<String,Double> defaultValues = new LinkedHashMap<>();
+
+    /**
+     * Host the clusters of an edge list run on.
+     */
+    private String host = "localhost";
+
+    /**
+     * Port of the first cluster of an edge list.
+     */
+    private int basePort = DEFAULT_BASE_PORT;
+
+    /**
+     * Directory the output of the run is written to, or null to use the one in the config file.
+     */
+    private String outputDirectory;
+
+    /**
+     * Parse the options that follow the required arguments on the command line.
+     * @param args
+     * @param start Position of the first option in args
+     * @return LoadOptions that were given
+     * @throws IllegalArgumentException If an option isn't recognized or is missing its value
+     */
+    public static LoadOptions parse(String[] args, int start)
+    {
+        LoadOptions options = new LoadOptions();
+
+        for(int i = start; i < args.length; i += 2)
+        {
+            if(i + 1 >= args.length)
+            {
+                throw new IllegalArgumentException("Option " + args[i] + " needs a value.");
+            }
+
+            String value = args[i + 1];
+
+            switch(args[i])
+            {
+                case "--cluster":
+                    options.selfClusterID = value;
+                    break;
+
+                case "--clusters":
+                    options.clusterCount = Integer.parseInt(value);
+                    break;
+
+                case "--assignment":
+                    options.assignmentFile = value;
+                    break;
+
+                case "--state":
+                    options.stateFile = value;
+                    break;
+
+                case "--init":
+                    for(String assignment : value.split(","))
+                    {
+                        String[] parts = assignment.split("=");
+
+                        options.defaultValues.put(parts[0].trim(), Double.parseDouble(parts[1].trim()));
+                    }
+                    break;
+
+                case "--host":
+                    options.host = value;
+                    break;
+
+                case "--port":
+                    options.basePort = Integer.parseInt(value);
+                    break;
+
+                case "--output-dir":
+                    options.outputDirectory = value;
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+            }
+        }
+
+        return options;
+    }
+
+    /**
+     * Get ID of the cluster that runs on this instance, or null to use the default of the input file.
+     * @return
+     */
+    public String getSelfClusterID()
+    {
+        return selfClusterID;
+    }
+
+    /**
+     * Set ID of the cluster that runs on this instance.
+     * @param selfClusterID
+     */
+    public void setSelfClusterID(String selfClusterID)
+    {
+        this.selfClusterID = selfClusterID;
+    }
+
+    /**
+     * Get number of clusters the nodes of an edge list are split between.
+     * @return
+     */
+    public int getClusterCount()
+    {
+        return clusterCount;
+    }
+
+    /**
+     * Get file with the cluster of each node, or null if there is none.
+     * @return
+     */
+    public String getAssignmentFile()
+    {
+        return assignmentFile;
+    }
+
+    /**
+     * Get file with the initial state values of the nodes, or null if there is none.
+     * @return
+     */
+    public String getStateFile()
+    {
+        return stateFile;
+    }
+
+    /**
+     * Get initial values given to every node, by the name of the state variable.
+     * @return
+     */
+    public Map<String,Double> getDefaultValues()
+    {
+        return defaultValues;
+    }
+
+    /**
+     * Get host the clusters of an edge list run on.
+     * @return
+     */
+    public String getHost()
+    {
+        return host;
+    }
+
+    /**
+     * Get port of the first cluster of an edge list.
+     * @return
+     */
+    public int getBasePort()
+    {
+        return basePort;
+    }
+
+    /**
+     * Get directory the output of the run is written to, or null to use the one in the config file.
+     * @return
+     */
+    public String getOutputDirectory()
+    {
+        return outputDirectory;
+    }
+}
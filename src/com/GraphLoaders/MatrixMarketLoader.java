@@ -0,0 +1,85 @@
+package com.GraphLoaders;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads networks from Matrix Market coordinate files, such as the SuiteSparse collection. Each entry of the matrix
+ * is an edge between the nodes of its row and column, and the row and column numbers are used as node IDs. Values of
+ * the entries are ignored. The header is read first to find where the entries start, and the entries are then parsed
+ * in parallel chunks like an edge list.
+ */
+public class MatrixMarketLoader
+{
+    /**
+     * Extension of Matrix Market files.
+     */
+    public static final String EXTENSION = ".mtx";
+
+    /**
+     * Load a Matrix Market file.
+     * @param inputFile
+     * @param options Clusters and initial state of the nodes
+     * @return GraphInput of the network
+     * @throws IOException If the file isn't a Matrix Market coordinate file
+     */
+    public static GraphInput load(String inputFile, LoadOptions options) throws IOException
+    {
+        return GraphAssembler.assemble(EdgeChunkParser.parse(inputFile, findDataStart(inputFile), "%"), options);
+    }
+
+    /**
+     * Read the banner, comments and size line of a Matrix Market file.
+     * @param inputFile
+     * @return Position in the file of the first entry
+     * @throws IOException
+     */
+    private static long findDataStart(String inputFile) throws IOException
+    {
+        try(InputStream stream = new BufferedInputStream(new FileInputStream(inputFile)))
+        {
+            long position = 0;
+
+            boolean firstLine = true;
+
+            StringBuilder line = new StringBuilder();
+
+            int character;
+
+            while((character = stream.read()) != -1)
+            {
+                position++;
+
+                if(character != '\n')
+                {
+                    line.append((char)character);
+
+                    continue;
+                }
+
+                String text = line.toString().trim();
+
+                line.setLength(0);
+
+                if(firstLine)
+                {
+                    if(!text.startsWith("%%MatrixMarket") || !text.toLowerCase().contains("coordinate"))
+                    {
+                        throw new IOException(inputFile + " isn't a Matrix Market coordinate file.");
+                    }
+
+                    firstLine = false;
+                }
+                else if(!text.isEmpty() && !text.startsWith("%"))
+                {
+                    // The size line is the last line of the header
+                    return position;
+                }
+            }
+
+            throw new IOException(inputFile + " is missing the size line of its header.");
+        }
+    }
+}
@@ -1,18 +1,28 @@
 package com.Helpers;
 
+import com.Helpers.OutputWriter.ResultSinkType;
+import com.Helpers.OutputWriter.WaitStrategy;
+import com.Network.ConvergenceMetric;
+import com.Network.ExecutionEngine;
+import com.Network.RecordingPolicy;
+import com.Network.TraceLevel;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Class to read config values for application
  */
 public class ConfigReader
 {
-    private String pathToConfigFile = "config.yml";
+    private String pathToConfigFile;
 
     private String databaseInstance;
 
@@ -22,6 +32,54 @@ public class ConfigReader
 
     private String databaseTable;
 
+    private int databaseBatchSize = 1000;
+
+    private int resultRingSize = 64 * 1024;
+
+    private WaitStrategy resultRingWait = WaitStrategy.SLEEPING;
+
+    private ResultSinkType resultSink = ResultSinkType.DATABASE;
+
+    private String resultFile = "results.gsr";
+
+    private int resultFileWindow = 16;
+
+    private String outputDirectory = ".";
+
+    private int outputFlushMillis = 1000;
+
+    private RecordingPolicy defaultRecordingPolicy = RecordingPolicy.EVERY;
+
+    private Map<String,RecordingPolicy> recordingPolicies = new HashMap<>();
+
+    private int outboundFlushBytes = 64 * 1024;
+
+    private long outboundFlushMillis = 0;
+
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+
+    private ExecutionEngine executionEngine = ExecutionEngine.THREADS;
+
+    private int superstepWorkers = 0;
+
+    private boolean stateOffHeap = false;
+
+    private int maxStaleness = 0;
+
+    private String convergenceVariable;
+
+    private ConvergenceMetric convergenceMetric = ConvergenceMetric.MAX_CHANGE;
+
+    private double convergenceEpsilon = 1e-6;
+
+    private TraceLevel traceLevel = TraceLevel.NONE;
+
+    private Set<Integer> traceNodes = new HashSet<>();
+
+    private int traceNodeInterval = 1;
+
+    private int traceIterationInterval = 1;
+
     /**
      * Get string that holds host, port, and database name information.
      * @return
@@ -59,10 +117,249 @@ public class ConfigReader
     }
 
     /**
-     * Primary constructor.
+     * Get number of state values inserted into the database with each batch.
+     * @return
+     */
+    public int getDatabaseBatchSize()
+    {
+        return databaseBatchSize;
+    }
+
+    /**
+     * Get number of state values that can wait to be saved before the nodes have to wait for the result sink.
+     * @return
+     */
+    public int getResultRingSize()
+    {
+        return resultRingSize;
+    }
+
+    /**
+     * Get how the result writer waits for values, and the nodes wait for room to record them.
+     * @return
+     */
+    public WaitStrategy getResultRingWait()
+    {
+        return resultRingWait;
+    }
+
+    /**
+     * Get where the state values recorded by the nodes are saved.
+     * @return
+     */
+    public ResultSinkType getResultSink()
+    {
+        return resultSink;
+    }
+
+    /**
+     * Get file the state values are written to when they are saved to a file.
+     * @return
+     */
+    public String getResultFile()
+    {
+        return resultFile;
+    }
+
+    /**
+     * Get most iterations whose values are gathered at once before being written to the result file.
+     * @return
+     */
+    public int getResultFileWindow()
+    {
+        return resultFileWindow;
+    }
+
+    /**
+     * Get directory the result file and the text output of the nodes are written to, with {run} replaced by the
+     * name of the run.
+     * @return
+     */
+    public String getOutputDirectory()
+    {
+        return outputDirectory.replace("{run}", databaseTable != null ? databaseTable : "run");
+    }
+
+    /**
+     * Set directory the result file and the text output of the nodes are written to, in place of the one in the
+     * config file.
+     * @param outputDirectory
+     */
+    public void setOutputDirectory(String outputDirectory)
+    {
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Get longest time in milliseconds text output waits in its buffer before it's written to its file, 0 to only
+     * write it once the buffer is full or the run ends.
+     * @return
+     */
+    public int getOutputFlushMillis()
+    {
+        return outputFlushMillis;
+    }
+
+    /**
+     * Get recording policy of the state variables that don't have their own.
+     * @return
+     */
+    public RecordingPolicy getDefaultRecordingPolicy()
+    {
+        return defaultRecordingPolicy;
+    }
+
+    /**
+     * Get recording policy of each state variable that has its own, by name.
+     * @return
+     */
+    public Map<String,RecordingPolicy> getRecordingPolicies()
+    {
+        return recordingPolicies;
+    }
+
+    /**
+     * Get number of bytes buffered for another cluster after which they are sent.
+     * @return
+     */
+    public int getOutboundFlushBytes()
+    {
+        return outboundFlushBytes;
+    }
+
+    /**
+     * Get longest time in milliseconds a message to another cluster is held back to be sent with other messages.
+     * @return
+     */
+    public long getOutboundFlushMillis()
+    {
+        return outboundFlushMillis;
+    }
+
+    /**
+     * Get kind of thread the nodes run on.
+     * @return
+     */
+    public ThreadMode getThreadMode()
+    {
+        return threadMode;
+    }
+
+    /**
+     * Get engine that runs the nodes, either a thread per node or supersteps on a pool of workers.
+     * @return
+     */
+    public ExecutionEngine getExecutionEngine()
+    {
+        return executionEngine;
+    }
+
+    /**
+     * Get number of workers used by the superstep engine, 0 to use one per core.
+     * @return
+     */
+    public int getSuperstepWorkers()
+    {
+        return superstepWorkers;
+    }
+
+    /**
+     * Get whether the state variables of the nodes are stored off the heap.
+     * @return
+     */
+    public boolean isStateOffHeap()
+    {
+        return stateOffHeap;
+    }
+
+    /**
+     * Get number of iterations a node can run ahead of its slowest neighbor, 0 to keep every node in step.
+     * @return
+     */
+    public int getMaxStaleness()
+    {
+        return maxStaleness;
+    }
+
+    /**
+     * Get name of the state variable whose convergence stops the run early, or null to always run every iteration.
+     * @return
+     */
+    public String getConvergenceVariable()
+    {
+        return convergenceVariable;
+    }
+
+    /**
+     * Get how the convergence of the variable is measured each iteration.
+     * @return
+     */
+    public ConvergenceMetric getConvergenceMetric()
+    {
+        return convergenceMetric;
+    }
+
+    /**
+     * Get value the convergence measure has to fall below for the run to stop.
+     * @return
+     */
+    public double getConvergenceEpsilon()
+    {
+        return convergenceEpsilon;
+    }
+
+    /**
+     * Get most detailed level of trace messages the nodes print, NONE to print none.
+     * @return
+     */
+    public TraceLevel getTraceLevel()
+    {
+        return traceLevel;
+    }
+
+    /**
+     * Get IDs of the nodes that print trace messages, empty to pick them by the trace node interval instead.
+     * @return
+     */
+    public Set<Integer> getTraceNodes()
+    {
+        return traceNodes;
+    }
+
+    /**
+     * Get interval of the nodes that print trace messages, where 1 traces every node and N every Nth node.
+     * @return
+     */
+    public int getTraceNodeInterval()
+    {
+        return traceNodeInterval;
+    }
+
+    /**
+     * Get interval of the iterations trace messages are printed in, where 1 prints them every iteration.
+     * @return
+     */
+    public int getTraceIterationInterval()
+    {
+        return traceIterationInterval;
+    }
+
+    /**
+     * Primary constructor, which reads config.yml from the working directory.
      */
     public ConfigReader()
     {
+        this("config.yml");
+    }
+
+    /**
+     * Constructor that reads the config values from the given file.
+     * @param pathToConfigFile
+     */
+    public ConfigReader(String pathToConfigFile)
+    {
+        this.pathToConfigFile = pathToConfigFile;
+
         Map configValuesMap = null;
         try
         {
@@ -91,5 +388,118 @@ public class ConfigReader
         databasePassword = (String)configValuesMap.get("database_password");
 
         databaseTable = (String)configValuesMap.get("database_table");
+
+        databaseBatchSize = getInt(configValuesMap, "database_batch_size", databaseBatchSize);
+
+        resultRingSize = getInt(configValuesMap, "result_ring_size", resultRingSize);
+
+        String waitName = (String)configValuesMap.get("result_ring_wait");
+
+        if(waitName != null) resultRingWait = WaitStrategy.valueOf(waitName.toUpperCase());
+
+        String sinkName = (String)configValuesMap.get("result_sink");
+
+        if(sinkName != null) resultSink = ResultSinkType.valueOf(sinkName.toUpperCase());
+
+        Object resultFileValue = configValuesMap.get("result_file");
+
+        if(resultFileValue != null) resultFile = resultFileValue.toString();
+
+        resultFileWindow = getInt(configValuesMap, "result_file_window", resultFileWindow);
+
+        Object outputDirectoryValue = configValuesMap.get("output_directory");
+
+        if(outputDirectoryValue != null) outputDirectory = outputDirectoryValue.toString();
+
+        outputFlushMillis = getInt(configValuesMap, "output_flush_millis", outputFlushMillis);
+
+        Object policyValue = configValuesMap.get("recording_policy");
+
+        if(policyValue instanceof Map)
+        {
+            for(Object entry : ((Map)policyValue).entrySet())
+            {
+                String variable = ((Map.Entry)entry).getKey().toString();
+
+                RecordingPolicy policy = RecordingPolicy.parse(((Map.Entry)entry).getValue().toString());
+
+                if(variable.equals("default"))
+                {
+                    defaultRecordingPolicy = policy;
+                }
+                else
+                {
+                    recordingPolicies.put(variable, policy);
+                }
+            }
+        }
+        else if(policyValue != null)
+        {
+            defaultRecordingPolicy = RecordingPolicy.parse(policyValue.toString());
+        }
+
+        outboundFlushBytes = getInt(configValuesMap, "outbound_flush_bytes", outboundFlushBytes);
+
+        outboundFlushMillis = getInt(configValuesMap, "outbound_flush_millis", (int)outboundFlushMillis);
+
+        threadMode = ThreadMode.fromName((String)configValuesMap.get("thread_mode"));
+
+        String engineName = (String)configValuesMap.get("execution_engine");
+
+        if(engineName != null) executionEngine = ExecutionEngine.valueOf(engineName.toUpperCase());
+
+        superstepWorkers = getInt(configValuesMap, "superstep_workers", superstepWorkers);
+
+        Object offHeapValue = configValuesMap.get("state_off_heap");
+
+        if(offHeapValue != null) stateOffHeap = (Boolean)offHeapValue;
+
+        maxStaleness = getInt(configValuesMap, "max_staleness", maxStaleness);
+
+        Object convergenceValue = configValuesMap.get("convergence_variable");
+
+        if(convergenceValue != null) convergenceVariable = convergenceValue.toString();
+
+        String metricName = (String)configValuesMap.get("convergence_metric");
+
+        if(metricName != null) convergenceMetric = ConvergenceMetric.valueOf(metricName.toUpperCase());
+
+        Object epsilonValue = configValuesMap.get("convergence_epsilon");
+
+        // YAML reads numbers like 1e-6 without a decimal point as strings
+        if(epsilonValue != null) convergenceEpsilon = Double.parseDouble(epsilonValue.toString());
+
+        Object traceValue = configValuesMap.get("trace_level");
+
+        if(traceValue != null) traceLevel = TraceLevel.valueOf(traceValue.toString().toUpperCase());
+
+        Object traceNodesValue = configValuesMap.get("trace_nodes");
+
+        if(traceNodesValue instanceof List)
+        {
+            for(Object nodeID : (List)traceNodesValue)
+            {
+                traceNodes.add(((Number)nodeID).intValue());
+            }
+        }
+
+        traceNodeInterval = Math.max(1, getInt(configValuesMap, "trace_node_interval", traceNodeInterval));
+
+        traceIterationInterval = Math.max(1, getInt(configValuesMap, "trace_iteration_interval",
+                                                    traceIterationInterval));
+    }
+
+    /**
+     * Get an integer config value, or a default value if it isn't in the config file.
+     * @param configValuesMap
+     * @param key
+     * @param defaultValue
+     * @return
+     */
+    private static int getInt(Map<?,?> configValuesMap, String key, int defaultValue)
+    {
+        Object value = configValuesMap.get(key);
+
+        return value == null ? defaultValue : ((Number)value).intValue();
     }
 }
@@ -0,0 +1,668 @@
+package com.Helpers.OutputWriter;
+
+import com.Network.GraphTopology;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Sink that writes the state values recorded by the nodes of this cluster to a binary file instead of a database.
+ * Values are gathered into one block per iteration, holding a column of doubles for each variable set that iteration,
+ * indexed by the position of the node in the cluster. A block is written once every node has recorded a value for a
+ * later iteration, or once more than a set number of iterations are being gathered at once, through a large buffer
+ * on the writer thread. Columns that only a few nodes set, such as those of blocks holding values recorded after
+ * their iteration was written, are written as the positions and values of just those nodes. The layout of the file
+ * is described in ResultFile, which also reads it back.
+ */
+public class ColumnarFileSink implements ResultSink
+{
+    /**
+     * Number of bytes buffered before they are written to the file.
+     */
+    private static final int BUFFER_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Values of one iteration being gathered, with a column for each variable that has been set.
+     */
+    private static class Block
+    {
+        /**
+         * Iteration the values are from.
+         */
+        final int iterationNumber;
+
+        /**
+         * Column of values of each variable by its ID, null if no node set the variable this iteration.
+         */
+        double[][] columns = new double[0][];
+
+        /**
+         * Number of nodes with a value in each column, by variable ID.
+         */
+        int[] setCounts = new int[0];
+
+        /**
+         * Number of nodes that have recorded a value for a later iteration.
+         */
+        int passedNodes = 0;
+
+        /**
+         * Number of values added to the block.
+         */
+        long valueCount = 0;
+
+        /**
+         * Primary constructor.
+         * @param iterationNumber
+         */
+        Block(int iterationNumber)
+        {
+            this.iterationNumber = iterationNumber;
+        }
+
+        /**
+         * Set the value of a variable for a node.
+         * @param variableID
+         * @param position Position of the node in the cluster
+         * @param value
+         * @param nodeCount Number of nodes in the cluster
+         */
+        void set(int variableID, int position, double value, int nodeCount)
+        {
+            if(variableID >= columns.length)
+            {
+                columns = Arrays.copyOf(columns, variableID + 1);
+
+                setCounts = Arrays.copyOf(setCounts, variableID + 1);
+            }
+
+            if(columns[variableID] == null)
+            {
+                columns[variableID] = new double[nodeCount];
+
+                Arrays.fill(columns[variableID], Double.NaN);
+            }
+
+            // NaN marks a node without a value, so recording NaN is the same as not recording anything
+            if(Double.isNaN(columns[variableID][position]) != Double.isNaN(value))
+            {
+                setCounts[variableID] += Double.isNaN(value) ? -1 : 1;
+            }
+
+            columns[variableID][position] = value;
+
+            valueCount++;
+        }
+    }
+
+    /**
+     * File the values are written to.
+     */
+    private String outputFile;
+
+    /**
+     * Index of the first node of the cluster in the topology.
+     */
+    private int firstIndex;
+
+    /**
+     * IDs of the nodes in the cluster, by their position.
+     */
+    private int[] nodeIDs;
+
+    /**
+     * Most iterations gathered at once before the oldest is written even though some nodes haven't finished it.
+     */
+    private int window;
+
+    /**
+     * Blocks being gathered, by iteration.
+     */
+    private final TreeMap<Integer,Block> openBlocks = new TreeMap<>();
+
+    /**
+     * Last iteration each node recorded a value for, by its position in the cluster, or -1 if it hasn't yet.
+     */
+    private int[] latestIterations;
+
+    /**
+     * Names of the variables, by their ID.
+     */
+    private final List<String> variableNames = new ArrayList<>();
+
+    /**
+     * Channel the file is written through, null if it couldn't be opened.
+     */
+    private FileChannel channel;
+
+    /**
+     * Determines if the file can't be written to, in which case values are dropped.
+     */
+    private boolean isFailed = false;
+
+    /**
+     * Number of values written to the file.
+     */
+    private long savedValues = 0;
+
+    /**
+     * Number of values dropped because the file couldn't be written to.
+     */
+    private long droppedValues = 0;
+
+    /**
+     * Time the sink started, used to report how long saving the values took.
+     */
+    private long startTime;
+
+    /**
+     * Buffer the file is written through.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Number of bytes written to the file before the ones in the buffer.
+     */
+    private long writtenBytes = 0;
+
+    /**
+     * Iteration and number of columns of each block written, followed by the variable ID, number of values if it's
+     * sparse or -1 if it's dense, and offset of each column, for the index at the end of the file.
+     */
+    private final List<long[]> blockIndex = new ArrayList<>();
+
+    /**
+     * Primary constructor.
+     * @param outputFile File to write the values to
+     * @param topology Topology of the network, used to lay out the nodes of this cluster
+     * @param window Most iterations gathered at once
+     */
+    public ColumnarFileSink(String outputFile, GraphTopology topology, int window)
+    {
+        this.outputFile = outputFile;
+
+        int selfCluster = topology.getSelfCluster();
+
+        this.firstIndex = topology.getClusterStart(selfCluster);
+
+        this.nodeIDs = new int[topology.getClusterEnd(selfCluster) - firstIndex];
+
+        for(int position = 0; position < nodeIDs.length; position++)
+        {
+            nodeIDs[position] = topology.getNodeID(firstIndex + position);
+        }
+
+        this.window = Math.max(1, window);
+
+        this.latestIterations = new int[nodeIDs.length];
+
+        Arrays.fill(latestIterations, -1);
+    }
+
+    /**
+     * Get the file the values of a cluster are written to, adding the ID of the cluster before the extension when the
+     * network has more than one cluster so clusters sharing a folder don't overwrite each other.
+     * @param resultFile File name from the config file
+     * @param topology
+     * @return
+     */
+    public static String getClusterFile(String resultFile, GraphTopology topology)
+    {
+        if(topology.getClusterCount() == 1) return resultFile;
+
+        String clusterID = topology.getClusterID(topology.getSelfCluster());
+
+        int extensionStart = resultFile.lastIndexOf('.');
+
+        if(extensionStart <= resultFile.lastIndexOf('/')) return resultFile + "-" + clusterID;
+
+        return resultFile.substring(0, extensionStart) + "-" + clusterID + resultFile.substring(extensionStart);
+    }
+
+    /**
+     * Open the file and write its header.
+     */
+    public void start()
+    {
+        startTime = System.nanoTime();
+
+        buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        try
+        {
+            Path file = Paths.get(outputFile);
+
+            if(file.getParent() != null) Files.createDirectories(file.getParent());
+
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                       StandardOpenOption.TRUNCATE_EXISTING);
+
+            writeHeader(channel);
+        }
+        catch(IOException ex)
+        {
+            fail(ex);
+        }
+    }
+
+    /**
+     * Add a state value to the block of its iteration, and write any blocks every node has finished.
+     */
+    public void add(int iterationNumber, int nodeID, int nodeIndex, int variableID, String variableName, double value)
+    {
+        if(isFailed)
+        {
+            droppedValues++;
+
+            return;
+        }
+
+        int position = nodeIndex - firstIndex;
+
+        while(variableNames.size() <= variableID)
+        {
+            variableNames.add(null);
+        }
+
+        variableNames.set(variableID, variableName);
+
+        Block block = openBlocks.get(iterationNumber);
+
+        if(block == null)
+        {
+            block = new Block(iterationNumber);
+
+            // Nodes that skipped this iteration without recording anything have already passed it
+            for(int latest : latestIterations)
+            {
+                if(latest > iterationNumber) block.passedNodes++;
+            }
+
+            openBlocks.put(iterationNumber, block);
+        }
+
+        block.set(variableID, position, value, nodeIDs.length);
+
+        int latest = latestIterations[position];
+
+        if(iterationNumber > latest)
+        {
+            latestIterations[position] = iterationNumber;
+
+            for(Block passedBlock : openBlocks.subMap(latest, true, iterationNumber, false).values())
+            {
+                passedBlock.passedNodes++;
+            }
+
+            while(!openBlocks.isEmpty() && openBlocks.firstEntry().getValue().passedNodes == nodeIDs.length)
+            {
+                writeBlock(openBlocks.pollFirstEntry().getValue());
+            }
+        }
+
+        // Nodes that never record anything, or parts of the network far behind the rest, would otherwise keep
+        // every block open. Values they record later for the iteration are written in a block of their own.
+        if(openBlocks.size() > window) writeBlock(openBlocks.pollFirstEntry().getValue());
+    }
+
+    /**
+     * Blocks are only written once their nodes have moved on, so nothing is held back between batches.
+     */
+    public void endOfBatch()
+    {
+    }
+
+    /**
+     * Write every block still being gathered, then the index of the variables and blocks, and close the file.
+     */
+    public void close()
+    {
+        while(!openBlocks.isEmpty())
+        {
+            writeBlock(openBlocks.pollFirstEntry().getValue());
+        }
+
+        if(!isFailed)
+        {
+            try
+            {
+                long footerOffset = writtenBytes + buffer.position();
+
+                writeFooter(channel);
+
+                flushBuffer(channel);
+
+                // The header is written before the blocks, so the offset of the index is filled in last
+                ByteBuffer offset = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+                offset.putLong(0, footerOffset);
+
+                channel.write(offset, ResultFile.FOOTER_OFFSET_POSITION);
+
+                System.out.println(String.format("Results saved - %d values written to %s(%.1f MB) in %.3f seconds",
+                                                 savedValues, outputFile, channel.size() / 1e6,
+                                                 (System.nanoTime() - startTime) / 1e9));
+            }
+            catch(IOException ex)
+            {
+                fail(ex);
+            }
+        }
+
+        try
+        {
+            if(channel != null) channel.close();
+        }
+        catch(IOException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        if(droppedValues > 0)
+        {
+            System.out.println(String.format("%d values couldn't be saved to %s.", droppedValues, outputFile));
+        }
+    }
+
+    /**
+     * Stop writing to the file after an error, so the values that follow are dropped.
+     * @param ex
+     */
+    private void fail(IOException ex)
+    {
+        System.out.println("Error in writing values to " + outputFile + ".");
+
+        ex.printStackTrace();
+
+        isFailed = true;
+    }
+
+    /**
+     * Write a block to the file, or drop its values if the file can't be written to.
+     * @param block
+     */
+    private void writeBlock(Block block)
+    {
+        if(!isFailed)
+        {
+            try
+            {
+                writeBlock(channel, block);
+
+                savedValues += block.valueCount;
+
+                return;
+            }
+            catch(IOException ex)
+            {
+                fail(ex);
+            }
+        }
+
+        droppedValues += block.valueCount;
+    }
+
+    /**
+     * Write the header of the file and the IDs of the nodes.
+     * @param channel
+     * @throws IOException
+     */
+    private void writeHeader(FileChannel channel) throws IOException
+    {
+        buffer.put(ResultFile.MAGIC);
+
+        buffer.putInt(ResultFile.VERSION);
+
+        buffer.putInt(nodeIDs.length);
+
+        buffer.putInt(firstIndex);
+
+        buffer.putInt(0);
+
+        // Offset of the index, filled in once every block has been written
+        buffer.putLong(0);
+
+        for(int nodeID : nodeIDs)
+        {
+            ensureRoom(channel, Integer.BYTES);
+
+            buffer.putInt(nodeID);
+        }
+
+        pad(channel);
+    }
+
+    /**
+     * Write a block - its iteration, the variable ID and number of values of each column, and then the columns.
+     * Columns with a value for most nodes are written whole, the others as the positions of the nodes that set the
+     * variable followed by their values.
+     * @param channel
+     * @param block
+     * @throws IOException
+     */
+    private void writeBlock(FileChannel channel, Block block) throws IOException
+    {
+        int[] variableIDs = new int[block.columns.length];
+
+        int[] sparseCounts = new int[block.columns.length];
+
+        int columnCount = 0;
+
+        for(int variableID = 0; variableID < block.columns.length; variableID++)
+        {
+            if(block.columns[variableID] == null) continue;
+
+            int setCount = block.setCounts[variableID];
+
+            // A sparse entry takes an int and a double, a dense entry just a double
+            sparseCounts[columnCount] = (long)setCount * (Integer.BYTES + Double.BYTES) <
+                                        (long)nodeIDs.length * Double.BYTES ? setCount : ResultFile.DENSE;
+
+            variableIDs[columnCount++] = variableID;
+        }
+
+        ensureRoom(channel, 2 * Integer.BYTES + 2 * columnCount * Integer.BYTES + Long.BYTES);
+
+        buffer.putInt(block.iterationNumber);
+
+        buffer.putInt(columnCount);
+
+        for(int i = 0; i < columnCount; i++)
+        {
+            buffer.putInt(variableIDs[i]);
+
+            buffer.putInt(sparseCounts[i]);
+        }
+
+        pad(channel);
+
+        long[] indexEntry = new long[2 + 3 * columnCount];
+
+        indexEntry[0] = block.iterationNumber;
+
+        indexEntry[1] = columnCount;
+
+        for(int i = 0; i < columnCount; i++)
+        {
+            indexEntry[2 + 3 * i] = variableIDs[i];
+
+            indexEntry[3 + 3 * i] = sparseCounts[i];
+
+            indexEntry[4 + 3 * i] = writtenBytes + buffer.position();
+
+            double[] column = block.columns[variableIDs[i]];
+
+            if(sparseCounts[i] == ResultFile.DENSE)
+            {
+                writeDoubles(channel, column);
+            }
+            else
+            {
+                writeSparse(channel, column, sparseCounts[i]);
+            }
+        }
+
+        blockIndex.add(indexEntry);
+    }
+
+    /**
+     * Write the index at the end of the file - the name of each variable, and the iteration and columns of each
+     * block.
+     * @param channel
+     * @throws IOException
+     */
+    private void writeFooter(FileChannel channel) throws IOException
+    {
+        ensureRoom(channel, Integer.BYTES);
+
+        buffer.putInt(variableNames.size());
+
+        for(String name : variableNames)
+        {
+            byte[] nameBytes = (name == null ? "" : name).getBytes(StandardCharsets.UTF_8);
+
+            ensureRoom(channel, Integer.BYTES + nameBytes.length);
+
+            buffer.putInt(nameBytes.length);
+
+            buffer.put(nameBytes);
+        }
+
+        ensureRoom(channel, Integer.BYTES);
+
+        buffer.putInt(blockIndex.size());
+
+        for(long[] indexEntry : blockIndex)
+        {
+            int columnCount = (int)indexEntry[1];
+
+            ensureRoom(channel, 2 * Integer.BYTES + columnCount * (2 * Integer.BYTES + Long.BYTES));
+
+            buffer.putInt((int)indexEntry[0]);
+
+            buffer.putInt(columnCount);
+
+            for(int i = 0; i < columnCount; i++)
+            {
+                buffer.putInt((int)indexEntry[2 + 3 * i]);
+
+                buffer.putInt((int)indexEntry[3 + 3 * i]);
+
+                buffer.putLong(indexEntry[4 + 3 * i]);
+            }
+        }
+    }
+
+    /**
+     * Write the positions of the nodes with a value in a column, padded to a multiple of 8 bytes, followed by their
+     * values.
+     * @param channel
+     * @param column
+     * @param setCount Number of nodes with a value in the column
+     * @throws IOException
+     */
+    private void writeSparse(FileChannel channel, double[] column, int setCount) throws IOException
+    {
+        double[] values = new double[setCount];
+
+        int count = 0;
+
+        for(int position = 0; position < column.length && count < setCount; position++)
+        {
+            if(Double.isNaN(column[position])) continue;
+
+            ensureRoom(channel, Integer.BYTES);
+
+            buffer.putInt(position);
+
+            values[count++] = column[position];
+        }
+
+        pad(channel);
+
+        writeDoubles(channel, values);
+    }
+
+    /**
+     * Write a column of doubles through the buffer.
+     * @param channel
+     * @param values
+     * @throws IOException
+     */
+    private void writeDoubles(FileChannel channel, double[] values) throws IOException
+    {
+        int offset = 0;
+
+        while(offset < values.length)
+        {
+            int count = Math.min(values.length - offset, buffer.remaining() / Double.BYTES);
+
+            if(count == 0)
+            {
+                flushBuffer(channel);
+
+                continue;
+            }
+
+            buffer.asDoubleBuffer().put(values, offset, count);
+
+            buffer.position(buffer.position() + count * Double.BYTES);
+
+            offset += count;
+        }
+    }
+
+    /**
+     * Pad the file with zeros to a multiple of 8 bytes, so every column of doubles starts aligned.
+     * @param channel
+     * @throws IOException
+     */
+    private void pad(FileChannel channel) throws IOException
+    {
+        ensureRoom(channel, Long.BYTES);
+
+        while((writtenBytes + buffer.position()) % Long.BYTES != 0)
+        {
+            buffer.put((byte)0);
+        }
+    }
+
+    /**
+     * Write the buffer to the file if it doesn't have room for a number of bytes.
+     * @param channel
+     * @param bytes
+     * @throws IOException
+     */
+    private void ensureRoom(FileChannel channel, int bytes) throws IOException
+    {
+        if(buffer.remaining() < bytes) flushBuffer(channel);
+    }
+
+    /**
+     * Write the contents of the buffer to the file.
+     * @param channel
+     * @throws IOException
+     */
+    private void flushBuffer(FileChannel channel) throws IOException
+    {
+        buffer.flip();
+
+        while(buffer.hasRemaining())
+        {
+            writtenBytes += channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+}
@@ -0,0 +1,300 @@
+package com.Helpers.OutputWriter;
+
+import com.Helpers.ConfigReader;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Sink that streams the state values recorded by the nodes to the database while the algorithm runs. Values are
+ * inserted in batches through a prepared statement on the writer thread's own connection, and committed once a batch
+ * is full, or once the ring of values has been drained and the batch has waited long enough. Only standard SQL is
+ * used, so any JDBC database can stand in for MySQL by changing the URL in the config file and adding its driver to
+ * Modules.
+ */
+public class DatabaseSink implements ResultSink
+{
+    /**
+     * Name of the table the results are saved in.
+     */
+    private static final String TABLE = "RunResults";
+
+    /**
+     * Longest time in nanoseconds a partial batch waits for more values before it is inserted.
+     */
+    private static final long BATCH_WAIT_NANOS = 100_000_000;
+
+    /**
+     * Holds all the configuration values for the application.
+     */
+    private ConfigReader configValues;
+
+    /**
+     * Number of values inserted with each batch.
+     */
+    private int batchSize;
+
+    /**
+     * Connection to the database, null if it couldn't be opened.
+     */
+    private Connection dbConnection;
+
+    /**
+     * Statement that inserts one value, added to the batch for each value.
+     */
+    private PreparedStatement insertStatement;
+
+    /**
+     * Number of values added to the current batch.
+     */
+    private int pendingValues = 0;
+
+    /**
+     * Determines if the database can't be written to, in which case values are dropped.
+     */
+    private boolean isFailed = false;
+
+    /**
+     * Number of values inserted into the database.
+     */
+    private long savedValues = 0;
+
+    /**
+     * Number of values dropped because the database couldn't be written to.
+     */
+    private long droppedValues = 0;
+
+    /**
+     * Time the sink started, used to report how long saving the values took.
+     */
+    private long startTime;
+
+    /**
+     * Time the last batch was inserted.
+     */
+    private long lastInsertTime;
+
+    /**
+     * Primary constructor.
+     * @param configValues Configuration values for the application
+     */
+    public DatabaseSink(ConfigReader configValues)
+    {
+        this.configValues = configValues;
+
+        this.batchSize = Math.max(1, configValues.getDatabaseBatchSize());
+    }
+
+    /**
+     * Connect to the database, create the results table if needed, and prepare the insert statement.
+     */
+    public void start()
+    {
+        startTime = System.nanoTime();
+
+        lastInsertTime = startTime;
+
+        String url = configValues.getDatabaseInstance();
+
+        if(url.startsWith("jdbc:mysql:") && !url.contains("rewriteBatchedStatements"))
+        {
+            // Lets the MySQL driver send each batch as one multi-row insert
+            url += (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+        }
+
+        try
+        {
+            dbConnection = DriverManager.getConnection(url, configValues.getDatabaseUser(),
+                                                       configValues.getDatabasePassword());
+
+            String quote = dbConnection.getMetaData().getIdentifierQuoteString().trim();
+
+            prepareTable(quote);
+
+            dbConnection.setAutoCommit(false);
+
+            insertStatement = dbConnection.prepareStatement(String.format(
+                    "INSERT INTO %s(%s, %s, %s, %s, %s) VALUES (?, ?, ?, ?, ?)", quote(TABLE, quote),
+                    quote("RunName", quote), quote("IterationNumber", quote), quote("Node", quote),
+                    quote("StateVariable", quote), quote("Value", quote)));
+        }
+        catch(SQLException ex)
+        {
+            fail(ex);
+        }
+    }
+
+    /**
+     * Add a state value to the current batch, inserting the batch once it's full.
+     */
+    public void add(int iterationNumber, int nodeID, int nodeIndex, int variableID, String variableName, double value)
+    {
+        if(isFailed)
+        {
+            droppedValues++;
+
+            return;
+        }
+
+        pendingValues++;
+
+        try
+        {
+            insertStatement.setString(1, configValues.getDatabaseTable());
+            insertStatement.setInt(2, iterationNumber);
+            insertStatement.setInt(3, nodeID);
+            insertStatement.setString(4, variableName);
+            insertStatement.setDouble(5, value);
+
+            insertStatement.addBatch();
+
+            if(pendingValues >= batchSize) insertBatch();
+        }
+        catch(SQLException ex)
+        {
+            fail(ex);
+        }
+    }
+
+    /**
+     * Insert the values of the current batch once it has waited long enough, since no more are coming for now.
+     * Committing every few values would slow the database down far more than waiting for a fuller batch.
+     */
+    public void endOfBatch()
+    {
+        if(System.nanoTime() - lastInsertTime >= BATCH_WAIT_NANOS) insertPendingValues();
+    }
+
+    /**
+     * Insert the values of the current batch, whatever its size.
+     */
+    private void insertPendingValues()
+    {
+        if(isFailed || pendingValues == 0) return;
+
+        try
+        {
+            insertBatch();
+        }
+        catch(SQLException ex)
+        {
+            fail(ex);
+        }
+    }
+
+    /**
+     * Insert the values of the current batch, and close the connection to the database.
+     */
+    public void close()
+    {
+        insertPendingValues();
+
+        try
+        {
+            if(dbConnection != null) dbConnection.close();
+        }
+        catch(SQLException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        if(!isFailed)
+        {
+            System.out.println(String.format("Results saved - %d values streamed to the database in %.3f seconds",
+                                             savedValues, (System.nanoTime() - startTime) / 1e9));
+        }
+
+        if(droppedValues > 0)
+        {
+            System.out.println(String.format("%d values couldn't be saved to the database.", droppedValues));
+        }
+    }
+
+    /**
+     * Insert and commit the values of the current batch.
+     * @throws SQLException
+     */
+    private void insertBatch() throws SQLException
+    {
+        insertStatement.executeBatch();
+
+        dbConnection.commit();
+
+        savedValues += pendingValues;
+
+        pendingValues = 0;
+
+        lastInsertTime = System.nanoTime();
+    }
+
+    /**
+     * Stop writing to the database after an error, dropping the values of the current batch.
+     * @param ex
+     */
+    private void fail(SQLException ex)
+    {
+        System.out.println("Error in writing values to database.");
+
+        ex.printStackTrace();
+
+        isFailed = true;
+
+        droppedValues += pendingValues;
+
+        pendingValues = 0;
+    }
+
+    /**
+     * Create the results table if it doesn't exist yet, and delete the old results of this run.
+     * @param quote String used to quote identifiers in this database
+     * @throws SQLException
+     */
+    private void prepareTable(String quote) throws SQLException
+    {
+        DatabaseMetaData metaData = dbConnection.getMetaData();
+
+        boolean tableExists;
+
+        try(ResultSet tables = metaData.getTables(dbConnection.getCatalog(), null, TABLE, null))
+        {
+            tableExists = tables.next();
+        }
+
+        try(Statement initializeStatement = dbConnection.createStatement())
+        {
+            if(!tableExists)
+            {
+                initializeStatement.execute(String.format("CREATE TABLE %s(%s VARCHAR(255), %s INTEGER, " +
+                                                          "%s INTEGER, %s VARCHAR(255), %s DOUBLE PRECISION)",
+                                                          quote(TABLE, quote), quote("RunName", quote),
+                                                          quote("IterationNumber", quote), quote("Node", quote),
+                                                          quote("StateVariable", quote), quote("Value", quote)));
+            }
+        }
+
+        // Delete old results
+        try(PreparedStatement deleteStatement = dbConnection.prepareStatement(String.format(
+                "DELETE FROM %s WHERE %s = ?", quote(TABLE, quote), quote("RunName", quote))))
+        {
+            deleteStatement.setString(1, configValues.getDatabaseTable());
+
+            deleteStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Quote an identifier, since some of the column names are keywords in some databases.
+     * @param identifier
+     * @param quote String used to quote identifiers, empty if the database doesn't support quoting
+     * @return
+     */
+    private static String quote(String identifier, String quote)
+    {
+        return quote + identifier + quote;
+    }
+}
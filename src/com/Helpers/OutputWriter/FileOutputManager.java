@@ -0,0 +1,263 @@
+package com.Helpers.OutputWriter;
+
+import com.Network.GraphTopology;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the text files written by the nodes open for the whole run. Each output has a name, such as "output" or the
+ * name of a state variable, and is written to its own file in the output directory through a large buffer, so
+ * writing a line is usually just a copy into memory. The buffers are flushed to disk once the oldest unflushed line
+ * has waited long enough, whenever the WriterThread is flushed, and when the outputs are closed. With more than one
+ * cluster, the ID of the cluster is added to the name of each file so clusters sharing a directory don't overwrite
+ * each other.
+ */
+public class FileOutputManager
+{
+    /**
+     * Name of the output used by jobs that don't name one.
+     */
+    public static final String DEFAULT_OUTPUT = "output";
+
+    /**
+     * Extension added to the names of outputs that don't have one.
+     */
+    private static final String DEFAULT_EXTENSION = ".txt";
+
+    /**
+     * Number of characters each output buffers before writing to its file.
+     */
+    private static final int BUFFER_CHARS = 256 * 1024;
+
+    /**
+     * Directory the files are written to.
+     */
+    private Path outputDirectory;
+
+    /**
+     * Topology of the network, used to add the ID of the cluster to the names of the files.
+     */
+    private GraphTopology topology;
+
+    /**
+     * Longest time in milliseconds a line stays in a buffer before it's flushed, 0 to only flush when asked to.
+     */
+    private long flushMillis;
+
+    /**
+     * Open writer of each output by its name.
+     */
+    private Map<String,Writer> outputs = new HashMap<>();
+
+    /**
+     * Names of the outputs whose files were already started this run, which are appended to if they're opened again.
+     */
+    private Set<String> startedOutputs = new HashSet<>();
+
+    /**
+     * Names of the outputs that couldn't be written to, whose lines are dropped.
+     */
+    private Set<String> failedOutputs = new HashSet<>();
+
+    /**
+     * Time the oldest line that hasn't been flushed was written, or -1 if every line has been flushed.
+     */
+    private long oldestUnflushedTime = -1;
+
+    /**
+     * Primary constructor.
+     * @param outputDirectory Directory the files are written to, created if it doesn't exist
+     * @param topology Topology of the network
+     * @param flushMillis Longest time in milliseconds a line waits before it's flushed, 0 to only flush when asked to
+     */
+    public FileOutputManager(String outputDirectory, GraphTopology topology, long flushMillis)
+    {
+        this.outputDirectory = Paths.get(outputDirectory);
+
+        this.topology = topology;
+
+        this.flushMillis = flushMillis;
+    }
+
+    /**
+     * Write a line to an output, opening its file the first time it's used.
+     * @param outputName Name of the output, DEFAULT_OUTPUT if null
+     * @param line
+     */
+    public synchronized void write(String outputName, String line)
+    {
+        if(outputName == null) outputName = DEFAULT_OUTPUT;
+
+        Writer output = outputs.get(outputName);
+
+        if(output == null)
+        {
+            if(failedOutputs.contains(outputName)) return;
+
+            output = open(outputName);
+
+            if(output == null) return;
+        }
+
+        try
+        {
+            output.write(line);
+
+            output.write(System.lineSeparator());
+        }
+        catch(IOException ex)
+        {
+            fail(outputName, ex);
+
+            return;
+        }
+
+        if(oldestUnflushedTime < 0) oldestUnflushedTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Open the file of an output. The file is started over the first time the output is opened in a run, and
+     * appended to if it's opened again after being closed.
+     * @param outputName
+     * @return Writer of the output, or null if its file couldn't be opened
+     */
+    private Writer open(String outputName)
+    {
+        Path file = getFile(outputName);
+
+        boolean isStarted = !startedOutputs.add(outputName);
+
+        try
+        {
+            if(file.getParent() != null) Files.createDirectories(file.getParent());
+
+            Writer output = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    isStarted ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING),
+                    StandardCharsets.UTF_8), BUFFER_CHARS);
+
+            outputs.put(outputName, output);
+
+            return output;
+        }
+        catch(IOException ex)
+        {
+            fail(outputName, ex);
+
+            return null;
+        }
+    }
+
+    /**
+     * Get the file an output is written to.
+     * @param outputName
+     * @return
+     */
+    public Path getFile(String outputName)
+    {
+        String fileName = outputName.lastIndexOf('.') <= outputName.lastIndexOf('/') ?
+                          outputName + DEFAULT_EXTENSION : outputName;
+
+        return outputDirectory.resolve(ColumnarFileSink.getClusterFile(fileName, topology));
+    }
+
+    /**
+     * Get the time in milliseconds until the buffers should be flushed.
+     * @return Time until the next flush, or Long.MAX_VALUE if nothing is waiting to be flushed on a timer
+     */
+    public synchronized long getMillisUntilFlush()
+    {
+        if(flushMillis <= 0 || oldestUnflushedTime < 0) return Long.MAX_VALUE;
+
+        return Math.max(0, oldestUnflushedTime + flushMillis - System.currentTimeMillis());
+    }
+
+    /**
+     * Flush the buffers if the oldest line in them has waited long enough.
+     */
+    public synchronized void flushIfDue()
+    {
+        if(getMillisUntilFlush() == 0) flush();
+    }
+
+    /**
+     * Write every buffered line to its file.
+     */
+    public synchronized void flush()
+    {
+        // Outputs that fail are removed while flushing
+        for(String outputName : new ArrayList<>(outputs.keySet()))
+        {
+            try
+            {
+                outputs.get(outputName).flush();
+            }
+            catch(IOException ex)
+            {
+                fail(outputName, ex);
+            }
+        }
+
+        oldestUnflushedTime = -1;
+    }
+
+    /**
+     * Flush and close the file of every output. Outputs written to after this are opened again and appended to.
+     */
+    public synchronized void close()
+    {
+        flush();
+
+        for(Map.Entry<String,Writer> output : outputs.entrySet())
+        {
+            try
+            {
+                output.getValue().close();
+            }
+            catch(IOException ex)
+            {
+                ex.printStackTrace();
+            }
+        }
+
+        outputs.clear();
+    }
+
+    /**
+     * Stop writing to an output after an error, dropping the lines written to it.
+     * @param outputName
+     * @param ex
+     */
+    private void fail(String outputName, IOException ex)
+    {
+        System.out.println("Error in writing to " + getFile(outputName) + ".");
+
+        ex.printStackTrace();
+
+        failedOutputs.add(outputName);
+
+        Writer output = outputs.remove(outputName);
+
+        try
+        {
+            if(output != null) output.close();
+        }
+        catch(IOException closeEx)
+        {
+            // The output was already failing, the first error has been reported
+        }
+    }
+}
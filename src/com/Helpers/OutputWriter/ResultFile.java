@@ -0,0 +1,466 @@
+package com.Helpers.OutputWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads the state values written by a ColumnarFileSink. Every number in the file is little endian, and the file is
+ * laid out as:
+ *
+ *   Header - "GSIMRES1", version, number of nodes, index of the first node in the topology, 0, offset of the index
+ *   Node IDs - ID of each node by its position, padded to a multiple of 8 bytes
+ *   Blocks - for each block its iteration, number of columns, and the variable ID and sparse count of each column,
+ *            padded to a multiple of 8 bytes, then the columns. A dense column, with a sparse count of -1, is a double
+ *            for every node, NaN if the node didn't set the variable. A sparse column is the positions of the nodes
+ *            that set the variable, padded to a multiple of 8 bytes, followed by their values.
+ *   Index - number of variables and the name of each as a length and UTF-8 bytes, then the number of blocks and for
+ *           each block its iteration, its number of columns, and the variable ID, sparse count and offset of each
+ *           column
+ *
+ * An iteration usually has one block, but values recorded after its block was written are in a later block of the
+ * same iteration, and override the values of the blocks before it. Only the columns that are asked for are read from
+ * the file.
+ */
+public class ResultFile implements AutoCloseable
+{
+    /**
+     * Bytes every result file starts with.
+     */
+    static final byte[] MAGIC = "GSIMRES1".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Version of the layout of the file.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Position in the file of the offset of the index.
+     */
+    static final long FOOTER_OFFSET_POSITION = 24;
+
+    /**
+     * Sparse count of a column that has a value for every node.
+     */
+    static final int DENSE = -1;
+
+    /**
+     * Number of bytes in the header, before the node IDs.
+     */
+    private static final int HEADER_BYTES = 32;
+
+    /**
+     * Location of one column of a block in the file.
+     */
+    private static class ColumnEntry
+    {
+        /**
+         * ID of the variable the column holds.
+         */
+        final int variableID;
+
+        /**
+         * Number of values in the column if it's sparse, or DENSE.
+         */
+        final int sparseCount;
+
+        /**
+         * Offset of the column.
+         */
+        final long offset;
+
+        /**
+         * Primary constructor.
+         * @param variableID
+         * @param sparseCount
+         * @param offset
+         */
+        ColumnEntry(int variableID, int sparseCount, long offset)
+        {
+            this.variableID = variableID;
+
+            this.sparseCount = sparseCount;
+
+            this.offset = offset;
+        }
+
+        /**
+         * Get the offset of the values of a sparse column, after the positions of the nodes.
+         * @return
+         */
+        long getValuesOffset()
+        {
+            return offset + ((long)sparseCount * Integer.BYTES + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+        }
+    }
+
+    /**
+     * Channel the file is read through.
+     */
+    private FileChannel channel;
+
+    /**
+     * IDs of the nodes, by their position in the file.
+     */
+    private int[] nodeIDs;
+
+    /**
+     * Dictionary that maps the ID of each node to its position in the file.
+     */
+    private Map<Integer,Integer> nodePositions = new HashMap<>();
+
+    /**
+     * Index of the first node in the topology of the network.
+     */
+    private int firstIndex;
+
+    /**
+     * Names of the variables, by their ID.
+     */
+    private List<String> variableNames = new ArrayList<>();
+
+    /**
+     * Columns of the blocks of each iteration, in the order they were written.
+     */
+    private TreeMap<Integer,List<ColumnEntry>> columns = new TreeMap<>();
+
+    /**
+     * Open a result file and read its index.
+     * @param resultFile
+     * @throws IOException If the file isn't a result file, or was never finished
+     */
+    public ResultFile(String resultFile) throws IOException
+    {
+        channel = FileChannel.open(Paths.get(resultFile), StandardOpenOption.READ);
+
+        try
+        {
+            ByteBuffer header = read(0, HEADER_BYTES);
+
+            byte[] magic = new byte[MAGIC.length];
+
+            header.get(magic);
+
+            if(!Arrays.equals(magic, MAGIC)) throw new IOException(resultFile + " isn't a GraphSim result file.");
+
+            int version = header.getInt();
+
+            if(version != VERSION) throw new IOException("Unsupported result file version " + version + ".");
+
+            int nodeCount = header.getInt();
+
+            firstIndex = header.getInt();
+
+            header.getInt();
+
+            long footerOffset = header.getLong();
+
+            if(footerOffset == 0) throw new IOException(resultFile + " was never finished.");
+
+            nodeIDs = new int[nodeCount];
+
+            read(HEADER_BYTES, nodeCount * Integer.BYTES).asIntBuffer().get(nodeIDs);
+
+            for(int position = 0; position < nodeCount; position++)
+            {
+                nodePositions.put(nodeIDs[position], position);
+            }
+
+            readIndex(read(footerOffset, (int)(channel.size() - footerOffset)));
+        }
+        catch(IOException ex)
+        {
+            channel.close();
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Read the names of the variables and the location of each block from the index at the end of the file.
+     * @param index
+     */
+    private void readIndex(ByteBuffer index)
+    {
+        int variableCount = index.getInt();
+
+        for(int variableID = 0; variableID < variableCount; variableID++)
+        {
+            byte[] name = new byte[index.getInt()];
+
+            index.get(name);
+
+            variableNames.add(new String(name, StandardCharsets.UTF_8));
+        }
+
+        int blockCount = index.getInt();
+
+        for(int block = 0; block < blockCount; block++)
+        {
+            int iterationNumber = index.getInt();
+
+            int columnCount = index.getInt();
+
+            List<ColumnEntry> iterationColumns = columns.computeIfAbsent(iterationNumber, key -> new ArrayList<>());
+
+            for(int column = 0; column < columnCount; column++)
+            {
+                iterationColumns.add(new ColumnEntry(index.getInt(), index.getInt(), index.getLong()));
+            }
+        }
+    }
+
+    /**
+     * Get the IDs of the nodes in the file.
+     * @return
+     */
+    public int[] getNodeIDs()
+    {
+        return nodeIDs.clone();
+    }
+
+    /**
+     * Get the index in the topology of the first node in the file, which is the first node of the cluster that wrote
+     * it.
+     * @return
+     */
+    public int getFirstIndex()
+    {
+        return firstIndex;
+    }
+
+    /**
+     * Get the names of the state variables in the file.
+     * @return
+     */
+    public List<String> getVariableNames()
+    {
+        return Collections.unmodifiableList(variableNames);
+    }
+
+    /**
+     * Get every iteration that has values in the file, in order.
+     * @return
+     */
+    public int[] getIterations()
+    {
+        return columns.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Get the position of a node in the columns of the file.
+     * @param nodeID
+     * @return Position, or -1 if the node isn't in the file
+     */
+    public int getPosition(int nodeID)
+    {
+        Integer position = nodePositions.get(nodeID);
+
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Read the values of a variable for every node in one iteration.
+     * @param iterationNumber
+     * @param variable
+     * @return Value of each node by its position, NaN for nodes that didn't set the variable that iteration
+     * @throws IOException
+     */
+    public double[] readColumn(int iterationNumber, String variable) throws IOException
+    {
+        double[] values = new double[nodeIDs.length];
+
+        Arrays.fill(values, Double.NaN);
+
+        int variableID = variableNames.indexOf(variable);
+
+        for(ColumnEntry column : columns.getOrDefault(iterationNumber, Collections.emptyList()))
+        {
+            if(column.variableID != variableID) continue;
+
+            if(column.sparseCount == DENSE)
+            {
+                DoubleBuffer columnValues = read(column.offset, nodeIDs.length * Double.BYTES).asDoubleBuffer();
+
+                for(int position = 0; position < values.length; position++)
+                {
+                    double value = columnValues.get(position);
+
+                    if(!Double.isNaN(value)) values[position] = value;
+                }
+            }
+            else
+            {
+                IntBuffer positions = read(column.offset, column.sparseCount * Integer.BYTES).asIntBuffer();
+
+                DoubleBuffer columnValues = read(column.getValuesOffset(),
+                                                 column.sparseCount * Double.BYTES).asDoubleBuffer();
+
+                for(int i = 0; i < column.sparseCount; i++)
+                {
+                    values[positions.get(i)] = columnValues.get(i);
+                }
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Read the value of a variable for one node in one iteration.
+     * @param iterationNumber
+     * @param nodeID
+     * @param variable
+     * @return Value, or NaN if the node didn't set the variable that iteration
+     * @throws IOException
+     */
+    public double readValue(int iterationNumber, int nodeID, String variable) throws IOException
+    {
+        int position = getPosition(nodeID);
+
+        int variableID = variableNames.indexOf(variable);
+
+        double value = Double.NaN;
+
+        if(position < 0) return value;
+
+        for(ColumnEntry column : columns.getOrDefault(iterationNumber, Collections.emptyList()))
+        {
+            if(column.variableID != variableID) continue;
+
+            double columnValue = Double.NaN;
+
+            if(column.sparseCount == DENSE)
+            {
+                columnValue = read(column.offset + (long)position * Double.BYTES, Double.BYTES).getDouble();
+            }
+            else
+            {
+                int[] positions = new int[column.sparseCount];
+
+                read(column.offset, column.sparseCount * Integer.BYTES).asIntBuffer().get(positions);
+
+                // Positions are written in order
+                int i = Arrays.binarySearch(positions, position);
+
+                if(i >= 0) columnValue = read(column.getValuesOffset() + (long)i * Double.BYTES, Double.BYTES)
+                                         .getDouble();
+            }
+
+            if(!Double.isNaN(columnValue)) value = columnValue;
+        }
+
+        return value;
+    }
+
+    /**
+     * Read the value of a variable for one node in every iteration.
+     * @param nodeID
+     * @param variable
+     * @return Value of each iteration by its position in getIterations(), NaN where the node didn't set the variable
+     * @throws IOException
+     */
+    public double[] readSeries(int nodeID, String variable) throws IOException
+    {
+        int[] iterations = getIterations();
+
+        double[] values = new double[iterations.length];
+
+        for(int i = 0; i < iterations.length; i++)
+        {
+            values[i] = readValue(iterations[i], nodeID, variable);
+        }
+
+        return values;
+    }
+
+    /**
+     * Read a range of the file.
+     * @param position
+     * @param length
+     * @return Buffer holding the bytes that were read
+     * @throws IOException
+     */
+    private ByteBuffer read(long position, int length) throws IOException
+    {
+        ByteBuffer bytes = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+        while(bytes.hasRemaining())
+        {
+            if(channel.read(bytes, position + bytes.position()) < 0)
+            {
+                throw new IOException("Result file ends before byte " + (position + length) + ".");
+            }
+        }
+
+        bytes.flip();
+
+        return bytes;
+    }
+
+    /**
+     * Close the file.
+     * @throws IOException
+     */
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Print every value in a result file as CSV, one line per iteration, node and variable, in the same columns as
+     * the RunResults table of the database.
+     * @param args Result file to print
+     */
+    public static void main(String[] args)
+    {
+        if(args.length != 1)
+        {
+            System.out.println("Usage: ResultFile <result file>");
+
+            return;
+        }
+
+        try(ResultFile resultFile = new ResultFile(args[0]);
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16)))
+        {
+            out.println("IterationNumber,Node,StateVariable,Value");
+
+            for(int iterationNumber : resultFile.getIterations())
+            {
+                for(String variable : resultFile.getVariableNames())
+                {
+                    double[] values = resultFile.readColumn(iterationNumber, variable);
+
+                    for(int position = 0; position < values.length; position++)
+                    {
+                        if(Double.isNaN(values[position])) continue;
+
+                        out.println(iterationNumber + "," + resultFile.nodeIDs[position] + "," + variable + "," +
+                                    values[position]);
+                    }
+                }
+            }
+        }
+        catch(IOException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.Helpers.OutputWriter;
+
+/**
+ * Destination of the state values the nodes record while the algorithm runs. The nodes add their values to the
+ * ValueRing of the WriterThread, and one writer thread drains the ring into the sink chosen in the config file, so
+ * the nodes don't need to know where their values end up. Every method is called from that writer thread, so sinks
+ * don't need to be thread safe.
+ */
+public interface ResultSink
+{
+    /**
+     * Get ready to save values, before the first one arrives.
+     */
+    void start();
+
+    /**
+     * Save a state value.
+     * @param iterationNumber
+     * @param nodeID
+     * @param nodeIndex Index of the node in the topology
+     * @param variableID ID of the state variable in the StateStore of the cluster
+     * @param variableName
+     * @param value
+     */
+    void add(int iterationNumber, int nodeID, int nodeIndex, int variableID, String variableName, double value);
+
+    /**
+     * Called whenever the ring has no more values for now, including while it stays empty, so the sink can save
+     * anything it has held back for long enough.
+     */
+    void endOfBatch();
+
+    /**
+     * Save every value added so far, and release anything the sink holds open.
+     */
+    void close();
+}
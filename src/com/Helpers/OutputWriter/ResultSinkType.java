@@ -0,0 +1,9 @@
+package com.Helpers.OutputWriter;
+
+/**
+ * Determines where the state values recorded by the nodes are saved.
+ */
+public enum ResultSinkType
+{
+    DATABASE, FILE, NONE
+}
@@ -0,0 +1,190 @@
+package com.Helpers.OutputWriter;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring of state values waiting to be saved, shared by every node of the cluster and drained by one writer thread.
+ * Each slot holds one value as primitive fields in arrays that are allocated once, so recording a value never
+ * creates an object. A node claims the next slot by incrementing a counter, fills in its fields, and then publishes
+ * it by storing its sequence number in the slot, so nodes never lock each other out. The writer takes every
+ * published slot in order up to the first one still being filled, and frees them all at once when it's done. When
+ * the ring is full, nodes wait for the writer to free slots, so memory stays the same however far behind the writer
+ * is. Waiting nodes always back off to parking, since nodes spinning on every core would keep the writer from ever
+ * freeing a slot.
+ */
+public class ValueRing
+{
+    /**
+     * Number of slots, a power of two so a sequence number can be turned into a slot with a mask.
+     */
+    private final int capacity;
+
+    /**
+     * Mask that turns a sequence number into the position of its slot.
+     */
+    private final int mask;
+
+    /**
+     * Iteration of the value in each slot.
+     */
+    private final int[] iterationNumbers;
+
+    /**
+     * ID of the node of the value in each slot.
+     */
+    private final int[] nodeIDs;
+
+    /**
+     * Index in the topology of the node of the value in each slot.
+     */
+    private final int[] nodeIndexes;
+
+    /**
+     * ID of the variable of the value in each slot.
+     */
+    private final int[] variableIDs;
+
+    /**
+     * Name of the variable of the value in each slot, shared with the StateStore.
+     */
+    private final String[] variableNames;
+
+    /**
+     * Value in each slot.
+     */
+    private final double[] values;
+
+    /**
+     * Sequence number of the value each slot holds once it has been filled in, -1 before the first.
+     */
+    private final AtomicLongArray publishedSequences;
+
+    /**
+     * Sequence number the next node to record a value claims.
+     */
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /**
+     * Sequence number of the next value the writer takes. Every slot before it is free to be claimed again.
+     */
+    private volatile long consumedSequence = 0;
+
+    /**
+     * Primary constructor.
+     * @param capacity Number of values the ring holds, rounded up to a power of two
+     */
+    public ValueRing(int capacity)
+    {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+
+        this.mask = this.capacity - 1;
+
+        this.iterationNumbers = new int[this.capacity];
+
+        this.nodeIDs = new int[this.capacity];
+
+        this.nodeIndexes = new int[this.capacity];
+
+        this.variableIDs = new int[this.capacity];
+
+        this.variableNames = new String[this.capacity];
+
+        this.values = new double[this.capacity];
+
+        long[] initialSequences = new long[this.capacity];
+
+        Arrays.fill(initialSequences, -1);
+
+        this.publishedSequences = new AtomicLongArray(initialSequences);
+    }
+
+    /**
+     * Add a value to the ring, waiting for room if it's full. Safe to call from any number of threads at once.
+     * @param iterationNumber
+     * @param nodeID
+     * @param nodeIndex Index of the node in the topology
+     * @param variableID
+     * @param variableName
+     * @param value
+     */
+    public void add(int iterationNumber, int nodeID, int nodeIndex, int variableID, String variableName,
+                    double value)
+    {
+        long sequence = nextSequence.getAndIncrement();
+
+        // The slot is free once the writer has taken the value that was in it one lap ago
+        for(int attempt = 0; sequence - capacity >= consumedSequence; attempt++)
+        {
+            WaitStrategy.SLEEPING.idle(attempt);
+        }
+
+        int slot = (int)sequence & mask;
+
+        iterationNumbers[slot] = iterationNumber;
+
+        nodeIDs[slot] = nodeID;
+
+        nodeIndexes[slot] = nodeIndex;
+
+        variableIDs[slot] = variableID;
+
+        variableNames[slot] = variableName;
+
+        values[slot] = value;
+
+        // Publishing the sequence makes the fields above visible to the writer once it sees it
+        publishedSequences.lazySet(slot, sequence);
+    }
+
+    /**
+     * Pass the values that have been published, in order, to a sink, and free their slots. Must only be called by
+     * one thread.
+     * @param sink
+     * @param maxValues Most values passed on in one call
+     * @return Number of values passed on
+     */
+    public int drain(ResultSink sink, int maxValues)
+    {
+        long start = consumedSequence;
+
+        long end = start;
+
+        // A slot still being filled stops the batch, so values always reach the sink in the order they were claimed
+        while(end - start < maxValues && publishedSequences.get((int)end & mask) == end)
+        {
+            end++;
+        }
+
+        for(long sequence = start; sequence < end; sequence++)
+        {
+            int slot = (int)sequence & mask;
+
+            sink.add(iterationNumbers[slot], nodeIDs[slot], nodeIndexes[slot], variableIDs[slot], variableNames[slot],
+                     values[slot]);
+        }
+
+        consumedSequence = end;
+
+        return (int)(end - start);
+    }
+
+    /**
+     * Check if every value claimed so far has been passed on.
+     * @return
+     */
+    public boolean isEmpty()
+    {
+        return consumedSequence == nextSequence.get();
+    }
+
+    /**
+     * Get the number of values the ring holds.
+     * @return
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+}
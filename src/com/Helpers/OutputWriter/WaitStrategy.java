@@ -0,0 +1,49 @@
+package com.Helpers.OutputWriter;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Determines how the result writer waits for the nodes to add values to the ring of state values. BUSY_SPIN never
+ * gives up the core and reacts fastest, YIELDING lets other threads run between checks, and SLEEPING parks the
+ * thread once a short spin and a few yields haven't been enough, which keeps an idle writer from taking a core away
+ * from the nodes. Nodes waiting for room in a full ring always sleep.
+ */
+public enum WaitStrategy
+{
+    BUSY_SPIN, YIELDING, SLEEPING;
+
+    /**
+     * Number of checks a thread spins for before yielding.
+     */
+    private static final int SPIN_TRIES = 100;
+
+    /**
+     * Number of checks after which a sleeping thread starts parking instead of yielding.
+     */
+    private static final int YIELD_TRIES = 200;
+
+    /**
+     * Time a sleeping thread parks for between checks.
+     */
+    private static final long PARK_NANOS = 100_000;
+
+    /**
+     * Wait before checking the ring again.
+     * @param attempt Number of times the thread has already checked without success
+     */
+    public void idle(int attempt)
+    {
+        if(this == BUSY_SPIN || attempt < SPIN_TRIES)
+        {
+            Thread.onSpinWait();
+        }
+        else if(this == YIELDING || attempt < YIELD_TRIES)
+        {
+            Thread.yield();
+        }
+        else
+        {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.Helpers.OutputWriter;
 
 import com.Helpers.OutputWriter.WriteType;
 
+import java.util.concurrent.CountDownLatch;
+
 /**
  * Class that holds the information for output from the system and where it should go.
  */
@@ -23,6 +25,26 @@ public class WriteJob
 
     public double stateValue;
 
+    /**
+     * Index of the node in the topology, used by sinks that store values by position instead of node ID.
+     */
+    public int nodeIndex;
+
+    /**
+     * ID of the state variable in the StateStore of the cluster.
+     */
+    public int variableID;
+
+    /**
+     * Name of the output a FILE job is written to, or null for the default output.
+     */
+    public String outputName;
+
+    /**
+     * Latch counted down once a FLUSH job is reached, meaning every job added before it has been processed.
+     */
+    public CountDownLatch flushed;
+
     public WriteJob(WriteType type, String output)
     {
         this.type = type;
@@ -30,6 +52,25 @@ public class WriteJob
         this.output = output;
     }
 
+    /**
+     * Constructor for a line written to a named file output.
+     * @param outputName Name of the output, or null for the default output
+     * @param output
+     */
+    public WriteJob(String outputName, String output)
+    {
+        this(WriteType.FILE, output);
+
+        this.outputName = outputName;
+    }
+
+    public WriteJob(CountDownLatch flushed)
+    {
+        this.type = WriteType.FLUSH;
+
+        this.flushed = flushed;
+    }
+
     // TODO: Temporary constructor to speed up development of webapp
     public WriteJob(WriteType type, int iterationNumber, int nodeID, String stateVariable, double stateValue)
     {
@@ -43,4 +84,23 @@ public class WriteJob
 
         this.stateValue = stateValue;
     }
+
+    /**
+     * Constructor for a state value recorded by a node.
+     * @param iterationNumber
+     * @param nodeID
+     * @param nodeIndex Index of the node in the topology
+     * @param variableID ID of the state variable in the StateStore of the cluster
+     * @param stateVariable
+     * @param stateValue
+     */
+    public WriteJob(int iterationNumber, int nodeID, int nodeIndex, int variableID, String stateVariable,
+                    double stateValue)
+    {
+        this(WriteType.RESULT, iterationNumber, nodeID, stateVariable, stateValue);
+
+        this.nodeIndex = nodeIndex;
+
+        this.variableID = variableID;
+    }
 }
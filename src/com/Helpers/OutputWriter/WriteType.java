@@ -5,5 +5,5 @@ package com.Helpers.OutputWriter;
  */
 public enum WriteType
 {
-    FILE, CONSOLE, DATABASE
+    FILE, CONSOLE, RESULT, FLUSH, CLOSE
 }
@@ -1,17 +1,19 @@
 package com.Helpers.OutputWriter;
 
 import com.Helpers.ConfigReader;
+import com.Network.GraphTopology;
 
-import java.io.*;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
- * A thread that will write output to a file so that the primary threads can continue sending messages.
+ * A thread that will write output to a file so that the primary threads can continue sending messages. Console and
+ * file output goes through a queue of jobs on this thread, with the files kept open by a FileOutputManager, while the
+ * state values the nodes record go through a ValueRing that a second thread drains into the result sink, so a slow
+ * sink never holds up console output and recording a value doesn't create an object.
  */
 public class WriterThread extends Thread
 {
@@ -26,20 +28,143 @@ public class WriterThread extends Thread
     private LinkedBlockingQueue<WriteJob> outputQueue;
 
     /**
-     * State values to be outputted to DB after simulation is complete.
-     * TODO: Expand structure to support values from different state values and different nodes.
+     * Files the text output of the nodes is written to, kept open for the whole run.
      */
-    private List<WriteJob> valuesForDB;
+    private FileOutputManager fileOutputs;
+
+    /**
+     * Sink that saves the state values recorded by the nodes while the algorithm runs, or null if they aren't saved.
+     */
+    private ResultSink resultSink;
+
+    /**
+     * Most values passed from the ring to the result sink at once.
+     */
+    private static final int DRAIN_BATCH = 4096;
+
+    /**
+     * Ring the nodes add their state values to, null if they aren't saved.
+     */
+    private ValueRing valueRing;
+
+    /**
+     * Thread that drains the ring into the result sink, null if values aren't saved.
+     */
+    private Thread resultThread;
+
+    /**
+     * How the result thread waits for values.
+     */
+    private WaitStrategy waitStrategy;
+
+    /**
+     * Determines if every value has been added to the ring, so the result thread can finish once it's empty.
+     */
+    private volatile boolean isClosing = false;
+
+    /**
+     * Determines if this thread has processed its CLOSE job and should stop. Only used by this thread.
+     */
+    private boolean isStopped = false;
+
     /**
      * Primary constructor.
+     * @param configValues Configuration values for the application
+     * @param topology Topology of the network, used by sinks that lay out the values by node
      */
-    public WriterThread()
+    public WriterThread(ConfigReader configValues, GraphTopology topology)
     {
         this.outputQueue = new LinkedBlockingQueue<>();
 
-        this.valuesForDB = new ArrayList<>();
+        this.configValues = configValues;
 
-        this.configValues = new ConfigReader();
+        this.fileOutputs = new FileOutputManager(configValues.getOutputDirectory(), topology,
+                                                 configValues.getOutputFlushMillis());
+
+        switch(configValues.getResultSink())
+        {
+            case DATABASE:
+                if(configValues.getDatabaseInstance() != null) resultSink = new DatabaseSink(configValues);
+                break;
+
+            case FILE:
+                Path outputDirectory = Paths.get(configValues.getOutputDirectory());
+
+                String resultFile = ColumnarFileSink.getClusterFile(configValues.getResultFile(), topology);
+
+                resultSink = new ColumnarFileSink(outputDirectory.resolve(resultFile).toString(), topology,
+                                                  configValues.getResultFileWindow());
+                break;
+        }
+
+        if(resultSink != null)
+        {
+            this.waitStrategy = configValues.getResultRingWait();
+
+            this.valueRing = new ValueRing(configValues.getResultRingSize());
+
+            this.resultThread = new Thread(this::saveResults, "ResultWriter");
+        }
+    }
+
+    /**
+     * Start this thread, along with the thread that saves the state values.
+     */
+    public synchronized void start()
+    {
+        if(resultThread != null) resultThread.start();
+
+        super.start();
+    }
+
+    /**
+     * Record a state value set by a node, to be saved by the result sink. Waits for room if the ring is full.
+     * @param iterationNumber
+     * @param nodeID
+     * @param nodeIndex Index of the node in the topology
+     * @param variableID ID of the state variable in the StateStore of the cluster
+     * @param variableName
+     * @param value
+     */
+    public void recordValue(int iterationNumber, int nodeID, int nodeIndex, int variableID, String variableName,
+                            double value)
+    {
+        if(valueRing != null) valueRing.add(iterationNumber, nodeID, nodeIndex, variableID, variableName, value);
+    }
+
+    /**
+     * Run method of the result thread, which passes the values in the ring to the result sink in batches until the
+     * ring has been closed and emptied.
+     */
+    private void saveResults()
+    {
+        resultSink.start();
+
+        int attempt = 0;
+
+        while(true)
+        {
+            int count = valueRing.drain(resultSink, DRAIN_BATCH);
+
+            if(count == DRAIN_BATCH) continue;
+
+            resultSink.endOfBatch();
+
+            if(count > 0)
+            {
+                attempt = 0;
+            }
+            else if(isClosing && valueRing.isEmpty())
+            {
+                break;
+            }
+            else
+            {
+                waitStrategy.idle(attempt++);
+            }
+        }
+
+        resultSink.close();
     }
 
     /**
@@ -48,7 +173,15 @@ public class WriterThread extends Thread
      */
     public void addJob(WriteJob job)
     {
-        outputQueue.add(job);
+        if(job.type == WriteType.RESULT)
+        {
+            recordValue(job.iterationNumber, job.nodeId, job.nodeIndex, job.variableID, job.stateVariable,
+                        job.stateValue);
+        }
+        else
+        {
+            outputQueue.add(job);
+        }
     }
 
     /**
@@ -63,93 +196,92 @@ public class WriterThread extends Thread
                 writeToFile(job);
                 break;
 
-            case DATABASE:
-                valuesForDB.add(job);
-                break;
-
             case CONSOLE:
                 System.out.println(job.output);
+                break;
+
+            case FLUSH:
+                fileOutputs.flush();
+
+                job.flushed.countDown();
+                break;
+
+            case CLOSE:
+                fileOutputs.close();
+
+                isStopped = true;
         }
     }
 
     /**
-     * TODO: Open and close files more efficiently, maybe have a list of all files that are currently being tracked
-     * TODO: Make output file path a command line parameter
-     * Writes output to a file.
+     * Writes output to its file.
      * @param job
      */
     private void writeToFile(WriteJob job)
     {
-        try(PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter("output.txt", true))))
+        fileOutputs.write(job.outputName, job.output);
+    }
+
+    /**
+     * Wait until every state value has been saved by the result sink, and close it.
+     */
+    public void closeResultSink()
+    {
+        if(resultThread == null) return;
+
+        isClosing = true;
+
+        try
         {
-            out.println(job.output);
+            resultThread.join();
         }
-        catch(IOException ex)
+        catch(InterruptedException ex)
         {
             ex.printStackTrace();
         }
     }
 
     /**
-     * Write all values in memory to DB.
-     * TODO: Need to expand to support multiple state variables and different nodes.
+     * Flush and close every file written to. Must be called once every job has been processed, after flush().
      */
-    public void pushValuesToDB()
+    public void closeFiles()
     {
-        try
-        {
-            String url = configValues.getDatabaseInstance() + "?allowMultipleQueries=true";
-            String user = configValues.getDatabaseUser();
-            String password = configValues.getDatabasePassword();
-            String table = configValues.getDatabaseTable();
-
-            printToConsole("Saving results to database...");
-
-            Connection dbConnection = DriverManager.getConnection(url, user, password);
-
-            Statement initializeStatements = dbConnection.createStatement();
-
-            initializeStatements.addBatch(String.format("CREATE TABLE IF NOT EXISTS RunResults(RunName varchar(255), IterationNumber int, Node int, " +
-                                            "StateVariable varchar(255), Value float(16,8));"));
-
-            // Delete old results
-            initializeStatements.addBatch(String.format("DELETE FROM RunResults WHERE RunName=\"%s\"", table));
-
-            initializeStatements.executeBatch();
-
-            Statement insertStatements = dbConnection.createStatement();
-
-            Date beforeTime = new Date();
-
-            String valueList = "";
-
-            for(WriteJob job: valuesForDB)
-            {
-                // TODO: Reformat string to use placeholders
-                valueList += "(\"" + table + "\", " + job.iterationNumber + ", " + job.nodeId + ", \"" + job.stateVariable + "\", " + job.stateValue + "),";
-            }
-
-            valueList = valueList.substring(0, valueList.length()-1);
-
-            String insertStatementString = "INSERT INTO RunResults(RunName, IterationNumber, Node," +
-                                                " StateVariable, Value) VALUES " + valueList + ";";
-
-            insertStatements.execute(insertStatementString);
+        fileOutputs.close();
+    }
 
-            dbConnection.close();
+    /**
+     * Process every job added so far, close every file written to and stop this thread, waiting until that is done.
+     * Lets a run finish cleanly when another one follows it in the same process.
+     */
+    public void close()
+    {
+        addJob(new WriteJob(WriteType.CLOSE, null));
 
-            Date afterTime = new Date();
+        try
+        {
+            join();
+        }
+        catch(InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
 
-            System.out.println("Results saved.");
+    /**
+     * Wait until every job added so far has been processed, and every line written to a file has been flushed.
+     */
+    public void flush()
+    {
+        CountDownLatch flushed = new CountDownLatch(1);
 
-            double timeElapsed = ((double)(afterTime.getTime() - beforeTime.getTime()))/1000;
+        addJob(new WriteJob(flushed));
 
-            System.out.println(String.format("Time Elapsed for Database Writes: %.3f seconds", timeElapsed));
+        try
+        {
+            flushed.await();
         }
-        catch(SQLException ex)
+        catch(InterruptedException ex)
         {
-            printToConsole("Error in writing files to database.");
-
             ex.printStackTrace();
         }
     }
@@ -163,13 +295,28 @@ public class WriterThread extends Thread
         addJob(new WriteJob(WriteType.CONSOLE, output));
     }
 
+    /**
+     * Adds a job to the queue that will write a line to a named file output.
+     * @param outputName Name of the output, such as the name of a state variable, or null for the default output
+     * @param output
+     */
+    public void writeToFile(String outputName, String output)
+    {
+        addJob(new WriteJob(outputName, output));
+    }
+
     public void run()
     {
-        while(true)
+        while(!isStopped)
         {
             try
             {
-                processJob(outputQueue.take());
+                // Wake up in time to flush the files even if no more jobs arrive
+                WriteJob job = outputQueue.poll(fileOutputs.getMillisUntilFlush(), TimeUnit.MILLISECONDS);
+
+                if(job != null) processJob(job);
+
+                fileOutputs.flushIfDue();
             }
             catch(InterruptedException ex)
             {
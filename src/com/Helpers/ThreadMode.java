@@ -0,0 +1,105 @@
+package com.Helpers;
+
+import java.lang.reflect.Method;
+
+/**
+ * Determines what kind of threads the nodes run on. Virtual threads need Java 21 or later, on older versions the
+ * platform threads are used instead.
+ */
+public enum ThreadMode
+{
+    PLATFORM, VIRTUAL;
+
+    /**
+     * Methods of Thread.Builder used to start virtual threads, looked up when the class is loaded so the project
+     * still compiles and runs on versions without virtual threads. Null if they're not available.
+     */
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_START;
+
+    static
+    {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderStart = null;
+
+        try
+        {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+            builderName = builderClass.getMethod("name", String.class);
+
+            builderStart = builderClass.getMethod("start", Runnable.class);
+        }
+        catch(ReflectiveOperationException ex)
+        {
+            ofVirtual = null;
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_START = builderStart;
+    }
+
+    /**
+     * Whether this JVM supports virtual threads.
+     * @return
+     */
+    public static boolean isVirtualSupported()
+    {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Parse a thread mode from the config file, defaulting to platform threads.
+     * @param name
+     * @return ThreadMode
+     */
+    public static ThreadMode fromName(String name)
+    {
+        if(name == null) return PLATFORM;
+
+        ThreadMode mode = valueOf(name.toUpperCase());
+
+        if(mode == VIRTUAL && !isVirtualSupported())
+        {
+            System.out.println("Virtual threads need Java 21 or later, using platform threads instead.");
+
+            return PLATFORM;
+        }
+
+        return mode;
+    }
+
+    /**
+     * Start a thread of this kind that runs the given task.
+     * @param task
+     * @param name Name of the thread
+     * @return Thread that was started
+     */
+    public Thread start(Runnable task, String name)
+    {
+        if(this == VIRTUAL && isVirtualSupported())
+        {
+            try
+            {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+
+                return (Thread)BUILDER_START.invoke(builder, task);
+            }
+            catch(ReflectiveOperationException ex)
+            {
+                ex.printStackTrace();
+            }
+        }
+
+        Thread thread = new Thread(task, name);
+
+        thread.start();
+
+        return thread;
+    }
+}
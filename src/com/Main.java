@@ -1,20 +1,36 @@
 package com;
 
 import com.Coordinator.Launcher;
+import com.GraphLoaders.LoadOptions;
 
 public class Main {
 
     public static void main(String[] args) throws InterruptedException
     {
-        if(args.length == 2)
+        if(args.length >= 2)
         {
-            // 1st argument - Input YAML file, 2nd argument - Maximum number of iterations
-            Launcher.launchNetwork(args[0], Integer.parseInt(args[1]));
+            // 1st argument - Input file, 2nd argument - Maximum number of iterations, followed by options such as
+            // --cluster to pick the cluster to run instead of the one marked in the input file
+            try
+            {
+                LoadOptions options = LoadOptions.parse(args, 2);
+
+                Launcher.launchNetwork(args[0], Integer.parseInt(args[1]), options);
+            }
+            catch(IllegalArgumentException ex)
+            {
+                System.out.println(ex.getMessage());
+
+                System.exit(1);
+            }
         }
         else
         {
-            System.out.println("Need input YAML file that represents the nodes in the network, " +
-                                "followed by maximum number of iterations.");
+            System.out.println("Need input YAML, binary graph, edge list or Matrix Market file that represents the " +
+                                "nodes in the network, followed by maximum number of iterations, and optionally " +
+                                "--cluster followed by the ID of the cluster to run. Edge lists and Matrix Market " +
+                                "files also take --clusters, --assignment, --state, --init, --host and --port, and " +
+                                "--output-dir sets the directory output is written to.");
         }
 
         System.exit(0);
@@ -0,0 +1,462 @@
+package com.MessageHandler;
+
+import com.Helpers.SocketInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread that holds a long-lived connection to another cluster. Nodes add messages to the outbox of the connection
+ * and move on, and this thread writes them to the connection as frames prefixed with their length. Frames are
+ * coalesced and flushed once enough bytes are buffered, once the oldest buffered frame has waited long enough, or
+ * once the outbox is empty.
+ *
+ * Every frame carries a sequence number, and the other cluster acknowledges the highest one it has received. Frames
+ * are kept until they're acknowledged, so if the connection fails they're sent again on a new connection, which
+ * starts with a Hello frame naming this cluster. The other cluster drops any frame it already has, so no message is
+ * lost or delivered twice.
+ */
+public class ClusterConnection extends Thread
+{
+    // TEMP Colors for console output
+    public static final String ANSI_RESET = "\u001B[0m";
+    public static final String ANSI_BOLD = "\u001B[1m";
+    public static final String ANSI_YELLOW = "\u001B[33m";
+
+    /**
+     * Time to wait before trying to open the connection again.
+     */
+    private static final int RETRY_DELAY_MILLIS = 2000;
+
+    /**
+     * Time to wait for an acknowledgement while there is nothing to send, after which the connection is checked
+     * again.
+     */
+    private static final int ACKNOWLEDGEMENT_WAIT_MILLIS = 100;
+
+    /**
+     * Message added to the outbox to tell the thread to flush and close the connection.
+     */
+    private static final Message CLOSE_MESSAGE = new Message();
+
+    /**
+     * ID of the cluster on the other end of the connection.
+     */
+    private String clusterID;
+
+    /**
+     * ID of the cluster the frames are sent from, named in the Hello frame of each connection.
+     */
+    private String selfClusterID;
+
+    /**
+     * Host and port of the other cluster.
+     */
+    private SocketInfo socketInfo;
+
+    /**
+     * Socket of the connection, null until the connection is opened.
+     */
+    private Socket socket;
+
+    /**
+     * Stream that frames are written to.
+     */
+    private DataOutputStream out;
+
+    /**
+     * Stream the acknowledgements of the other cluster are read from.
+     */
+    private DataInputStream in;
+
+    /**
+     * Sequence number of the next frame, starting at 1 since 0 marks the Hello frame.
+     */
+    private long nextSequence = 1;
+
+    /**
+     * Frames written that the other cluster hasn't acknowledged yet, in the order they were written.
+     */
+    private ArrayDeque<byte[]> unacknowledgedFrames = new ArrayDeque<>();
+
+    /**
+     * Codec used to encode the messages sent on this connection.
+     */
+    private MessageCodec codec;
+
+    /**
+     * Messages waiting to be sent to the other cluster.
+     */
+    private LinkedBlockingQueue<Message> outbox;
+
+    /**
+     * Number of buffered bytes after which the connection is flushed.
+     */
+    private int flushBytes;
+
+    /**
+     * Longest time in milliseconds a frame is held back waiting for more frames to coalesce with.
+     */
+    private long flushMillis;
+
+    /**
+     * Number of bytes written since the connection was last flushed.
+     */
+    private int unflushedBytes = 0;
+
+    /**
+     * Time in nanoseconds the oldest frame that hasn't been flushed yet was written.
+     */
+    private long firstUnflushedTime;
+
+    /**
+     * Set once the connection is being closed, after which no more messages are accepted.
+     */
+    private volatile boolean isClosed = false;
+
+    /**
+     * Primary constructor. The connection is opened when the first message is sent.
+     * @param clusterID
+     * @param selfClusterID ID of the cluster the messages are sent from
+     * @param socketInfo
+     * @param flushBytes Number of buffered bytes after which the connection is flushed
+     * @param flushMillis Longest time a frame is held back waiting for more frames
+     */
+    public ClusterConnection(String clusterID, String selfClusterID, SocketInfo socketInfo, int flushBytes,
+                             long flushMillis)
+    {
+        this.clusterID = clusterID;
+
+        this.selfClusterID = selfClusterID;
+
+        this.socketInfo = socketInfo;
+
+        this.flushBytes = flushBytes;
+
+        this.flushMillis = flushMillis;
+
+        this.codec = new MessageCodec();
+
+        this.outbox = new LinkedBlockingQueue<>();
+
+        setName("ClusterConnection-" + clusterID);
+
+        setDaemon(true);
+    }
+
+    /**
+     * Add a message to the outbox of the connection. Never blocks on the network. The message is encoded later by
+     * this thread, so it can't be changed after this.
+     * @param message
+     */
+    public void send(Message message)
+    {
+        message.markSent();
+
+        if(!isClosed) outbox.add(message);
+    }
+
+    /**
+     * Send every message still in the outbox and close the connection, waiting until that is done. Messages sent
+     * after this are dropped.
+     */
+    public void close()
+    {
+        isClosed = true;
+
+        outbox.add(CLOSE_MESSAGE);
+
+        try
+        {
+            join();
+        }
+        catch(InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Run method that drains the outbox and writes the messages to the other cluster.
+     */
+    public void run()
+    {
+        try
+        {
+            while(true)
+            {
+                Message message;
+
+                if(unflushedBytes == 0 && unacknowledgedFrames.isEmpty())
+                {
+                    message = outbox.take();
+                }
+                else if(unflushedBytes == 0)
+                {
+                    message = outbox.poll(ACKNOWLEDGEMENT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                else
+                {
+                    long waitNanos = firstUnflushedTime + TimeUnit.MILLISECONDS.toNanos(flushMillis) - System.nanoTime();
+
+                    message = outbox.poll(Math.max(waitNanos, 0), TimeUnit.NANOSECONDS);
+                }
+
+                if(message == CLOSE_MESSAGE)
+                {
+                    flush();
+
+                    break;
+                }
+
+                if(message != null)
+                {
+                    write(message);
+                }
+
+                // Nothing else may be sent until the other cluster answers, so a failed connection is only noticed here
+                if(message == null && unflushedBytes == 0)
+                {
+                    awaitAcknowledgements();
+                }
+                else if(message == null || unflushedBytes >= flushBytes)
+                {
+                    flush();
+                }
+            }
+        }
+        catch(InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        shutdown();
+    }
+
+    /**
+     * Write a message to the buffered stream of the connection, and keep it until it's acknowledged. If the connection
+     * fails, the message is sent again with the other unacknowledged frames on a new connection.
+     * @param message
+     * @throws InterruptedException
+     */
+    private void write(Message message) throws InterruptedException
+    {
+        byte[] frame = codec.encodeFrame(message, nextSequence++);
+
+        if(socket == null) connect();
+
+        unacknowledgedFrames.add(frame);
+
+        if(unflushedBytes == 0) firstUnflushedTime = System.nanoTime();
+
+        unflushedBytes += frame.length;
+
+        try
+        {
+            out.write(frame);
+        }
+        catch(IOException ex)
+        {
+            reconnect();
+        }
+    }
+
+    /**
+     * Flush the frames buffered since the last flush, and forget the frames the other cluster has acknowledged. If
+     * the connection fails, every unacknowledged frame is sent again on a new connection.
+     * @throws InterruptedException
+     */
+    private void flush() throws InterruptedException
+    {
+        if(unflushedBytes == 0) return;
+
+        unflushedBytes = 0;
+
+        try
+        {
+            out.flush();
+
+            readAcknowledgements();
+        }
+        catch(IOException ex)
+        {
+            reconnect();
+        }
+    }
+
+    /**
+     * Read the acknowledgements that have arrived without waiting for more, and drop the frames they cover.
+     * @throws IOException
+     */
+    private void readAcknowledgements() throws IOException
+    {
+        long acknowledgedSequence = 0;
+
+        while(in.available() >= Long.BYTES)
+        {
+            acknowledgedSequence = in.readLong();
+        }
+
+        while(!unacknowledgedFrames.isEmpty() &&
+              MessageCodec.getSequence(unacknowledgedFrames.peek()) <= acknowledgedSequence)
+        {
+            unacknowledgedFrames.poll();
+        }
+    }
+
+    /**
+     * Wait a short time for an acknowledgement while there is nothing to send, and reconnect if the other cluster
+     * closed the connection.
+     * @throws InterruptedException
+     */
+    private void awaitAcknowledgements() throws InterruptedException
+    {
+        try
+        {
+            // Peek at one byte so a timeout doesn't consume part of an acknowledgement
+            in.mark(1);
+
+            if(in.read() < 0) throw new EOFException();
+
+            in.reset();
+
+            readAcknowledgements();
+        }
+        catch(SocketTimeoutException ex)
+        {
+            // Nothing acknowledged yet, so check again later
+        }
+        catch(IOException ex)
+        {
+            reconnect();
+        }
+    }
+
+    /**
+     * Discard a connection that failed, open it again and send every unacknowledged frame on it.
+     * @throws InterruptedException
+     */
+    private void reconnect() throws InterruptedException
+    {
+        System.out.println(ANSI_BOLD + ANSI_YELLOW + "Lost connection to " + clusterID + ", reconnecting and " +
+                            "sending " + unacknowledgedFrames.size() + " unacknowledged messages again..." +
+                            ANSI_RESET);
+
+        closeSocket();
+
+        connect();
+    }
+
+    /**
+     * Open the connection, waiting for the other cluster if it isn't listening yet. The connection starts with a
+     * Hello frame, followed by every unacknowledged frame.
+     * @throws InterruptedException
+     */
+    private void connect() throws InterruptedException
+    {
+        while(socket == null)
+        {
+            try
+            {
+                socket = new Socket(socketInfo.getIP(), socketInfo.getPort());
+
+                socket.setTcpNoDelay(true);
+
+                socket.setKeepAlive(true);
+
+                socket.setSoTimeout(ACKNOWLEDGEMENT_WAIT_MILLIS);
+
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+                                                                    Math.max(flushBytes, 8192)));
+
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+                Message helloMessage = new Message();
+
+                helloMessage.setType(MessageType.HELLO);
+
+                helloMessage.addData("senderCluster", selfClusterID);
+
+                out.write(codec.encodeFrame(helloMessage, 0));
+
+                for(byte[] frame : unacknowledgedFrames)
+                {
+                    out.write(frame);
+                }
+
+                out.flush();
+
+                unflushedBytes = 0;
+            }
+            catch(IOException ex)
+            {
+                // Not printing stack trace because other server might not be live yet, so keep trying
+                closeSocket();
+
+                System.out.println(ANSI_BOLD + ANSI_YELLOW + "Couldn't open socket to cluster, trying again..." +
+                                    ANSI_RESET);
+
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Close the connection once every message has been written. The acknowledgements still coming are read until
+     * the other cluster closes its end, since closing a socket with unread data resets it and can throw away frames
+     * the other cluster hasn't read yet.
+     */
+    private void shutdown()
+    {
+        try
+        {
+            if(socket != null)
+            {
+                socket.shutdownOutput();
+
+                socket.setSoTimeout(RETRY_DELAY_MILLIS);
+
+                while(in.read() >= 0)
+                {
+                    // Acknowledgements aren't needed anymore
+                }
+            }
+        }
+        catch(IOException ex)
+        {
+            // Other cluster already closed the connection or stopped reading it
+        }
+
+        closeSocket();
+    }
+
+    /**
+     * Close the socket of the connection, ignoring any errors since the connection is being discarded.
+     */
+    private void closeSocket()
+    {
+        try
+        {
+            if(socket != null) socket.close();
+        }
+        catch(IOException ex)
+        {
+            // Connection is being discarded
+        }
+
+        socket = null;
+
+        out = null;
+
+        in = null;
+    }
+}
@@ -0,0 +1,123 @@
+package com.MessageHandler;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free queue of the messages sent to one node. Any number of threads can add messages, but only the node the
+ * mailbox belongs to takes them out. Messages added by the same thread are taken out in the order they were added.
+ * The node only parks when the mailbox is empty, and a sender only unparks it when it is parked.
+ */
+public class Mailbox
+{
+    /**
+     * Link in the chain of messages. The chain always starts with a link whose message was already taken.
+     */
+    private static class Link
+    {
+        /**
+         * Message held by this link, cleared once it is taken so it can be garbage collected.
+         */
+        private Message message;
+
+        /**
+         * Next link in the chain, null until a sender attaches one.
+         */
+        private volatile Link next;
+
+        /**
+         * Primary constructor.
+         * @param message
+         */
+        private Link(Message message)
+        {
+            this.message = message;
+        }
+    }
+
+    /**
+     * Last link in the chain, swapped atomically by senders to claim their place in the mailbox.
+     */
+    private final AtomicReference<Link> tail;
+
+    /**
+     * Link before the next message to take. Only read and written by the node that owns the mailbox.
+     */
+    private Link head;
+
+    /**
+     * Thread of the node while it is parked waiting for a message, null otherwise.
+     */
+    private volatile Thread waitingThread;
+
+    /**
+     * Primary constructor.
+     */
+    public Mailbox()
+    {
+        this.head = new Link(null);
+
+        this.tail = new AtomicReference<>(head);
+    }
+
+    /**
+     * Add a message to the mailbox, waking up the node if it is waiting for one. Never blocks.
+     * @param message
+     */
+    public void add(Message message)
+    {
+        Link link = new Link(message);
+
+        tail.getAndSet(link).next = link;
+
+        Thread waiter = waitingThread;
+
+        if(waiter != null) LockSupport.unpark(waiter);
+    }
+
+    /**
+     * Take the next message out of the mailbox if there is one. Must only be called by the node that owns the
+     * mailbox.
+     * @return Next message, or null if the mailbox is empty
+     */
+    public Message poll()
+    {
+        Link next = head.next;
+
+        if(next == null) return null;
+
+        head = next;
+
+        Message message = next.message;
+
+        next.message = null;
+
+        return message;
+    }
+
+    /**
+     * Take the next message out of the mailbox, parking until one arrives if it is empty. Must only be called by
+     * the node that owns the mailbox.
+     * @return Next message
+     */
+    public Message take()
+    {
+        Message message = poll();
+
+        while(message == null)
+        {
+            waitingThread = Thread.currentThread();
+
+            // Check again after announcing the wait, since a message may have arrived before the sender saw it
+            message = poll();
+
+            if(message == null) LockSupport.park(this);
+
+            waitingThread = null;
+
+            if(message == null) message = poll();
+        }
+
+        return message;
+    }
+}
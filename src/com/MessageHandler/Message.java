@@ -3,34 +3,138 @@ package com.MessageHandler;
 import org.yaml.snakeyaml.Yaml;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
- * Class to represent and handle messages.
+ * Class to represent and handle messages. The fields every message carries (type, sender, receiver and iteration)
+ * are stored as typed header fields, the rest of the contents are stored in a key-value payload.
+ *
+ * Messages to nodes in the same cluster are handed over by reference, so a message can't be changed once it has been
+ * sent. Changing it throws an IllegalStateException. To send it again with other values, change a copy made with
+ * addressedTo, or build a new message.
  */
 public class Message
 {
     /**
-     * Stores the contents of the message in a key-value map.
+     * Keys of the header fields, kept so they can still be read and written through getData and addData.
      */
-    private Map<String,String> messageContents;
+    public static final String TYPE_KEY = "Type";
+    public static final String SENDER_KEY = "senderID";
+    public static final String RECEIVER_KEY = "receiverID";
+    public static final String ITERATION_KEY = "IterationNumber";
+
+    /**
+     * Value of an integer header field that has not been set.
+     */
+    public static final int UNSET = Integer.MIN_VALUE;
+
+    /**
+     * Type of the message, null if not set.
+     */
+    private MessageType type;
+
+    /**
+     * ID of the node that sent the message.
+     */
+    private int senderID = UNSET;
+
+    /**
+     * ID of the node the message is being sent to.
+     */
+    private int receiverID = UNSET;
+
+    /**
+     * Iteration the message was sent from.
+     */
+    private int iterationNumber = UNSET;
+
+    /**
+     * Stores the rest of the contents of the message in a key-value map. Values are either Strings or Doubles.
+     */
+    private Map<String,Object> messageContents;
+
+    /**
+     * True if the payload map is shared with other copies of this message, in which case it is copied before it
+     * is changed.
+     */
+    private boolean contentsShared = false;
+
+    /**
+     * Set once the message is handed to a mailbox or a connection, after which it can't be changed.
+     */
+    private boolean isSent = false;
 
     /**
      * Primary constructor that creates an empty message.
      */
     public Message()
     {
-        messageContents = new HashMap<String,String>();
+        messageContents = new HashMap<>();
     }
 
     /**
-     * Consructor that builds a message from a YAML string representation.
+     * Consructor that builds a message from a YAML string representation. Only used for debugging, messages are
+     * passed between nodes in the binary format of MessageCodec.
      */
     public Message(String message)
     {
+        this();
+
         Yaml yaml = new Yaml();
 
-        messageContents = (Map)yaml.load(message);
+        Map<?,?> contents = (Map<?,?>)yaml.load(message);
+
+        for(Map.Entry<?,?> entry : contents.entrySet())
+        {
+            String key = String.valueOf(entry.getKey());
+
+            if(entry.getValue() instanceof Double)
+            {
+                addData(key, (double)entry.getValue());
+            }
+            else
+            {
+                addData(key, String.valueOf(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Create a copy of this message addressed to a node. The copy shares the payload of this message instead of
+     * copying it, so the same message can be handed to every neighbor of a node without serializing or copying
+     * its contents. Changing the payload of either message afterwards does not affect the other. The copy can be
+     * changed until it is sent, even if this message was already sent.
+     * @param receiverID ID of the node the copy is being sent to
+     * @param iterationNumber Iteration the copy is being sent from
+     * @return Copy of the message
+     */
+    public Message addressedTo(int receiverID, int iterationNumber)
+    {
+        Message copy = new Message(messageContents);
+
+        copy.type = type;
+
+        copy.senderID = senderID;
+
+        copy.receiverID = receiverID;
+
+        copy.iterationNumber = iterationNumber;
+
+        this.contentsShared = true;
+
+        return copy;
+    }
+
+    /**
+     * Constructor for a copy of a message that shares the payload of the original.
+     * @param sharedContents
+     */
+    private Message(Map<String,Object> sharedContents)
+    {
+        messageContents = sharedContents;
+
+        contentsShared = true;
     }
 
     /**
@@ -40,6 +144,61 @@ public class Message
      */
     public void addData(String key, String value)
     {
+        switch (key)
+        {
+            case TYPE_KEY:
+                MessageType messageType = MessageType.fromLabel(value);
+
+                if(messageType != null)
+                {
+                    setType(messageType);
+
+                    return;
+                }
+                break;
+
+            case SENDER_KEY:
+                setSenderID(Integer.parseInt(value));
+                return;
+
+            case RECEIVER_KEY:
+                setReceiverID(Integer.parseInt(value));
+                return;
+
+            case ITERATION_KEY:
+                setIterationNumber(Integer.parseInt(value));
+                return;
+        }
+
+        putContents(key, value);
+    }
+
+    /**
+     * Add a new key-value argument to the message without converting the value to a string.
+     * @param key
+     * @param value
+     */
+    public void addData(String key, double value)
+    {
+        putContents(key, value);
+    }
+
+    /**
+     * Add a value to the payload, copying the payload first if it is shared with another message.
+     * @param key
+     * @param value
+     */
+    private void putContents(String key, Object value)
+    {
+        checkNotSent();
+
+        if(contentsShared)
+        {
+            messageContents = new HashMap<>(messageContents);
+
+            contentsShared = false;
+        }
+
         messageContents.put(key, value);
     }
 
@@ -50,18 +209,163 @@ public class Message
      */
     public String getData(String key)
     {
-        return messageContents.get(key);
+        switch (key)
+        {
+            case TYPE_KEY:
+                if(type != null) return type.getLabel();
+                break;
+
+            case SENDER_KEY:
+                return headerToString(senderID);
+
+            case RECEIVER_KEY:
+                return headerToString(receiverID);
+
+            case ITERATION_KEY:
+                return headerToString(iterationNumber);
+        }
+
+        Object value = messageContents.get(key);
+
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Check if the payload of the message has an argument, without converting its value to a string.
+     * @param key Key of argument
+     * @return True if the argument was added to the message
+     */
+    public boolean hasData(String key)
+    {
+        return messageContents.containsKey(key);
+    }
+
+    /**
+     * Return the value of a numeric argument given its key.
+     * @param key Key of argument
+     * @return Value of argument
+     */
+    public double getDouble(String key)
+    {
+        Object value = messageContents.get(key);
+
+        if(value instanceof Double)
+        {
+            return (Double)value;
+        }
+
+        return Double.parseDouble(getData(key));
+    }
+
+    /**
+     * Getter for the payload of the message, used by MessageCodec.
+     * @return Map of payload values
+     */
+    Map<String,Object> getContents()
+    {
+        return messageContents;
+    }
+
+    public MessageType getType()
+    {
+        return type;
+    }
+
+    public void setType(MessageType type)
+    {
+        checkNotSent();
+
+        this.type = type;
+    }
+
+    public int getSenderID()
+    {
+        return senderID;
+    }
+
+    public void setSenderID(int senderID)
+    {
+        checkNotSent();
+
+        this.senderID = senderID;
+    }
+
+    public int getReceiverID()
+    {
+        return receiverID;
+    }
+
+    public void setReceiverID(int receiverID)
+    {
+        checkNotSent();
+
+        this.receiverID = receiverID;
+    }
+
+    public int getIterationNumber()
+    {
+        return iterationNumber;
+    }
+
+    public void setIterationNumber(int iterationNumber)
+    {
+        checkNotSent();
+
+        this.iterationNumber = iterationNumber;
     }
 
     /**
-     * Converts the message into a YAML string representation.
+     * Mark the message as sent, so it can't be changed anymore. Called by the MessagePasser and the cluster
+     * connections when they take a message.
+     */
+    void markSent()
+    {
+        isSent = true;
+    }
+
+    /**
+     * Make sure the message hasn't been sent before changing it.
+     * @throws IllegalStateException If the message was already sent
+     */
+    private void checkNotSent()
+    {
+        if(isSent)
+        {
+            throw new IllegalStateException("Message was already sent and can't be changed, change a copy from " +
+                                            "addressedTo or build a new message instead.");
+        }
+    }
+
+    /**
+     * Converts an integer header field to its string value.
+     * @param value
+     * @return String value, or null if the field is not set
+     */
+    private static String headerToString(int value)
+    {
+        return value == UNSET ? null : Integer.toString(value);
+    }
+
+    /**
+     * Converts the message into a YAML string representation. Only used for debugging.
      * @return Message string
      */
     public String serializeMessage()
     {
+        Map<String,Object> allContents = new LinkedHashMap<>();
+
+        for(String headerKey : new String[]{TYPE_KEY, SENDER_KEY, RECEIVER_KEY, ITERATION_KEY})
+        {
+            String headerValue = getData(headerKey);
+
+            if(headerValue != null) allContents.put(headerKey, headerValue);
+        }
+
+        allContents.putAll(messageContents);
+
         Yaml yaml = new Yaml();
 
-        String serializedMessage = yaml.dump(messageContents);
+        String serializedMessage = yaml.dump(allContents);
 
         return serializedMessage;
     }
@@ -0,0 +1,307 @@
+package com.MessageHandler;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class to convert messages to and from a compact binary format. An encoder reuses its buffer between messages, so
+ * each thread that sends messages should hold its own MessageCodec.
+ *
+ * Format: a fixed header of type (byte), senderID, receiverID and iteration number (ints), followed by the number of
+ * payload entries (int) and each entry as a key, a value tag (byte) and the typed value. Strings are prefixed with
+ * their length in bytes (int).
+ */
+public class MessageCodec
+{
+    /**
+     * Tags that identify the type of a payload value.
+     */
+    private static final byte DOUBLE_TAG = 1;
+    private static final byte STRING_TAG = 2;
+
+    /**
+     * Value written for the type of a message that has no type.
+     */
+    private static final byte NO_TYPE = -1;
+
+    /**
+     * Size in bytes of the fixed header.
+     */
+    private static final int HEADER_SIZE = 1 + 4 * Integer.BYTES;
+
+    /**
+     * Buffer that messages are encoded into, grown when a message does not fit.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Cache of the encoded bytes of payload keys, since the same few keys are sent in every message.
+     */
+    private Map<String,byte[]> encodedKeys;
+
+    /**
+     * Primary constructor.
+     */
+    public MessageCodec()
+    {
+        this.buffer = ByteBuffer.allocate(256);
+
+        this.encodedKeys = new HashMap<>();
+    }
+
+    /**
+     * Encode a message into the internal buffer of this codec.
+     * @param message
+     * @return Buffer holding the encoded message, only valid until the next call to this codec
+     */
+    public ByteBuffer encodeToBuffer(Message message)
+    {
+        while(true)
+        {
+            try
+            {
+                buffer.clear();
+
+                writeMessage(message, buffer);
+
+                buffer.flip();
+
+                return buffer;
+            }
+            catch(BufferOverflowException ex)
+            {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Encode a message into a new byte array.
+     * @param message
+     * @return Encoded message
+     */
+    public byte[] encode(Message message)
+    {
+        ByteBuffer encodedMessage = encodeToBuffer(message);
+
+        byte[] bytes = new byte[encodedMessage.remaining()];
+
+        encodedMessage.get(bytes);
+
+        return bytes;
+    }
+
+    /**
+     * Encode a message as a frame, which is its length followed by a sequence number and the encoded message. The
+     * length counts the sequence number and the message.
+     * @param message
+     * @param sequence Sequence number of the frame on its connection, or 0 for a frame that isn't counted
+     * @return Bytes of the frame
+     */
+    public byte[] encodeFrame(Message message, long sequence)
+    {
+        ByteBuffer encodedMessage = encodeToBuffer(message);
+
+        int length = Long.BYTES + encodedMessage.remaining();
+
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + length);
+
+        frame.putInt(length);
+
+        frame.putLong(sequence);
+
+        frame.put(encodedMessage);
+
+        return frame.array();
+    }
+
+    /**
+     * Get the sequence number of a frame made by encodeFrame.
+     * @param frame
+     * @return
+     */
+    public static long getSequence(byte[] frame)
+    {
+        return ByteBuffer.wrap(frame).getLong(Integer.BYTES);
+    }
+
+    /**
+     * Read a frame made by encodeFrame from a stream.
+     * @param in
+     * @return Decoded message, without its sequence number
+     * @throws IOException
+     */
+    public static Message readFrame(DataInputStream in) throws IOException
+    {
+        byte[] frame = new byte[in.readInt()];
+
+        in.readFully(frame);
+
+        ByteBuffer source = ByteBuffer.wrap(frame);
+
+        source.position(Long.BYTES);
+
+        return decode(source);
+    }
+
+    /**
+     * Decode a message from a byte array.
+     * @param bytes
+     * @return Decoded message
+     */
+    public static Message decode(byte[] bytes)
+    {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decode a message from the current position of a buffer. The position is moved past the message.
+     * @param source
+     * @return Decoded message
+     */
+    public static Message decode(ByteBuffer source)
+    {
+        Message message = new Message();
+
+        byte typeOrdinal = source.get();
+
+        if(typeOrdinal != NO_TYPE)
+        {
+            message.setType(MessageType.values()[typeOrdinal]);
+        }
+
+        message.setSenderID(source.getInt());
+
+        message.setReceiverID(source.getInt());
+
+        message.setIterationNumber(source.getInt());
+
+        int entryCount = source.getInt();
+
+        Map<String,Object> contents = message.getContents();
+
+        for(int i = 0; i < entryCount; i++)
+        {
+            String key = readString(source);
+
+            byte tag = source.get();
+
+            if(tag == DOUBLE_TAG)
+            {
+                contents.put(key, source.getDouble());
+            }
+            else
+            {
+                contents.put(key, readString(source));
+            }
+        }
+
+        return message;
+    }
+
+    /**
+     * Write the header and payload of a message to a buffer.
+     * @param message
+     * @param target
+     */
+    private void writeMessage(Message message, ByteBuffer target)
+    {
+        if(target.remaining() < HEADER_SIZE) throw new BufferOverflowException();
+
+        MessageType type = message.getType();
+
+        target.put(type == null ? NO_TYPE : (byte)type.ordinal());
+
+        target.putInt(message.getSenderID());
+
+        target.putInt(message.getReceiverID());
+
+        target.putInt(message.getIterationNumber());
+
+        Map<String,Object> contents = message.getContents();
+
+        target.putInt(contents.size());
+
+        for(Map.Entry<String,Object> entry : contents.entrySet())
+        {
+            writeBytes(encodeKey(entry.getKey()), target);
+
+            Object value = entry.getValue();
+
+            if(value instanceof Double)
+            {
+                target.put(DOUBLE_TAG);
+
+                target.putDouble((Double)value);
+            }
+            else
+            {
+                target.put(STRING_TAG);
+
+                writeBytes(value.toString().getBytes(StandardCharsets.UTF_8), target);
+            }
+        }
+    }
+
+    /**
+     * Get the encoded bytes of a payload key, encoding and caching it if it hasn't been seen before.
+     * @param key
+     * @return UTF-8 bytes of the key
+     */
+    private byte[] encodeKey(String key)
+    {
+        byte[] encodedKey = encodedKeys.get(key);
+
+        if(encodedKey == null)
+        {
+            encodedKey = key.getBytes(StandardCharsets.UTF_8);
+
+            encodedKeys.put(key, encodedKey);
+        }
+
+        return encodedKey;
+    }
+
+    /**
+     * Write a length prefixed byte array to a buffer.
+     * @param bytes
+     * @param target
+     */
+    private static void writeBytes(byte[] bytes, ByteBuffer target)
+    {
+        target.putInt(bytes.length);
+
+        target.put(bytes);
+    }
+
+    /**
+     * Read a length prefixed UTF-8 string from a buffer.
+     * @param source
+     * @return String that was read
+     */
+    private static String readString(ByteBuffer source)
+    {
+        int length = source.getInt();
+
+        if(!source.hasArray())
+        {
+            byte[] bytes = new byte[length];
+
+            source.get(bytes);
+
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String value = new String(source.array(), source.arrayOffset() + source.position(), length,
+                                    StandardCharsets.UTF_8);
+
+        source.position(source.position() + length);
+
+        return value;
+    }
+}
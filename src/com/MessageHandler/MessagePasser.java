@@ -1,20 +1,15 @@
 package com.MessageHandler;
 
+import com.Helpers.ConfigReader;
 import com.Helpers.SocketInfo;
-import com.Parser;
+import com.Network.GraphTopology;
 
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.net.Socket;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
 
 /**
- * Class to handle passing messages between different nodes.
+ * Class to handle passing messages between different nodes. Nodes are addressed by their index in the
+ * GraphTopology, so routing a message is a range check and an array lookup.
  */
 public class MessagePasser
 {
@@ -34,242 +29,184 @@ public class MessagePasser
     public Set<String> otherClusters;
 
     /**
-     * A queue of message queues where each node in the cluster has its own message queue.
+     * Structure of the network that nodes are routed by.
      */
-    private LinkedBlockingQueue<String>[] communicationArray;
+    private GraphTopology topology;
 
     /**
-     * A dictionary that contains the index in the communicationArray that corresponds to a given node.
-     * NOTE: Only applies to the nodes in this cluster.
+     * An array of mailboxes where each node in the cluster has its own mailbox, in the order of their indexes.
      */
-    private Map<Integer,Integer> nodeIDToIndexMap;
+    private Mailbox[] communicationArray;
 
     /**
-     * A dictionary that maps a selfID to the ID of the cluster it belongs to.
+     * Index of the first node in this cluster, which has the first mailbox in the communicationArray.
      */
-    private Map<Integer,String> nodeToClusterMap;
+    private int firstLocalIndex;
 
     /**
-     * A dictionary that maps a clusterID wih the port that it listens on.
+     * The connection that messages to each cluster are sent on, by the position of the cluster in the topology.
+     * Null for this cluster.
      */
-    private Map<String,SocketInfo> clusterPortMap;
-
-    /**
-     * A dictionary that maps a clusterID with the Socket that is listening on.
-     */
-    private Map<String,Socket> clusterSocketMap;
-
-    /**
-     * Mutex corresponding to each node to ensure messages are added in the order that they're sent.
-     * TODO: Test if this is neccessary
-     */
-    private Semaphore[] mutexes;
+    private ClusterConnection[] clusterConnections;
 
     /**
      * Primary constructor that builds communication array from nodes in cluster.
-     * @param networkRepresentation Map that represents all the clusters in the network and their nodes
+     * @param topology Structure of the network
+     * @param configValues Configuration values for the application
      */
-    public MessagePasser(Map networkRepresentation)
+    public MessagePasser(GraphTopology topology, ConfigReader configValues)
     {
-        Set<String> otherClusters = new HashSet(networkRepresentation.keySet());
-
-        buildNodeClusterMaps(otherClusters, networkRepresentation);
-
-        this.selfClusterID = Parser.getSelfClusterID(networkRepresentation);
+        this.topology = topology;
 
-        otherClusters.remove(this.selfClusterID);
+        int selfCluster = topology.getSelfCluster();
 
-        this.otherClusters = otherClusters;
+        this.selfClusterID = topology.getClusterID(selfCluster);
 
-        this.socketInfo = Parser.getSocketInfo(this.selfClusterID, networkRepresentation);
+        this.socketInfo = topology.getSocketInfo(selfCluster);
 
-        Map<Integer,Object> nodesRepresentation = Parser.getNodesInCluster(this.selfClusterID, networkRepresentation);
+        buildClusterConnections(configValues);
 
-        buildCommunicationArray(nodesRepresentation);
-
-        buildMutexArray(nodesRepresentation);
-    }
-
-    /**
-     * Build an array of mutexes for each node so the messages are atomically enqueued in the order they are sent.
-     */
-    private void buildMutexArray(Map<Integer, Object> nodesRepresentation)
-    {
-        this.mutexes = new Semaphore[nodesRepresentation.size()];
-
-        for(int i = 0; i < nodesRepresentation.size(); i++)
-        {
-            mutexes[i] = new Semaphore(1);
-        }
+        buildCommunicationArray();
     }
 
     /**
      * Build a communication array that has an entry for every node on this cluster.
-     * @param nodesRepresentation
      */
-    private void buildCommunicationArray(Map<Integer, Object> nodesRepresentation)
+    private void buildCommunicationArray()
     {
-        int index = 0;
+        int selfCluster = topology.getSelfCluster();
 
-        this.communicationArray = new LinkedBlockingQueue[nodesRepresentation.size()];
+        this.firstLocalIndex = topology.getClusterStart(selfCluster);
 
-        this.nodeIDToIndexMap = new HashMap();
+        this.communicationArray = new Mailbox[topology.getClusterEnd(selfCluster) - firstLocalIndex];
 
-        // Initialize communication array with empty queues
-        for(Integer nodeID: nodesRepresentation.keySet())
+        // Initialize communication array with empty mailboxes
+        for(int i = 0; i < communicationArray.length; i++)
         {
-            nodeIDToIndexMap.put(nodeID, index);
-
-            communicationArray[index] = new LinkedBlockingQueue<String>();
-
-            index++;
+            communicationArray[i] = new Mailbox();
         }
     }
 
     /**
-     * Iterate through the network representation and map all the nodes in the network to their corresponding clusters
-     * @param otherClusters
-     * @param networkRepresentation
+     * Open a connection to each of the other clusters in the network.
+     * @param configValues
      */
-    private void buildNodeClusterMaps(Set<String> otherClusters, Map networkRepresentation)
+    private void buildClusterConnections(ConfigReader configValues)
     {
-        this.clusterPortMap = new HashMap();
-
-        this.clusterSocketMap = new HashMap<>();
+        this.otherClusters = new HashSet<>();
 
-        this.nodeToClusterMap = new HashMap();
+        this.clusterConnections = new ClusterConnection[topology.getClusterCount()];
 
-        for(String clusterID : otherClusters)
+        for(int cluster = 0; cluster < topology.getClusterCount(); cluster++)
         {
-            SocketInfo otherClusterSocketInfo = Parser.getSocketInfo(clusterID, networkRepresentation);
+            if(cluster == topology.getSelfCluster()) continue;
 
-            this.clusterPortMap.put(clusterID, otherClusterSocketInfo);
+            String clusterID = topology.getClusterID(cluster);
 
-            Map<Integer,Object> nodeList = Parser.getNodesInCluster(clusterID, networkRepresentation);
+            ClusterConnection connection = new ClusterConnection(clusterID, selfClusterID,
+                                                                 topology.getSocketInfo(cluster),
+                                                                 configValues.getOutboundFlushBytes(),
+                                                                 configValues.getOutboundFlushMillis());
 
-            for(Integer nodeID : nodeList.keySet())
-            {
-                this.nodeToClusterMap.put(nodeID, clusterID);
-            }
-        }
-    }
-
-    private Socket createSocket(SocketInfo socketInfo)
-    {
-        try
-        {
-            return new Socket(socketInfo.getIP(), socketInfo.getPort());
+            connection.start();
 
-        }
-        catch (IOException ex)
-        {
-            //TODO: Not printing stack trace because other server might not be live yet, so keep trying
-            //ex.printStackTrace();
+            this.clusterConnections[cluster] = connection;
 
-            return null;
+            this.otherClusters.add(clusterID);
         }
     }
 
     /**
-     * TODO: Store newly created clusters, don't keep opening and closing
-     * Send a message to another cluster on the network.
+     * Send a message to another cluster on the network. The message is sent by the connection's own thread, so
+     * this never blocks on the network.
      * @param clusterID ID of receiving cluster
      * @param message
      */
     public void sendMessageToCluster(String clusterID, Message message)
     {
-        try
-        {
-            message.addData("senderCluster", selfClusterID);
-
-            String messageString = message.serializeMessage();
-
-            Socket receivingSocket = null;
-
-            while(receivingSocket == null)
-            {
-                receivingSocket = createSocket(clusterPortMap.get(clusterID));
-
-                if(receivingSocket == null)
-                {
-                    // TODO: Text output helper class. TEMP Colors for console output
-                    String ANSI_RESET = "\u001B[0m";
-                    String ANSI_BOLD = "\u001B[1m";
-                    String ANSI_YELLOW = "\u001B[33m";
-
-                    System.out.println(ANSI_BOLD + ANSI_YELLOW + "Couldn't open socket to cluster, trying again..." + ANSI_RESET);
-
-                    Thread.sleep(2000);
-                }
-            }
-
-            DataOutputStream out = new DataOutputStream(receivingSocket.getOutputStream());
+        clusterConnections[topology.getCluster(clusterID)].send(message);
+    }
 
-            out.writeUTF(messageString);
-        }
-        catch (Exception ex)
+    /**
+     * Close the connections to the other clusters once this cluster has finished sending messages.
+     */
+    public void closeConnections()
+    {
+        for(ClusterConnection connection : clusterConnections)
         {
-            ex.printStackTrace();
+            if(connection != null) connection.close();
         }
     }
 
     /**
-     * Send a message to the specified node by adding the message to the appropriate queue.
+     * Send a message to the specified node. Messages to nodes in this cluster are added to the appropriate mailbox
+     * as they are, only messages to nodes in other clusters are serialized. Never blocks.
      * @param receiverID ID of the node that will the message is being sent to
      * @param message Message content string
      */
     public void sendMessage(int receiverID, Message message)
     {
-        try
-        {
-            // TODO: Need mutexes? Test speed with correctness
-            mutexes[receiverID].acquire();
-
-            String receivingCluster = nodeToClusterMap.get(receiverID);
+        int receiverIndex = topology.getIndex(receiverID);
 
-            // If the node is not in this cluster, send a message to the other cluster on the appropriate socket.
-            // Else, to the appropriate entry in the messageQueue.
-            if(otherClusters.contains(receivingCluster))
-            {
-                sendMessageToCluster(receivingCluster, message);
-            }
-            else
-            {
-                String messageString = message.serializeMessage();
+        if(receiverIndex < 0)
+        {
+            System.out.println("Message sent to node " + receiverID + " that isn't in any cluster, dropping it.");
 
-                int receiverIndex = nodeIDToIndexMap.get(receiverID);
+            return;
+        }
 
-                communicationArray[receiverIndex].put(messageString);
-            }
+        sendMessageToIndex(receiverIndex, message);
+    }
 
-            mutexes[receiverID].release();
+    /**
+     * Send a message to the node at the given index of the topology.
+     * @param receiverIndex Index of the node that the message is being sent to
+     * @param message
+     */
+    public void sendMessageToIndex(int receiverIndex, Message message)
+    {
+        // If the node is not in this cluster, send a message to the other cluster on the appropriate connection.
+        // Else, to the appropriate mailbox in the communicationArray.
+        if(topology.isLocal(receiverIndex))
+        {
+            sendMessageToLocalIndex(receiverIndex, message);
         }
-        catch (Exception ex)
+        else
         {
-            ex.printStackTrace();
+            sendMessageToRemoteIndex(receiverIndex, message);
         }
     }
 
     /**
-     * Wait for a message to arrive on the selected node's queue and then retrieve that message.
-     * @param nodeID
-     * @return incomingMessage
+     * Send a message to a node that is known to be in this cluster, such as the neighbor across an edge that isn't
+     * a boundary edge.
+     * @param receiverIndex Index of the node in the topology
+     * @param message
      */
-    public String waitAndRetrieveMessage(int nodeID)
+    public void sendMessageToLocalIndex(int receiverIndex, Message message)
     {
-        String incomingMessage = null;
+        message.markSent();
 
-        try
-        {
-            int index = nodeIDToIndexMap.get(nodeID);
+        communicationArray[receiverIndex - firstLocalIndex].add(message);
+    }
 
-            incomingMessage = communicationArray[index].take();
-        }
-        catch (InterruptedException ex)
-        {
-            ex.printStackTrace();
-        }
+    /**
+     * Send a message to a node that is known to be in another cluster, such as the neighbor across a boundary edge.
+     * @param receiverIndex Index of the node in the topology
+     * @param message
+     */
+    public void sendMessageToRemoteIndex(int receiverIndex, Message message)
+    {
+        clusterConnections[topology.getClusterOf(receiverIndex)].send(message);
+    }
 
-        return  incomingMessage;
+    /**
+     * Get the mailbox of a node in this cluster. Only that node should take messages out of it.
+     * @param nodeIndex Index of the node in the topology
+     * @return Mailbox of the node
+     */
+    public Mailbox getMailbox(int nodeIndex)
+    {
+        return communicationArray[nodeIndex - firstLocalIndex];
     }
 }
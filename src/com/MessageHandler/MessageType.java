@@ -0,0 +1,46 @@
+package com.MessageHandler;
+
+/**
+ * Determines type of message. The label is the value stored under the "Type" key of a message.
+ */
+public enum MessageType
+{
+    START("Start"), RESPONSE("Response"), READY("Ready"), CONVERGENCE("Convergence"), HELLO("Hello");
+
+    /**
+     * Name of the message type as it appears in the message contents.
+     */
+    private final String label;
+
+    MessageType(String label)
+    {
+        this.label = label;
+    }
+
+    /**
+     * Getter for the name of the message type.
+     * @return label
+     */
+    public String getLabel()
+    {
+        return label;
+    }
+
+    /**
+     * Find the message type that corresponds to a given label.
+     * @param label
+     * @return MessageType, or null if the label is not a known type
+     */
+    public static MessageType fromLabel(String label)
+    {
+        for(MessageType type : values())
+        {
+            if(type.label.equals(label))
+            {
+                return type;
+            }
+        }
+
+        return null;
+    }
+}
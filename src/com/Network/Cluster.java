@@ -1,9 +1,12 @@
 package com.Network;
 
+import com.GraphLoaders.GraphInput;
+import com.Helpers.ConfigReader;
 import com.Helpers.OutputWriter.WriterThread;
+import com.Helpers.ThreadMode;
 import com.MessageHandler.Message;
 import com.MessageHandler.MessagePasser;
-import com.Parser;
+import com.MessageHandler.MessageType;
 
 import java.util.*;
 
@@ -28,9 +31,14 @@ public class Cluster
     private int iterationMax;
 
     /**
-     * List of nodes in this cluster.
+     * List of nodes in this cluster, in the order of their indexes in the topology.
      */
-    private Map<Integer,CustomNode> nodeList;
+    private List<CustomNode> nodeList;
+
+    /**
+     * Store that holds the state variables of all the nodes in this cluster.
+     */
+    private StateStore state;
 
     /**
      * MessagePasser for all the nodes in this cluster.
@@ -43,30 +51,112 @@ public class Cluster
     private final WriterThread writer;
 
     /**
-     * Send a start message to all the nodes in this cluster.
+     * Kind of thread the nodes in this cluster run on.
+     */
+    private ThreadMode threadMode;
+
+    /**
+     * Determines if the nodes run on their own threads or in supersteps on a pool of workers.
+     */
+    private ExecutionEngine executionEngine;
+
+    /**
+     * Number of workers that run the nodes when the superstep engine is used.
+     */
+    private int superstepWorkers;
+
+    /**
+     * Determines if the state variables of the nodes are stored off the heap.
+     */
+    private boolean stateOffHeap;
+
+    /**
+     * Number of iterations a node can run ahead of its slowest neighbor, 0 to keep every node in step.
+     */
+    private int maxStaleness;
+
+    /**
+     * Recording policy of each state variable that has its own, by name.
+     */
+    private Map<String,RecordingPolicy> recordingPolicies;
+
+    /**
+     * Recording policy of the state variables that don't have their own.
+     */
+    private RecordingPolicy defaultRecordingPolicy;
+
+    /**
+     * Most detailed level of trace messages the traced nodes print.
+     */
+    private TraceLevel traceLevel;
+
+    /**
+     * IDs of the nodes that print trace messages, or empty if every Nth node does.
      */
-    public void startWork()
+    private Set<Integer> traceNodes;
+
+    /**
+     * Every Nth node prints trace messages when traceNodes is empty.
+     */
+    private int traceNodeInterval;
+
+    /**
+     * Trace messages are only printed in every Nth iteration.
+     */
+    private int traceIterationInterval;
+
+    /**
+     * Number of iterations a node can be ahead of the last iteration the convergence monitor has decided, on top of
+     * the staleness allowed between neighbors.
+     */
+    private static final int CONVERGENCE_LAG = 2;
+
+    /**
+     * Monitor that stops the nodes once the network converges, or null if they always run to iterationMax.
+     */
+    private ConvergenceMonitor convergenceMonitor;
+
+    /**
+     * Metrics the nodes report the end of each iteration to.
+     */
+    private RunMetrics runMetrics;
+
+    /**
+     * Send a start message to all the nodes in this cluster, and wait for them to finish running the algorithm on
+     * the configured engine.
+     * @return Metrics of the run
+     */
+    public RunMetrics startWork()
     {
         Message startMessage = new Message();
 
-        startMessage.addData("Type", "Start");
+        startMessage.setType(MessageType.START);
+
+        startMessage.setIterationNumber(0);
 
-        startMessage.addData("IterationNumber", "0");
+        runMetrics.start();
 
-        for (CustomNode node : nodeList.values())
+        for (CustomNode node : nodeList)
         {
             node.sendMessage(node.getSelfID(), startMessage);
         }
 
-        for(CustomNode node : nodeList.values())
+        if(executionEngine == ExecutionEngine.SUPERSTEP)
         {
-            try
-            {
-                node.join();
-            }
-            catch (InterruptedException ex)
+            new SuperstepEngine(superstepWorkers, iterationMax).run(nodeList);
+        }
+        else
+        {
+            for(CustomNode node : nodeList)
             {
-                ex.printStackTrace();
+                try
+                {
+                    node.join();
+                }
+                catch (InterruptedException ex)
+                {
+                    ex.printStackTrace();
+                }
             }
         }
 
@@ -75,49 +165,163 @@ public class Cluster
         double timeElapsed =  ((double)endTime.getTime() - startTime.getTime())/1000;
 
         writer.printToConsole(String.format("Work complete - Time Elapsed For Algorithm Run: %.3f seconds", timeElapsed));
+
+        long messagesReceived = 0;
+
+        for(CustomNode node : nodeList)
+        {
+            messagesReceived += node.getMessagesReceived();
+        }
+
+        runMetrics.finish(messagesReceived);
+
+        writer.printToConsole(String.format("Ran %d iterations at %.1f iterations/s and %.0f messages/s, iteration " +
+                                            "latency p50 %.3f ms and p99 %.3f ms", runMetrics.getIterations(),
+                                            runMetrics.getIterationsPerSecond(), runMetrics.getMessagesPerSecond(),
+                                            runMetrics.getLatencyPercentile(50),
+                                            runMetrics.getLatencyPercentile(99)));
+
+        return runMetrics;
+    }
+
+    /**
+     * Get the monitor that stops the nodes once the network converges.
+     * @return ConvergenceMonitor, or null if convergence isn't being watched
+     */
+    public ConvergenceMonitor getConvergenceMonitor()
+    {
+        return convergenceMonitor;
+    }
+
+    /**
+     * Check if a node prints trace messages, either because it's listed in the config file or because it's one of
+     * every Nth node in the topology when none are listed.
+     * @param index Index of the node in the topology
+     * @param nodeID
+     * @return
+     */
+    private boolean isTraced(int index, int nodeID)
+    {
+        return traceNodes.isEmpty() ? index % traceNodeInterval == 0 : traceNodes.contains(nodeID);
     }
 
     /**
-     * Iterates through the representation of the nodes and parses the entries to build each node.
-     * @param nodesRepresentation JSON representation
-     * @return List of nodes
+     * Builds a node for every node of this cluster in the topology, after loading their initial state.
+     * @param input Topology and initial state of the network
      */
-    private void buildNodes(Map<Integer,Object> nodesRepresentation)
+    private void buildNodes(GraphInput input)
     {
-        nodeList = new HashMap<>();
+        GraphTopology topology = input.getTopology();
+
+        int selfCluster = topology.getSelfCluster();
+
+        int clusterSize = topology.getClusterEnd(selfCluster) - topology.getClusterStart(selfCluster);
+
+        nodeList = new ArrayList<>(clusterSize);
+
+        runMetrics = new RunMetrics(clusterSize, iterationMax);
+
+        state = new StateStore(topology.getClusterStart(selfCluster), clusterSize, stateOffHeap);
+
+        state.load(input);
 
-        // Parse representation to build each node
-        for(Map.Entry nodeEntry : nodesRepresentation.entrySet())
+        for(int index = topology.getClusterStart(selfCluster); index < topology.getClusterEnd(selfCluster); index++)
         {
-            int nodeID = (Integer)nodeEntry.getKey();
+            CustomNode newNode = new CustomNode(index, topology, messagePasser, writer, state, iterationMax);
 
-            Map nodeDetails = (Map) nodeEntry.getValue();
+            if(convergenceMonitor != null) newNode.setConvergenceMonitor(convergenceMonitor);
+
+            newNode.setRunMetrics(runMetrics);
+
+            // Nodes only track what they've saved when some values are skipped
+            if(!recordingPolicies.isEmpty() || defaultRecordingPolicy != RecordingPolicy.EVERY)
+            {
+                newNode.setRecordingPolicies(recordingPolicies, defaultRecordingPolicy);
+            }
+
+            if(traceLevel != TraceLevel.NONE && isTraced(index, newNode.getSelfID()))
+            {
+                newNode.setTracing(traceLevel, traceIterationInterval);
+            }
 
-            CustomNode newNode = Parser.parseNodeEntry(nodeID, nodeDetails, messagePasser, writer, iterationMax);
+            // Nodes run by the superstep engine don't get threads of their own, and always run in step
+            if(executionEngine == ExecutionEngine.THREADS)
+            {
+                newNode.setMaxStaleness(maxStaleness);
 
-            newNode.start();
+                newNode.start(threadMode);
+            }
 
-            nodeList.put(nodeID, newNode);
+            nodeList.add(newNode);
         }
     }
 
     /**
-     * Primary constructor that uses a graph representation in YAML to build the network of nodes.
-     * @param networkRepresentation
+     * Primary constructor that uses the topology and initial state read from an input file to build the network
+     * of nodes.
+     * @param input Topology and initial state of the network
+     * @param configValues Configuration values for the application
      * @return List of Nodes created.
      */
-    public Cluster(Map networkRepresentation, int iterationMax, MessagePasser messagePasser, WriterThread writer)
+    public Cluster(GraphInput input, int iterationMax, MessagePasser messagePasser, WriterThread writer,
+                   ConfigReader configValues)
     {
-        Map<Integer,Object> nodesRepresentation = Parser.getNodesInSelfCluster(networkRepresentation);
-
         this.iterationMax = iterationMax;
 
+
         this.messagePasser = messagePasser;
 
         this.writer = writer;
 
+        this.threadMode = configValues.getThreadMode();
+
+        this.executionEngine = configValues.getExecutionEngine();
+
+        this.superstepWorkers = configValues.getSuperstepWorkers();
+
+        this.stateOffHeap = configValues.isStateOffHeap();
+
+        this.maxStaleness = configValues.getMaxStaleness();
+
+        this.recordingPolicies = configValues.getRecordingPolicies();
+
+        this.defaultRecordingPolicy = configValues.getDefaultRecordingPolicy();
+
+        this.traceLevel = configValues.getTraceLevel();
+
+        this.traceNodes = configValues.getTraceNodes();
+
+        this.traceNodeInterval = configValues.getTraceNodeInterval();
+
+        this.traceIterationInterval = configValues.getTraceIterationInterval();
+
+        if(configValues.getConvergenceVariable() != null)
+        {
+            GraphTopology topology = input.getTopology();
+
+            int selfCluster = topology.getSelfCluster();
+
+            int clusterSize = topology.getClusterEnd(selfCluster) - topology.getClusterStart(selfCluster);
+
+            // Neighbors can be up to maxStaleness iterations apart, so the lag has to leave room for that too
+            int lag = CONVERGENCE_LAG + (executionEngine == ExecutionEngine.THREADS ? maxStaleness : 0);
+
+            this.convergenceMonitor = new ConvergenceMonitor(configValues.getConvergenceVariable(),
+                                                             configValues.getConvergenceMetric(),
+                                                             configValues.getConvergenceEpsilon(), lag, clusterSize,
+                                                             messagePasser, writer);
+        }
+
         this.startTime = new Date();
 
-        buildNodes(nodesRepresentation);
+        buildNodes(input);
+
+        double buildTime = ((double)new Date().getTime() - startTime.getTime())/1000;
+
+        String engineDescription = executionEngine == ExecutionEngine.SUPERSTEP ? "the superstep engine" :
+                                    threadMode.name().toLowerCase() + " threads";
+
+        writer.printToConsole(String.format("Built %d nodes on %s in %.3f seconds", nodeList.size(),
+                                            engineDescription, buildTime));
     }
 }
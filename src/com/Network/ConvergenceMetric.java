@@ -0,0 +1,11 @@
+package com.Network;
+
+/**
+ * Determines how the convergence of a state variable is measured each iteration. MAX_CHANGE is the largest change of
+ * the variable of any node since the previous iteration, while SPREAD is the difference between the largest and
+ * smallest value of the variable across every node.
+ */
+public enum ConvergenceMetric
+{
+    MAX_CHANGE, SPREAD
+}
@@ -0,0 +1,336 @@
+package com.Network;
+
+import com.Helpers.OutputWriter.WriterThread;
+import com.MessageHandler.Message;
+import com.MessageHandler.MessagePasser;
+import com.MessageHandler.MessageType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAccumulator;
+
+/**
+ * Detects when the network has converged so every cluster can stop before the maximum number of iterations. Each
+ * node reports its value of the watched variable when it finishes an iteration. Once every node in this cluster has
+ * reported an iteration, the cluster's share of the residual is sent to every other cluster, and once the shares of
+ * all the clusters are in, the residual of the iteration is known. Iterations are decided in order, so every
+ * cluster sees the same residuals and picks the same iteration to stop at.
+ *
+ * Nodes may not move more than a lag of iterations past the last decided iteration. When iteration i is the first
+ * with a residual under epsilon, no node has started iteration i + lag yet, so every node stops there and no node is
+ * left waiting for a message that will never be sent.
+ */
+public class ConvergenceMonitor
+{
+    /**
+     * Residual of one iteration, built up from the reports of the nodes in this cluster and the shares of the other
+     * clusters.
+     */
+    private static class IterationResidual
+    {
+        /**
+         * Number of nodes in this cluster that haven't reported the iteration yet.
+         */
+        final AtomicInteger remainingNodes;
+
+        /**
+         * Largest change of a node in this cluster since the previous iteration.
+         */
+        final DoubleAccumulator localMaxChange = new DoubleAccumulator(Math::max, 0);
+
+        /**
+         * Smallest value of a node in this cluster.
+         */
+        final DoubleAccumulator localMin = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+
+        /**
+         * Largest value of a node in this cluster.
+         */
+        final DoubleAccumulator localMax = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+        /**
+         * Number of clusters, including this one, whose share hasn't been combined yet. Guarded by the monitor.
+         */
+        int remainingClusters;
+
+        /**
+         * Largest change of any node in the network, combined from the shares of the clusters.
+         */
+        double maxChange = 0;
+
+        /**
+         * Smallest value of any node in the network.
+         */
+        double min = Double.POSITIVE_INFINITY;
+
+        /**
+         * Largest value of any node in the network.
+         */
+        double max = Double.NEGATIVE_INFINITY;
+
+        /**
+         * Primary constructor.
+         * @param nodeCount Number of nodes in this cluster
+         * @param clusterCount Number of clusters in the network
+         */
+        IterationResidual(int nodeCount, int clusterCount)
+        {
+            this.remainingNodes = new AtomicInteger(nodeCount);
+
+            this.remainingClusters = clusterCount;
+        }
+    }
+
+    /**
+     * Keys of the values in the Convergence messages sent between clusters.
+     */
+    private static final String MAX_CHANGE_KEY = "maxChange";
+    private static final String MIN_KEY = "min";
+    private static final String MAX_KEY = "max";
+
+    /**
+     * Name of the state variable whose convergence is watched.
+     */
+    private final String variable;
+
+    /**
+     * How the residual of an iteration is measured.
+     */
+    private final ConvergenceMetric metric;
+
+    /**
+     * The network has converged once the residual of an iteration is below this.
+     */
+    private final double epsilon;
+
+    /**
+     * Number of iterations a node can be ahead of the last decided iteration.
+     */
+    private final int lag;
+
+    /**
+     * Number of nodes in this cluster.
+     */
+    private final int nodeCount;
+
+    /**
+     * Number of clusters in the network.
+     */
+    private final int clusterCount;
+
+    /**
+     * Used to send this cluster's share of each residual to the other clusters.
+     */
+    private final MessagePasser messagePasser;
+
+    /**
+     * Thread that handles displaying output.
+     */
+    private final WriterThread writer;
+
+    /**
+     * Residuals of the iterations that haven't been decided yet, by iteration.
+     */
+    private final Map<Integer,IterationResidual> residuals = new ConcurrentHashMap<>();
+
+    /**
+     * Last iteration whose residual is known, -1 if none is yet.
+     */
+    private volatile int decidedIteration = -1;
+
+    /**
+     * Iteration every node stops at, or Integer.MAX_VALUE until the network converges.
+     */
+    private volatile int stopIteration = Integer.MAX_VALUE;
+
+    /**
+     * Primary constructor.
+     * @param variable Name of the state variable to watch
+     * @param metric How the residual of an iteration is measured
+     * @param epsilon Residual under which the network has converged
+     * @param lag Number of iterations a node can be ahead of the last decided iteration, at least 1
+     * @param nodeCount Number of nodes in this cluster
+     * @param messagePasser
+     * @param writer
+     */
+    public ConvergenceMonitor(String variable, ConvergenceMetric metric, double epsilon, int lag, int nodeCount,
+                              MessagePasser messagePasser, WriterThread writer)
+    {
+        this.variable = variable;
+
+        this.metric = metric;
+
+        this.epsilon = epsilon;
+
+        this.lag = Math.max(1, lag);
+
+        this.nodeCount = nodeCount;
+
+        this.clusterCount = messagePasser.otherClusters.size() + 1;
+
+        this.messagePasser = messagePasser;
+
+        this.writer = writer;
+    }
+
+    /**
+     * Get the name of the state variable whose convergence is watched.
+     * @return
+     */
+    public String getVariable()
+    {
+        return variable;
+    }
+
+    /**
+     * Get the iteration every node stops at, or Integer.MAX_VALUE if the network hasn't converged.
+     * @return
+     */
+    public int getStopIteration()
+    {
+        return stopIteration;
+    }
+
+    /**
+     * Get the residual of an iteration, creating it if this is the first report or share of it.
+     * @param iteration
+     * @return
+     */
+    private IterationResidual getResidual(int iteration)
+    {
+        return residuals.computeIfAbsent(iteration, key -> new IterationResidual(nodeCount, clusterCount));
+    }
+
+    /**
+     * Report the value of the watched variable of a node at the end of an iteration. Once every node in this cluster
+     * has reported the iteration, the cluster's share is sent to the other clusters.
+     * @param iteration Iteration the node finished
+     * @param value Value of the variable, or NaN if the node doesn't have it
+     * @param previousValue Value of the variable at the end of the previous iteration, or NaN if there was none
+     */
+    public void report(int iteration, double value, double previousValue)
+    {
+        IterationResidual residual = getResidual(iteration);
+
+        if(!Double.isNaN(value))
+        {
+            residual.localMaxChange.accumulate(Double.isNaN(previousValue) ? Double.POSITIVE_INFINITY :
+                                                                             Math.abs(value - previousValue));
+
+            residual.localMin.accumulate(value);
+
+            residual.localMax.accumulate(value);
+        }
+
+        if(residual.remainingNodes.decrementAndGet() != 0) return;
+
+        double maxChange = residual.localMaxChange.get();
+
+        double min = residual.localMin.get();
+
+        double max = residual.localMax.get();
+
+        for(String clusterID : messagePasser.otherClusters)
+        {
+            Message shareMessage = new Message();
+
+            shareMessage.setType(MessageType.CONVERGENCE);
+
+            shareMessage.setIterationNumber(iteration);
+
+            shareMessage.addData(MAX_CHANGE_KEY, maxChange);
+
+            shareMessage.addData(MIN_KEY, min);
+
+            shareMessage.addData(MAX_KEY, max);
+
+            messagePasser.sendMessageToCluster(clusterID, shareMessage);
+        }
+
+        combine(iteration, maxChange, min, max);
+    }
+
+    /**
+     * Combine the share of another cluster into the residual of its iteration.
+     * @param shareMessage Convergence message from the other cluster
+     */
+    public void receiveShare(Message shareMessage)
+    {
+        combine(shareMessage.getIterationNumber(), shareMessage.getDouble(MAX_CHANGE_KEY),
+                shareMessage.getDouble(MIN_KEY), shareMessage.getDouble(MAX_KEY));
+    }
+
+    /**
+     * Combine the share of a cluster into the residual of an iteration, and decide every iteration whose residual is
+     * now complete, in order.
+     * @param iteration
+     * @param maxChange
+     * @param min
+     * @param max
+     */
+    private synchronized void combine(int iteration, double maxChange, double min, double max)
+    {
+        IterationResidual residual = getResidual(iteration);
+
+        residual.maxChange = Math.max(residual.maxChange, maxChange);
+
+        residual.min = Math.min(residual.min, min);
+
+        residual.max = Math.max(residual.max, max);
+
+        residual.remainingClusters--;
+
+        IterationResidual next;
+
+        while((next = residuals.get(decidedIteration + 1)) != null && next.remainingClusters == 0)
+        {
+            int nextIteration = decidedIteration + 1;
+
+            double value = metric == ConvergenceMetric.SPREAD ? next.max - next.min : next.maxChange;
+
+            if(value < epsilon && stopIteration == Integer.MAX_VALUE)
+            {
+                stopIteration = nextIteration + lag;
+
+                writer.printToConsole(String.format("Converged at iteration %d with a %s of %s in %s - stopping " +
+                                                    "after iteration %d", nextIteration,
+                                                    metric.name().toLowerCase(), value, variable,
+                                                    stopIteration - 1));
+            }
+
+            residuals.remove(nextIteration);
+
+            decidedIteration = nextIteration;
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Wait until a node is allowed to start an iteration, which is once the iteration lag iterations before it has
+     * been decided.
+     * @param iteration Iteration the node is about to start
+     */
+    public void awaitIteration(int iteration)
+    {
+        if(decidedIteration >= iteration - lag) return;
+
+        synchronized(this)
+        {
+            while(decidedIteration < iteration - lag)
+            {
+                try
+                {
+                    wait();
+                }
+                catch(InterruptedException ex)
+                {
+                    ex.printStackTrace();
+
+                    return;
+                }
+            }
+        }
+    }
+}
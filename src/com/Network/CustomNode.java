@@ -1,47 +1,42 @@
 package com.Network;
 
 import com.Helpers.OutputWriter.WriterThread;
-import com.MessageHandler.Message;
 import com.MessageHandler.MessagePasser;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-
 /**
  * Class where user defines the behavior of each node.
  */
 public class CustomNode extends GenericNode
 {
-    public CustomNode(int nodeID, MessagePasser messagePasser, WriterThread writer, ArrayList neighbors,
-                      Map data, int iterationMax)
+    public CustomNode(int nodeIndex, GraphTopology topology, MessagePasser messagePasser, WriterThread writer,
+                      StateStore state, int iterationMax)
     {
-        super(nodeID, messagePasser, writer, neighbors, data, iterationMax);
+        super(nodeIndex, topology, messagePasser, writer, state, iterationMax);
     }
 
     /**
      * USER WRITTEN CODE BELOW TO PROCESS MESSAGES AND COMMUNICATE WITH NEIGHBORS
-     * USER NEEDS TO IMPLEMENT ABSTRACT startNode() AND processMessage() METHODs FROM SUPERCLASS
+     * USER NEEDS TO IMPLEMENT ABSTRACT startNode() METHOD FROM SUPERCLASS, AND EITHER processResponse() OR
+     * neighborValueKey() AND computeIteration()
+     * DIAGNOSTICS GO THROUGH trace(), WHICH ONLY BUILDS AND PRINTS THEM WHEN trace_level IN THE CONFIG ASKS FOR THEM
      */
-    private List<Double> responsesReceived = new ArrayList<>();
-
-    private double calculateAverageOfList(List<Double> listOfInts)
+    private double calculateAverage(double[] values)
     {
         double sum = 0;
 
-        for(double item : listOfInts)
+        for(double value : values)
         {
-            sum += item;
+            sum += value;
         }
 
-        return sum/listOfInts.size();
+        return sum/values.length;
     }
 
     private void algorithm2Prologue()
     {
-        double t = (double)getState("t");
+        double t = getDouble("t");
 
-        double x = (double)getState("x");
+        double x = getDouble("x");
 
         //Step 1: t <- t + 1
         t = t + 1;
@@ -51,42 +46,44 @@ public class CustomNode extends GenericNode
         //Step 2: y <- (1/t)(x - {1,3,5,7,9})
         double y = (1./t)*(x - step2Subtractor);
 
-        setState("t", t);
+        setDouble("t", t);
 
-        setState("y", y);
+        setDouble("y", y);
 
         // Step 3: Send x - y to all neighbors
         sendValueToNeighbors("xMinusy", x - y);
     }
 
     @Override
-    protected void processResponse(Message incomingMessage)
+    protected String neighborValueKey()
     {
-        // Step 4: Receive messages from all neighbors
-        Double xMinusy = Double.parseDouble(incomingMessage.getData("xMinusy"));
-
-        responsesReceived.add(xMinusy);
-
-        System.out.println("Iteration " + iterationNumber + " - Node " + selfID + " received " + xMinusy +
-                " from Node " + incomingMessage.getData("senderID"));
+        return "xMinusy";
+    }
 
-        if(responsesReceived.size() >= neighbors.size())
+    @Override
+    protected void computeIteration(double[] neighborValues)
+    {
+        // Step 4: Receive messages from all neighbors
+        if(isTracing(TraceLevel.TRACE))
         {
-            // Step 5: After all messages are received from other nodes, set x to average
-            double newX = calculateAverageOfList(responsesReceived);
+            for(int i = 0; i < neighborValues.length; i++)
+            {
+                printToConsole("Iteration " + iterationNumber + " - Node " + selfID + " received " +
+                        neighborValues[i] + " from Node " + neighbors.get(i));
+            }
+        }
 
-            setState("x", newX);
+        // Step 5: After all messages are received from other nodes, set x to average
+        double newX = calculateAverage(neighborValues);
 
-            System.out.println("Iteration " + iterationNumber + " - Node " + selfID + " updated value of X to " +
-                    newX);
+        setDouble("x", newX);
 
-            responsesReceived.clear();
+        trace(() -> "Iteration " + iterationNumber + " - Node " + selfID + " updated value of X to " + newX);
 
-            goToNextIteration();
+        goToNextIteration();
 
-            // Next iteration
-            algorithm2Prologue();
-        }
+        // Next iteration
+        algorithm2Prologue();
     }
 
     @Override
@@ -0,0 +1,10 @@
+package com.Network;
+
+/**
+ * Determines how the nodes in a cluster are run. THREADS gives every node its own thread that runs freely, while
+ * SUPERSTEP runs every node one iteration at a time on a fixed pool of workers.
+ */
+public enum ExecutionEngine
+{
+    THREADS, SUPERSTEP
+}
@@ -1,90 +1,44 @@
 package com.Network;
 
-import com.Helpers.OutputWriter.WriteType;
-import com.Helpers.OutputWriter.WriteJob;
+import com.Helpers.ThreadMode;
 import com.Helpers.OutputWriter.WriterThread;
+import com.MessageHandler.Mailbox;
 import com.MessageHandler.Message;
 import com.MessageHandler.MessagePasser;
+import com.MessageHandler.MessageType;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
 
 /**
- * Class to represent one node. Listens for and sends messages from/to other nodes while doing work.
+ * Class to represent one node. Listens for and sends messages from/to other nodes while doing work. The node runs on
+ * its own thread, which is either a platform or a virtual thread depending on the ThreadMode, and takes messages
+ * directly out of its mailbox.
  */
-public abstract class GenericNode extends Thread
+public abstract class GenericNode implements Runnable
 {
     /**
-     * Class to take messages from message passer and store them in internal message array by iteration
-     * number of message.
+     * ID of this node.
      */
-    private class Inbox extends Thread
-    {
-        /**
-         * Message Passer that this Inbox listens to for incoming messages.
-         */
-        private MessagePasser messagePasser;
-
-        /**
-         * Internal structure of node that stores all incoming messages by iteration number.
-         */
-        private LinkedBlockingQueue<Message>[] incomingMessageArray;
-
-        /**
-         * Boolean that determines when the inbox thread should terminate.
-         */
-        private boolean isRunning = true;
-
-        /**
-         * Terminate inbox thread.
-         */
-        public void stopInbox()
-        {
-            isRunning = false;
-        }
-
-        /**
-         * Primary constructor.
-         * @param messagePasser
-         * @param incomingMessageArray
-         */
-        public Inbox(MessagePasser messagePasser, LinkedBlockingQueue<Message>[] incomingMessageArray)
-        {
-            this.messagePasser = messagePasser;
-
-            this.incomingMessageArray = incomingMessageArray;
-        }
-
-        /**
-         * Run method of inbox thread. Listens for messages from the message passer and places them in the
-         * appropriate queue that corresponds to the iteration the message was sent from. Messages from future
-         * iterations come in when some nodes are ahead of others and must be tracked so the nodes still behave
-         * synchronously.
-         */
-        public void run()
-        {
-            while(isRunning)
-            {
-                Message incomingMessage = new Message(messagePasser.waitAndRetrieveMessage(selfID));
-
-                int iterationSentFrom = Integer.parseInt(incomingMessage.getData("IterationNumber"));
+    protected int selfID;
 
-                if((iterationSentFrom) < iterationMax)
-                    incomingMessageArray[iterationSentFrom].add(incomingMessage);
-            }
-        }
-    }
+    /**
+     * Index of this node in the topology.
+     */
+    private int selfIndex;
 
     /**
-     * ID of this node.
+     * Structure of the network, shared by all the nodes in the cluster.
      */
-    protected int selfID;
+    private GraphTopology topology;
 
     /**
-     * Dictionary of data in node.
+     * Store that holds the state variables of every node in the cluster.
      */
-    private Map data;
+    private StateStore state;
 
     /**
      * The iteration number that this node is currently on.
@@ -102,9 +56,9 @@ public abstract class GenericNode extends Thread
     private boolean isStarted = false;
 
     /**
-     * List of this node's neighbors.
+     * Read-only list of the IDs of this node's neighbors, backed by the topology.
      */
-    protected ArrayList<Integer> neighbors;
+    protected List<Integer> neighbors;
 
     /**
      * Holds the array of message queues for each node in the network. Nodes receive messages by reading its queue and
@@ -113,23 +67,158 @@ public abstract class GenericNode extends Thread
     private MessagePasser messagePasser;
 
     /**
-     * An array of queues where each queue represents all the messages received by the node from a given iteration.
+     * Number of iterations the window of incoming messages covers before it has to grow.
+     */
+    private static final int INITIAL_WINDOW_SIZE = 4;
+
+    /**
+     * A window of queues where each queue represents all the messages received by the node from a given iteration.
      * It is used to ensure the node only processes messages sent from the current iteration. In the event that
      * a message is sent from a future iteration since another node has gotten ahead, that message is stored for
      * later use.
      */
-    private LinkedBlockingQueue<Message>[] incomingMessageArray;
+    private IterationWindow incomingMessageWindow;
+
+    /**
+     * Number of iterations a neighbor can fall behind this node before the node waits for it. When 0 the node waits
+     * for every neighbor's message from the current iteration, otherwise it runs on the latest message from each
+     * neighbor as long as it is from at most this many iterations ago.
+     */
+    private int maxStaleness = 0;
+
+    /**
+     * Sorted indexes of the distinct neighbors of this node, used to find the slot of the sender of a message. Only
+     * used when maxStaleness is above 0.
+     */
+    private int[] slotNeighborIndexes;
+
+    /**
+     * Slot of the neighbor at the end of each edge of this node, in the order of the edges.
+     */
+    private int[] slotOfEdge;
+
+    /**
+     * Latest message received from the neighbor of each slot.
+     */
+    private Message[] latestMessages;
+
+    /**
+     * Iteration the latest message from the neighbor of each slot was sent from, 0 if none was received yet.
+     */
+    private int[] latestIterations;
+
+    /**
+     * Key of the value that neighbors send each iteration, or null if the node processes its messages one at a time
+     * in processResponse.
+     */
+    private String neighborValueKey;
+
+    /**
+     * Value received from the neighbor at the end of each edge in the current iteration, in the order of neighbors.
+     * The same array is passed to computeIteration every iteration.
+     */
+    private double[] neighborValues;
+
+    /**
+     * Start of the positions of each slot's edges in slotEdges, with one extra entry for the end of the last slot.
+     */
+    private int[] slotEdgeStarts;
+
+    /**
+     * Positions of the edges of each slot in the order of neighbors, grouped by slot.
+     */
+    private int[] slotEdges;
+
+    /**
+     * Number of values received from the neighbor of each slot in the current iteration.
+     */
+    private int[] slotArrivals;
+
+    /**
+     * Number of values received from neighbors in the current iteration.
+     */
+    private int neighborArrivals = 0;
+
+    /**
+     * Monitor that decides when the network has converged, or null if the node always runs to iterationMax.
+     */
+    private ConvergenceMonitor convergenceMonitor;
+
+    /**
+     * ID of the state variable the convergence monitor watches.
+     */
+    private int convergenceVariableID;
+
+    /**
+     * Value of the watched variable when this node finished its previous iteration, NaN before the first.
+     */
+    private double previousConvergenceValue = Double.NaN;
+
+    /**
+     * Metrics of the cluster this node reports the end of each iteration to, or null if the run isn't measured.
+     */
+    private RunMetrics runMetrics;
+
+    /**
+     * Number of messages taken out of the mailbox of this node.
+     */
+    private long messagesReceived = 0;
+
+    /**
+     * Recording policy of each state variable by name, or null if every value this node sets is saved.
+     */
+    private Map<String,RecordingPolicy> recordingPolicies;
+
+    /**
+     * Recording policy of the state variables that aren't in recordingPolicies.
+     */
+    private RecordingPolicy defaultRecordingPolicy;
+
+    /**
+     * Recording policy of each state variable by its ID, null until the variable is first set.
+     */
+    private RecordingPolicy[] variablePolicies;
+
+    /**
+     * Last value of each state variable saved, by its ID.
+     */
+    private double[] lastRecordedValues;
+
+    /**
+     * Iteration the last value of each state variable was saved in, by its ID, or -1 if none was saved yet.
+     */
+    private int[] lastRecordedIterations;
+
+    /**
+     * Iteration each state variable was last set in, by its ID, or -1 if it wasn't set yet.
+     */
+    private int[] lastSetIterations;
+
+    /**
+     * Most detailed level of trace messages this node prints, NONE if the node isn't traced.
+     */
+    private TraceLevel traceLevel = TraceLevel.NONE;
 
     /**
-     * Class that sorts all the incoming messages by iteration number.
+     * Trace messages are only printed in every Nth iteration.
      */
-    private Inbox inbox;
+    private int traceIterationInterval = 1;
+
+    /**
+     * Mailbox that other nodes and clusters add the messages for this node to.
+     */
+    private Mailbox mailbox;
 
     /**
      * Thread that handles displaying output so node can continue processing work.
      */
     private WriterThread writer;
 
+    /**
+     * Thread the node runs on, null until the node is started.
+     */
+    private Thread nodeThread;
+
     /**
      * This function determines what the node will do when it first begins to start processing work. It
      * must be overridden by the user in the CustomNode class.
@@ -137,20 +226,111 @@ public abstract class GenericNode extends Thread
     protected abstract void startNode();
 
     /**
-     * This function determines what the node will do when it receives a message from another node. It must
-     * be overridden by the user in the CustomNode class.
+     * This function determines what the node will do when it receives a message from another node. It is
+     * overridden by the user in the CustomNode class, unless the node uses computeIteration instead, in which case
+     * only messages from nodes that aren't neighbors arrive here.
      * @param incomingMessage
      */
-    protected abstract void processResponse(Message incomingMessage);
+    protected void processResponse(Message incomingMessage)
+    {
+    }
 
     /**
-     * Getter for state variables of this node.
+     * Key of the value each neighbor sends every iteration. Nodes that override this get the values of all their
+     * neighbors at once in computeIteration, instead of one message at a time in processResponse.
+     * @return Key of the value, or null to receive messages in processResponse
+     */
+    protected String neighborValueKey()
+    {
+        return null;
+    }
+
+    /**
+     * This function determines what the node will do once the value of neighborValueKey has arrived from every
+     * neighbor in the current iteration. It is called once per iteration, and is expected to update the state of the
+     * node, call goToNextIteration() and send the values for the next iteration.
+     * @param neighborValues Value from each neighbor, in the same order as neighbors. The array is reused every
+     *                       iteration, so it must not be kept.
+     */
+    protected void computeIteration(double[] neighborValues)
+    {
+    }
+
+    /**
+     * Getter for state variables of this node. Kept for existing algorithms, getDouble avoids boxing the value.
      * @param key
-     * @return
+     * @return Value of the variable, or null if no node has set it. A node that hasn't set a variable other nodes
+     *         have gets NaN.
      */
     protected Object getState(String key)
     {
-        return data.get(key);
+        int variableID = state.findVariableID(key);
+
+        if(variableID < 0) return null;
+
+        return state.get(variableID, selfIndex);
+    }
+
+    /**
+     * Setter for state variables of this node. Kept for existing algorithms, setDouble avoids boxing the value.
+     * State is stored as doubles, so only numbers and strings that hold a number are supported.
+     * @param key
+     * @param value A number, or a string that holds one
+     * @throws IllegalArgumentException If the value isn't a number
+     */
+    protected void setState(String key, Object value)
+    {
+        double doubleValue;
+
+        if(value instanceof Number)
+        {
+            doubleValue = ((Number)value).doubleValue();
+        }
+        else
+        {
+            try
+            {
+                doubleValue = Double.parseDouble(String.valueOf(value));
+            }
+            catch(NumberFormatException ex)
+            {
+                throw new IllegalArgumentException("State variable " + key + " of node " + selfID + " can only " +
+                                                   "hold numbers, but was set to \"" + value + "\".");
+            }
+        }
+
+        setDouble(state.getVariableID(key), doubleValue);
+    }
+
+    /**
+     * Get the ID of a state variable, which can be passed to getDouble and setDouble to skip looking up the
+     * variable by name.
+     * @param key
+     * @return ID of the variable
+     */
+    protected int getStateVariable(String key)
+    {
+        return state.getVariableID(key);
+    }
+
+    /**
+     * Getter for state variables of this node.
+     * @param key
+     * @return Value of the variable, or NaN if the node never set it
+     */
+    protected double getDouble(String key)
+    {
+        return state.get(state.getVariableID(key), selfIndex);
+    }
+
+    /**
+     * Getter for state variables of this node by ID.
+     * @param variableID
+     * @return Value of the variable, or NaN if the node never set it
+     */
+    protected double getDouble(int variableID)
+    {
+        return state.get(variableID, selfIndex);
     }
 
     /**
@@ -158,11 +338,129 @@ public abstract class GenericNode extends Thread
      * @param key
      * @param value
      */
-    protected void setState(String key, Object value)
+    protected void setDouble(String key, double value)
+    {
+        setDouble(state.getVariableID(key), value);
+    }
+
+    /**
+     * Setter for state variables of this node by ID.
+     * @param variableID
+     * @param value
+     */
+    protected void setDouble(int variableID, double value)
+    {
+        state.set(variableID, selfIndex, value);
+
+        if(recordingPolicies == null || shouldRecord(variableID, value))
+        {
+            recordValue(iterationNumber, variableID, value);
+        }
+    }
+
+    /**
+     * Save a value of a state variable.
+     * @param iteration Iteration the value was set in
+     * @param variableID
+     * @param value
+     */
+    private void recordValue(int iteration, int variableID, double value)
+    {
+        writer.recordValue(iteration, selfID, selfIndex, variableID, state.getVariableName(variableID), value);
+    }
+
+    /**
+     * Check the recording policy of a state variable to see if a value just set is saved, so the values that aren't
+     * are never turned into write jobs.
+     * @param variableID
+     * @param value
+     * @return True if the value is saved
+     */
+    private boolean shouldRecord(int variableID, double value)
+    {
+        if(variableID >= variablePolicies.length)
+        {
+            int size = Math.max(variableID + 1, state.getVariableCount());
+
+            int oldSize = variablePolicies.length;
+
+            variablePolicies = Arrays.copyOf(variablePolicies, size);
+
+            lastRecordedValues = Arrays.copyOf(lastRecordedValues, size);
+
+            lastRecordedIterations = Arrays.copyOf(lastRecordedIterations, size);
+
+            lastSetIterations = Arrays.copyOf(lastSetIterations, size);
+
+            Arrays.fill(lastRecordedIterations, oldSize, size, -1);
+
+            Arrays.fill(lastSetIterations, oldSize, size, -1);
+        }
+
+        RecordingPolicy policy = variablePolicies[variableID];
+
+        if(policy == null)
+        {
+            policy = recordingPolicies.getOrDefault(state.getVariableName(variableID), defaultRecordingPolicy);
+
+            variablePolicies[variableID] = policy;
+        }
+
+        lastSetIterations[variableID] = iterationNumber;
+
+        boolean isFirst = lastRecordedIterations[variableID] < 0;
+
+        if(!policy.shouldRecord(iterationNumber, value, lastRecordedValues[variableID], isFirst)) return false;
+
+        lastRecordedValues[variableID] = value;
+
+        lastRecordedIterations[variableID] = iterationNumber;
+
+        return true;
+    }
+
+    /**
+     * Save the last value of each state variable if its recording policy skipped it, so the final state of the node
+     * is always kept.
+     */
+    private void recordLastValues()
+    {
+        if(recordingPolicies == null) return;
+
+        for(int variableID = 0; variableID < variablePolicies.length; variableID++)
+        {
+            RecordingPolicy policy = variablePolicies[variableID];
+
+            if(policy == null || policy.getMode() == RecordingMode.NONE) continue;
+
+            double value = state.get(variableID, selfIndex);
+
+            boolean isRecorded = lastRecordedIterations[variableID] == lastSetIterations[variableID] &&
+                                 Double.compare(lastRecordedValues[variableID], value) == 0;
+
+            if(!isRecorded) recordValue(lastSetIterations[variableID], variableID, value);
+        }
+    }
+
+    /**
+     * Save only some of the values of the state variables, according to the recording policy of each variable. Must
+     * be called before the node is started.
+     * @param recordingPolicies Recording policy of each state variable by name
+     * @param defaultRecordingPolicy Recording policy of the variables that aren't listed
+     */
+    void setRecordingPolicies(Map<String,RecordingPolicy> recordingPolicies, RecordingPolicy defaultRecordingPolicy)
     {
-        data.put(key, value);
+        this.recordingPolicies = recordingPolicies;
+
+        this.defaultRecordingPolicy = defaultRecordingPolicy;
+
+        this.variablePolicies = new RecordingPolicy[0];
+
+        this.lastRecordedValues = new double[0];
 
-        writer.addJob(new WriteJob(WriteType.DATABASE, iterationNumber, selfID, key, Double.parseDouble(value.toString())));
+        this.lastRecordedIterations = new int[0];
+
+        this.lastSetIterations = new int[0];
     }
 
     /**
@@ -173,30 +471,62 @@ public abstract class GenericNode extends Thread
     {
         // TODO: Keep function? Used to print debug messages at the end of an iteration
 
+        if(runMetrics != null) runMetrics.finishIteration(iterationNumber);
+
+        if(convergenceMonitor != null)
+        {
+            double value = state.get(convergenceVariableID, selfIndex);
+
+            convergenceMonitor.report(iterationNumber, value, previousConvergenceValue);
+
+            previousConvergenceValue = value;
+
+            // Don't get too far ahead of the iterations the monitor has decided, so every node can stop together
+            if(iterationNumber + 1 < iterationMax) convergenceMonitor.awaitIteration(iterationNumber + 1);
+        }
+
         iterationNumber++;
     }
 
+    /**
+     * Place a message in the queue that corresponds to the iteration the message was sent from.
+     * @param incomingMessage
+     */
+    private void sortIncomingMessage(Message incomingMessage)
+    {
+        int iterationSentFrom = incomingMessage.getIterationNumber();
+
+        if((iterationSentFrom) < iterationMax)
+            incomingMessageWindow.add(incomingMessage, iterationSentFrom);
+    }
+
     /**
      * Process messages received by node
      * @param incomingMessage
      */
     private void processMessage(Message incomingMessage)
     {
-        String messageType = incomingMessage.getData("Type");
+        MessageType messageType = incomingMessage.getType();
 
         switch (messageType)
         {
-            case "Start":
+            case START:
                 isStarted = true;
 
+                neighborValueKey = neighborValueKey();
+
+                if(neighborValueKey != null) buildNeighborValues();
+
                 goToNextIteration();
 
                 startNode();
 
                 break;
 
-            case "Response":
-                if(isStarted)
+            case RESPONSE:
+                if(isStarted && neighborValueKey != null)
+                    receiveNeighborValue(incomingMessage);
+                else if(isStarted)
                     processResponse(incomingMessage);
                 else
                 {
@@ -208,6 +538,83 @@ public abstract class GenericNode extends Thread
         }
     }
 
+    /**
+     * Set up the arrays the values from neighbors are gathered in for computeIteration.
+     */
+    private void buildNeighborValues()
+    {
+        buildNeighborSlots();
+
+        int slotCount = slotNeighborIndexes.length;
+
+        neighborValues = new double[slotOfEdge.length];
+
+        slotArrivals = new int[slotCount];
+
+        // Group the edges by slot, keeping the order of neighbors within each slot
+        slotEdgeStarts = new int[slotCount + 1];
+
+        for(int slot : slotOfEdge)
+        {
+            slotEdgeStarts[slot + 1]++;
+        }
+
+        for(int slot = 0; slot < slotCount; slot++)
+        {
+            slotEdgeStarts[slot + 1] += slotEdgeStarts[slot];
+        }
+
+        slotEdges = new int[slotOfEdge.length];
+
+        int[] cursors = Arrays.copyOf(slotEdgeStarts, slotCount);
+
+        for(int edge = 0; edge < slotOfEdge.length; edge++)
+        {
+            slotEdges[cursors[slotOfEdge[edge]]++] = edge;
+        }
+    }
+
+    /**
+     * Store the value from a neighbor in its place in neighborValues, and run computeIteration once every neighbor
+     * has sent its value. A neighbor listed more than once fills its places in order. Messages that don't carry the
+     * value, or that come from a node that isn't a neighbor, are passed to processResponse.
+     * @param incomingMessage
+     * @throws IllegalStateException If the neighbor already sent a value for each of its places in this iteration
+     */
+    private void receiveNeighborValue(Message incomingMessage)
+    {
+        int slot = incomingMessage.hasData(neighborValueKey) ? findSlot(incomingMessage) : -1;
+
+        if(slot < 0)
+        {
+            processResponse(incomingMessage);
+
+            return;
+        }
+
+        int position = slotEdgeStarts[slot] + slotArrivals[slot];
+
+        // Every place of the neighbor is filled, so it sent its value more than once in this iteration
+        if(position >= slotEdgeStarts[slot + 1])
+        {
+            throw new IllegalStateException("Node " + selfID + " got more values of " + neighborValueKey +
+                                            " from neighbor " + incomingMessage.getSenderID() + " in iteration " +
+                                            iterationNumber + " than it has edges to it.");
+        }
+
+        slotArrivals[slot]++;
+
+        neighborValues[slotEdges[position]] = incomingMessage.getDouble(neighborValueKey);
+
+        if(++neighborArrivals < neighborValues.length) return;
+
+        neighborArrivals = 0;
+
+        Arrays.fill(slotArrivals, 0);
+
+        computeIteration(neighborValues);
+    }
+
     /**
      * Getter for node ID
      * @return selfID
@@ -219,39 +626,170 @@ public abstract class GenericNode extends Thread
 
     /**
      * Primary constructor for class.
-     * @param nodeID ID of this node
+     * @param nodeIndex Index of this node in the topology
+     * @param topology Structure of the network, which holds the neighbors of this node
      * @param messagePasser Structure used to pass messages between different nodes and clusters
      * @param writer Writer thread that manages saving system output.
-     * @param neighbors List of neighbors of this node.
-     * @param data Map of initial values for state variables.
+     * @param state Store that holds the state variables, already loaded with the initial values of this node.
      * @param iterationMax The maximum number of iterations the node will run for.
      */
-    public GenericNode(int nodeID, MessagePasser messagePasser, WriterThread writer, ArrayList neighbors,
-                       Map data, int iterationMax)
+    public GenericNode(int nodeIndex, GraphTopology topology, MessagePasser messagePasser, WriterThread writer,
+                       StateStore state, int iterationMax)
     {
-        this.selfID = nodeID;
+        this.selfIndex = nodeIndex;
+
+        this.selfID = topology.getNodeID(nodeIndex);
+
+        this.topology = topology;
 
         this.messagePasser = messagePasser;
 
         this.writer = writer;
 
-        this.neighbors = neighbors;
+        this.neighbors = topology.getNeighborIDs(nodeIndex);
 
-        this.data = data;
+        this.state = state;
 
         this.iterationMax = iterationMax;
 
-        // The 0th index of the incomingMessageArray will hold the start message
-        this.incomingMessageArray = new LinkedBlockingQueue[iterationMax + 1];
+        // Iteration 0 of the window will hold the start message
+        this.incomingMessageWindow = new IterationWindow(INITIAL_WINDOW_SIZE);
+
+        this.mailbox = messagePasser.getMailbox(nodeIndex);
+    }
+
+    /**
+     * Let the node run ahead of its neighbors by up to the given number of iterations, using the latest message from
+     * each neighbor instead of waiting for the one from the current iteration. Each iteration the node is given one
+     * message per edge, so algorithms that wait for a response from every neighbor run unchanged. Messages from
+     * nodes that aren't neighbors are processed as soon as they arrive. Must be called before the node is started.
+     * @param maxStaleness Number of iterations a neighbor can fall behind, 0 to wait for every neighbor
+     */
+    void setMaxStaleness(int maxStaleness)
+    {
+        this.maxStaleness = maxStaleness;
+
+        if(maxStaleness <= 0) return;
+
+        buildNeighborSlots();
+
+        latestMessages = new Message[slotNeighborIndexes.length];
+
+        latestIterations = new int[slotNeighborIndexes.length];
+    }
+
+    /**
+     * Give every distinct neighbor of this node a slot, so the sender of a message can be matched to its edges
+     * without a map. Does nothing if the slots were already built.
+     */
+    private void buildNeighborSlots()
+    {
+        if(slotNeighborIndexes != null) return;
+
+        int firstEdge = topology.getFirstEdge(selfIndex);
 
-        for(int i = 0; i < iterationMax+1; i++)
+        int degree = topology.getEndEdge(selfIndex) - firstEdge;
+
+        int[] neighborIndexes = new int[degree];
+
+        for(int edge = 0; edge < degree; edge++)
         {
-            incomingMessageArray[i] = new LinkedBlockingQueue<>();
+            neighborIndexes[edge] = topology.getTarget(firstEdge + edge);
         }
 
-        this.inbox = new Inbox(this.messagePasser, this.incomingMessageArray);
+        Arrays.sort(neighborIndexes);
+
+        int slotCount = 0;
+
+        for(int edge = 0; edge < degree; edge++)
+        {
+            if(edge == 0 || neighborIndexes[edge] != neighborIndexes[edge - 1])
+            {
+                neighborIndexes[slotCount++] = neighborIndexes[edge];
+            }
+        }
+
+        slotNeighborIndexes = Arrays.copyOf(neighborIndexes, slotCount);
+
+        slotOfEdge = new int[degree];
+
+        for(int edge = 0; edge < degree; edge++)
+        {
+            slotOfEdge[edge] = Arrays.binarySearch(slotNeighborIndexes, topology.getTarget(firstEdge + edge));
+        }
+    }
+
+    /**
+     * Find the slot of the neighbor that sent a message.
+     * @param incomingMessage
+     * @return Slot of the sender, or a negative number if the sender isn't a neighbor
+     */
+    private int findSlot(Message incomingMessage)
+    {
+        if(incomingMessage.getSenderID() == Message.UNSET) return -1;
+
+        return Arrays.binarySearch(slotNeighborIndexes, topology.getIndex(incomingMessage.getSenderID()));
+    }
+
+    /**
+     * Report the value of the watched variable to a convergence monitor at the end of every iteration, and stop
+     * once the monitor decides the network has converged. Must be called before the node is started.
+     * @param convergenceMonitor
+     */
+    void setConvergenceMonitor(ConvergenceMonitor convergenceMonitor)
+    {
+        this.convergenceMonitor = convergenceMonitor;
+
+        this.convergenceVariableID = state.getVariableID(convergenceMonitor.getVariable());
+    }
+
+    /**
+     * Report the end of every iteration of this node to the metrics of its cluster. Must be called before the node
+     * is started.
+     * @param runMetrics
+     */
+    void setRunMetrics(RunMetrics runMetrics)
+    {
+        this.runMetrics = runMetrics;
+    }
+
+    /**
+     * Get number of messages taken out of the mailbox of this node so far.
+     * @return
+     */
+    long getMessagesReceived()
+    {
+        return messagesReceived;
+    }
 
-        this.inbox.start();
+    /**
+     * Print the trace messages of this node up to the given level. Must be called before the node is started.
+     * @param traceLevel Most detailed level of messages printed
+     * @param iterationInterval Messages are only printed in every Nth iteration
+     */
+    void setTracing(TraceLevel traceLevel, int iterationInterval)
+    {
+        this.traceLevel = traceLevel;
+
+        this.traceIterationInterval = Math.max(1, iterationInterval);
+    }
+
+    /**
+     * Start the thread of the node.
+     * @param threadMode Kind of thread to run the node on
+     */
+    public void start(ThreadMode threadMode)
+    {
+        nodeThread = threadMode.start(this, "Node-" + selfID);
+    }
+
+    /**
+     * Wait for the node to finish running the algorithm.
+     * @throws InterruptedException
+     */
+    public void join() throws InterruptedException
+    {
+        nodeThread.join();
     }
 
     /**
@@ -261,11 +799,10 @@ public abstract class GenericNode extends Thread
      */
     public void sendMessage(int receiverID, Message message)
     {
-        message.addData("receiverID", Integer.toString(receiverID));
-
-        message.addData("IterationNumber", Integer.toString(iterationNumber));
+        // Messages from the final iteration are never processed by the receiver, so they aren't sent
+        if(isFinished()) return;
 
-        messagePasser.sendMessage(receiverID, message);
+        messagePasser.sendMessage(receiverID, message.addressedTo(receiverID, iterationNumber));
     }
 
     /**
@@ -274,14 +811,29 @@ public abstract class GenericNode extends Thread
      */
     public void sendMessageToNeighbors(Message message)
     {
-        for (int neighbor : neighbors)
+        if(isFinished()) return;
+
+        for(int edge = topology.getFirstEdge(selfIndex); edge < topology.getEndEdge(selfIndex); edge++)
         {
-            sendMessage(neighbor, message);
+            int neighborIndex = topology.getTarget(edge);
+
+            Message neighborMessage = message.addressedTo(topology.getNodeID(neighborIndex), iterationNumber);
+
+            // Only boundary edges need the cluster of the neighbor, every other neighbor has a mailbox here
+            if(topology.isBoundaryEdge(edge))
+            {
+                messagePasser.sendMessageToRemoteIndex(neighborIndex, neighborMessage);
+            }
+            else
+            {
+                messagePasser.sendMessageToLocalIndex(neighborIndex, neighborMessage);
+            }
         }
     }
 
     /**
-     * Send a specific key and value to all neighbors.
+     * Send a specific key and value to all neighbors. Doubles and floats are sent without converting them to a
+     * string, other values are sent as their string so integers still read back without a decimal point.
      * @param key
      * @param value
      */
@@ -289,11 +841,18 @@ public abstract class GenericNode extends Thread
     {
         Message outgoingMessage = new Message();
 
-        outgoingMessage.addData("Type", "Response");
+        outgoingMessage.setType(MessageType.RESPONSE);
 
-        outgoingMessage.addData(key, value.toString());
+        if(value instanceof Double || value instanceof Float)
+        {
+            outgoingMessage.addData(key, ((Number)value).doubleValue());
+        }
+        else
+        {
+            outgoingMessage.addData(key, value.toString());
+        }
 
-        outgoingMessage.addData("senderID", Integer.toString(selfID));
+        outgoingMessage.setSenderID(selfID);
 
         sendMessageToNeighbors(outgoingMessage);
     }
@@ -308,6 +867,160 @@ public abstract class GenericNode extends Thread
         writer.printToConsole(output);
     }
 
+    /**
+     * Helper function for node that will write a line to a file using the writer thread. Each output name is written
+     * to its own file in the output directory, which stays open for the whole run.
+     * @param outputName Name of the output, such as the name of a state variable
+     * @param output
+     */
+    protected void printToFile(String outputName, String output)
+    {
+        writer.writeToFile(outputName, output);
+    }
+
+    /**
+     * Check if trace messages of a level are printed by this node in the current iteration. Diagnostics that take
+     * more than one trace call to build, like a loop over the neighbors, can be skipped entirely when this is false.
+     * @param level
+     * @return
+     */
+    protected final boolean isTracing(TraceLevel level)
+    {
+        return traceLevel != TraceLevel.NONE && level != TraceLevel.NONE && level.compareTo(traceLevel) <= 0 &&
+               iterationNumber % traceIterationInterval == 0;
+    }
+
+    /**
+     * Print a trace message using the writer thread, if messages of its level are printed by this node in the
+     * current iteration. The message is only built when it's printed, so tracing that's turned off costs a check and
+     * nothing else.
+     * @param level
+     * @param message Builds the message, for example () -> "Node " + selfID + " updated X to " + x
+     */
+    protected final void trace(TraceLevel level, Supplier<String> message)
+    {
+        if(isTracing(level)) writer.printToConsole(message.get());
+    }
+
+    /**
+     * Print a trace message at the DEBUG level.
+     * @param message Builds the message
+     */
+    protected final void trace(Supplier<String> message)
+    {
+        trace(TraceLevel.DEBUG, message);
+    }
+
+    /**
+     * Process the next message from the current iteration. Messages are taken out of the mailbox and sorted by the
+     * iteration they were sent from until one from the current iteration is available. Messages from future
+     * iterations come in when some nodes are ahead of others and must be held back so the nodes still behave
+     * synchronously.
+     */
+    private void processNextMessage()
+    {
+        if(maxStaleness > 0)
+        {
+            processNextLatestMessages();
+
+            return;
+        }
+
+        ArrayDeque<Message> currentMessages = incomingMessageWindow.getBucket(iterationNumber);
+
+        Message incomingMessage = currentMessages.poll();
+
+        while(incomingMessage == null)
+        {
+            sortIncomingMessage(mailbox.take());
+
+            messagesReceived++;
+
+            incomingMessage = currentMessages.poll();
+        }
+
+        processMessage(incomingMessage);
+    }
+
+    /**
+     * Process the latest message from every neighbor if none of them is more than maxStaleness iterations behind.
+     * The messages already in the mailbox are taken out first, so older values are only used when nothing newer has
+     * arrived. If a neighbor is still too far behind, wait for the next message.
+     */
+    private void processNextLatestMessages()
+    {
+        Message incomingMessage = mailbox.poll();
+
+        while(incomingMessage != null)
+        {
+            if(!keepLatestMessage(incomingMessage)) return;
+
+            incomingMessage = mailbox.poll();
+        }
+
+        if(isStarted && neighborsAreFresh())
+        {
+            for(int edge = 0; edge < slotOfEdge.length && !isFinished(); edge++)
+            {
+                processMessage(latestMessages[slotOfEdge[edge]]);
+            }
+
+            return;
+        }
+
+        keepLatestMessage(mailbox.take());
+    }
+
+    /**
+     * Keep a message taken out of the mailbox if it is the latest response from its sender, or process it right away
+     * if it isn't a response from a neighbor.
+     * @param incomingMessage
+     * @return False if the message was processed instead of kept
+     */
+    private boolean keepLatestMessage(Message incomingMessage)
+    {
+        messagesReceived++;
+
+        int slot = -1;
+
+        if(incomingMessage.getType() == MessageType.RESPONSE)
+        {
+            slot = findSlot(incomingMessage);
+        }
+
+        if(slot < 0)
+        {
+            processMessage(incomingMessage);
+
+            return false;
+        }
+
+        if(incomingMessage.getIterationNumber() > latestIterations[slot])
+        {
+            latestMessages[slot] = incomingMessage;
+
+            latestIterations[slot] = incomingMessage.getIterationNumber();
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if every neighbor has sent a message from at most maxStaleness iterations before the current iteration.
+     * @return True if the node can run the current iteration
+     */
+    private boolean neighborsAreFresh()
+    {
+        int oldestAllowed = Math.max(1, iterationNumber - maxStaleness);
+
+        for(int iteration : latestIterations)
+        {
+            if(iteration < oldestAllowed) return false;
+        }
+
+        return true;
+    }
+
     /**
      * Run method that processes messages from the message queue of this node that corresponds to the current iteration.
      */
@@ -315,22 +1028,50 @@ public abstract class GenericNode extends Thread
     {
         // TODO: Since iterationNumber is 1-indexed, the loop should only finish when iterationNumber < iterationMax+1.
         // TODO: But looks like iterationNumber isn't incremented in the final iteration.
-        while(iterationNumber < iterationMax)
+        while(!isFinished())
         {
-            try
-            {
-                Message incomingMessage = incomingMessageArray[iterationNumber].take();
-
-                processMessage(incomingMessage);
-            }
-            catch (InterruptedException ex)
-            {
-                ex.printStackTrace();
-            }
+            processNextMessage();
         }
 
-        inbox.stopInbox();
+        finish();
+    }
+
+    /**
+     * Save the values the recording policies skipped at the end of the run, and report that the node finished.
+     */
+    private void finish()
+    {
+        recordLastValues();
 
         printToConsole("Node " + selfID + " finished.");
     }
+
+    /**
+     * Check if the node has run every iteration of the algorithm, or every iteration before the network converged.
+     * @return True if the node is finished
+     */
+    boolean isFinished()
+    {
+        return iterationNumber >= iterationMax ||
+               (convergenceMonitor != null && iterationNumber >= convergenceMonitor.getStopIteration());
+    }
+
+    /**
+     * Process the messages of the current iteration until the node moves on to the next iteration. This is how the
+     * SuperstepEngine runs a node instead of giving it its own thread.
+     */
+    void runIteration()
+    {
+        int currentIteration = iterationNumber;
+
+        while(iterationNumber == currentIteration && !isFinished())
+        {
+            processNextMessage();
+        }
+
+        if(isFinished())
+        {
+            finish();
+        }
+    }
 }
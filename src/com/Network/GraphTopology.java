@@ -0,0 +1,480 @@
+package com.Network;
+
+import com.Helpers.SocketInfo;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only structure of the whole network, shared by every node in a cluster. Node IDs from the input file are
+ * remapped to dense indexes 0..n-1, ordered by cluster and then by node ID, so the nodes of each cluster have a
+ * contiguous range of indexes. Neighbors are stored in compressed sparse row form: the neighbors of the node at
+ * index i are the indexes targets[offsets[i]] to targets[offsets[i+1]-1]. Edges to nodes in another cluster are
+ * flagged so they can be routed without looking up the cluster of the neighbor. The per-node and per-edge data is
+ * held in buffers, which either wrap arrays or are mapped straight from a binary graph file.
+ */
+public class GraphTopology
+{
+    /**
+     * ID of each cluster, in the order their nodes are indexed.
+     */
+    private String[] clusterIDs;
+
+    /**
+     * Host and port of each cluster.
+     */
+    private SocketInfo[] clusterSockets;
+
+    /**
+     * Position of the cluster that runs on this instance in clusterIDs.
+     */
+    private int selfCluster;
+
+    /**
+     * Index of the first node of each cluster, followed by the total number of nodes.
+     */
+    private int[] clusterOffsets;
+
+    /**
+     * Node ID from the input file of the node at each index.
+     */
+    private IntBuffer nodeIDs;
+
+    /**
+     * Node IDs sorted in ascending order, used with sortedIndexes to find the index of a node ID.
+     */
+    private IntBuffer sortedNodeIDs;
+
+    /**
+     * Index of the node with the node ID at the same position in sortedNodeIDs.
+     */
+    private IntBuffer sortedIndexes;
+
+    /**
+     * Position in targets of the first neighbor of each node, followed by the total number of edges.
+     */
+    private IntBuffer offsets;
+
+    /**
+     * Indexes of the neighbors of every node, one node after another.
+     */
+    private IntBuffer targets;
+
+    /**
+     * Bit set of the positions in targets of the edges that lead to a node in another cluster.
+     */
+    private LongBuffer boundaryFlags;
+
+    /**
+     * Constructor used by loaders that already have every part of the topology, such as a mapped binary graph file.
+     * @param clusterIDs ID of each cluster, in the order their nodes are indexed
+     * @param clusterSockets Host and port of each cluster
+     * @param selfCluster Position of the cluster that runs on this instance
+     * @param clusterOffsets Index of the first node of each cluster, followed by the total number of nodes
+     * @param nodeIDs Node ID of the node at each index
+     * @param sortedNodeIDs Node IDs sorted in ascending order
+     * @param sortedIndexes Index of the node with the node ID at the same position in sortedNodeIDs
+     * @param offsets Position in targets of the first neighbor of each node, followed by the total number of edges
+     * @param targets Indexes of the neighbors of every node
+     * @param boundaryFlags Bit set of the edges that lead to a node in another cluster
+     */
+    public GraphTopology(String[] clusterIDs, SocketInfo[] clusterSockets, int selfCluster, int[] clusterOffsets,
+                         IntBuffer nodeIDs, IntBuffer sortedNodeIDs, IntBuffer sortedIndexes, IntBuffer offsets,
+                         IntBuffer targets, LongBuffer boundaryFlags)
+    {
+        this.clusterIDs = clusterIDs;
+
+        this.clusterSockets = clusterSockets;
+
+        this.selfCluster = selfCluster;
+
+        this.clusterOffsets = clusterOffsets;
+
+        this.nodeIDs = nodeIDs;
+
+        this.sortedNodeIDs = sortedNodeIDs;
+
+        this.sortedIndexes = sortedIndexes;
+
+        this.offsets = offsets;
+
+        this.targets = targets;
+
+        this.boundaryFlags = boundaryFlags;
+    }
+
+    /**
+     * Primary constructor. Builds the lookup of node IDs and flags the boundary edges.
+     * @param clusterIDs ID of each cluster, in the order their nodes are indexed
+     * @param clusterSockets Host and port of each cluster
+     * @param selfCluster Position of the cluster that runs on this instance
+     * @param clusterOffsets Index of the first node of each cluster, followed by the total number of nodes
+     * @param nodeIDs Node ID of the node at each index
+     * @param offsets Position in targets of the first neighbor of each node, followed by the total number of edges
+     * @param targets Indexes of the neighbors of every node
+     */
+    public GraphTopology(String[] clusterIDs, SocketInfo[] clusterSockets, int selfCluster, int[] clusterOffsets,
+                         int[] nodeIDs, int[] offsets, int[] targets)
+    {
+        this(clusterIDs, clusterSockets, selfCluster, clusterOffsets, IntBuffer.wrap(nodeIDs), null, null,
+             IntBuffer.wrap(offsets), IntBuffer.wrap(targets), null);
+
+        buildIndexLookup(nodeIDs);
+
+        flagBoundaryEdges(offsets, targets);
+    }
+
+    /**
+     * Sort the node IDs alongside their indexes so the index of a node ID can be found with a binary search.
+     * @param nodeIDs
+     */
+    private void buildIndexLookup(int[] nodeIDs)
+    {
+        long[] pairs = new long[nodeIDs.length];
+
+        for(int index = 0; index < nodeIDs.length; index++)
+        {
+            pairs[index] = ((long)nodeIDs[index] << 32) | index;
+        }
+
+        Arrays.sort(pairs);
+
+        int[] sortedIDArray = new int[pairs.length];
+
+        int[] sortedIndexArray = new int[pairs.length];
+
+        for(int i = 0; i < pairs.length; i++)
+        {
+            sortedIDArray[i] = (int)(pairs[i] >> 32);
+
+            sortedIndexArray[i] = (int)pairs[i];
+        }
+
+        this.sortedNodeIDs = IntBuffer.wrap(sortedIDArray);
+
+        this.sortedIndexes = IntBuffer.wrap(sortedIndexArray);
+    }
+
+    /**
+     * Flag every edge whose two nodes are in different clusters.
+     * @param offsets
+     * @param targets
+     */
+    private void flagBoundaryEdges(int[] offsets, int[] targets)
+    {
+        long[] flags = new long[(targets.length + 63) / 64];
+
+        for(int cluster = 0; cluster < clusterIDs.length; cluster++)
+        {
+            int clusterStart = clusterOffsets[cluster];
+
+            int clusterEnd = clusterOffsets[cluster + 1];
+
+            for(int edge = offsets[clusterStart]; edge < offsets[clusterEnd]; edge++)
+            {
+                if(targets[edge] < clusterStart || targets[edge] >= clusterEnd)
+                {
+                    flags[edge >>> 6] |= 1L << edge;
+                }
+            }
+        }
+
+        this.boundaryFlags = LongBuffer.wrap(flags);
+    }
+
+    /**
+     * Get the number of nodes in the network.
+     * @return Number of nodes
+     */
+    public int getNodeCount()
+    {
+        return nodeIDs.limit();
+    }
+
+    /**
+     * Get the number of edges in the network, counting each direction of an edge separately.
+     * @return Number of edges
+     */
+    public int getEdgeCount()
+    {
+        return targets.limit();
+    }
+
+    /**
+     * Get the node ID from the input file of the node at an index.
+     * @param index
+     * @return Node ID
+     */
+    public int getNodeID(int index)
+    {
+        return nodeIDs.get(index);
+    }
+
+    /**
+     * Get the index of a node ID from the input file.
+     * @param nodeID
+     * @return Index of the node, or -1 if there is no node with that ID
+     */
+    public int getIndex(int nodeID)
+    {
+        int low = 0;
+
+        int high = sortedNodeIDs.limit() - 1;
+
+        while(low <= high)
+        {
+            int middle = (low + high) >>> 1;
+
+            int middleID = sortedNodeIDs.get(middle);
+
+            if(middleID < nodeID) low = middle + 1;
+
+            else if(middleID > nodeID) high = middle - 1;
+
+            else return sortedIndexes.get(middle);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Get the number of clusters in the network.
+     * @return Number of clusters
+     */
+    public int getClusterCount()
+    {
+        return clusterIDs.length;
+    }
+
+    /**
+     * Get the ID of a cluster.
+     * @param cluster Position of the cluster
+     * @return Cluster ID
+     */
+    public String getClusterID(int cluster)
+    {
+        return clusterIDs[cluster];
+    }
+
+    /**
+     * Get the position of a cluster ID.
+     * @param clusterID
+     * @return Position of the cluster, or -1 if there is no cluster with that ID
+     */
+    public int getCluster(String clusterID)
+    {
+        return Arrays.asList(clusterIDs).indexOf(clusterID);
+    }
+
+    /**
+     * Get the host and port of a cluster.
+     * @param cluster Position of the cluster
+     * @return SocketInfo of the cluster
+     */
+    public SocketInfo getSocketInfo(int cluster)
+    {
+        return clusterSockets[cluster];
+    }
+
+    /**
+     * Get the position of the cluster that runs on this instance.
+     * @return Position of the self cluster
+     */
+    public int getSelfCluster()
+    {
+        return selfCluster;
+    }
+
+    /**
+     * Get the index of the first node of a cluster.
+     * @param cluster Position of the cluster
+     * @return Index of the first node
+     */
+    public int getClusterStart(int cluster)
+    {
+        return clusterOffsets[cluster];
+    }
+
+    /**
+     * Get the index after the last node of a cluster.
+     * @param cluster Position of the cluster
+     * @return Index after the last node
+     */
+    public int getClusterEnd(int cluster)
+    {
+        return clusterOffsets[cluster + 1];
+    }
+
+    /**
+     * Get the position of the cluster a node belongs to.
+     * @param index Index of the node
+     * @return Position of the cluster
+     */
+    public int getClusterOf(int index)
+    {
+        int position = Arrays.binarySearch(clusterOffsets, index);
+
+        if(position < 0) return -position - 2;
+
+        // Skip over clusters without any nodes, which share their offset with the next cluster
+        while(clusterOffsets[position + 1] == index) position++;
+
+        return position;
+    }
+
+    /**
+     * Check if a node belongs to the cluster that runs on this instance.
+     * @param index Index of the node
+     * @return True if the node is in the self cluster
+     */
+    public boolean isLocal(int index)
+    {
+        return index >= clusterOffsets[selfCluster] && index < clusterOffsets[selfCluster + 1];
+    }
+
+    /**
+     * Get the position in the edge list of the first neighbor of a node.
+     * @param index Index of the node
+     * @return Position of the first edge
+     */
+    public int getFirstEdge(int index)
+    {
+        return offsets.get(index);
+    }
+
+    /**
+     * Get the position in the edge list after the last neighbor of a node.
+     * @param index Index of the node
+     * @return Position after the last edge
+     */
+    public int getEndEdge(int index)
+    {
+        return offsets.get(index + 1);
+    }
+
+    /**
+     * Get the number of neighbors of a node.
+     * @param index Index of the node
+     * @return Number of neighbors
+     */
+    public int getDegree(int index)
+    {
+        return offsets.get(index + 1) - offsets.get(index);
+    }
+
+    /**
+     * Get the index of the node an edge leads to.
+     * @param edge Position of the edge
+     * @return Index of the neighbor
+     */
+    public int getTarget(int edge)
+    {
+        return targets.get(edge);
+    }
+
+    /**
+     * Check if an edge leads to a node in another cluster.
+     * @param edge Position of the edge
+     * @return True if the neighbor is in another cluster
+     */
+    public boolean isBoundaryEdge(int edge)
+    {
+        return (boundaryFlags.get(edge >>> 6) & (1L << edge)) != 0;
+    }
+
+    /**
+     * Get a read-only view of the node IDs of the neighbors of a node, backed by the edge list so nothing is copied.
+     * @param index Index of the node
+     * @return List of neighbor node IDs
+     */
+    public List<Integer> getNeighborIDs(int index)
+    {
+        int firstEdge = offsets.get(index);
+
+        int degree = offsets.get(index + 1) - firstEdge;
+
+        return new AbstractList<Integer>()
+        {
+            @Override
+            public Integer get(int i)
+            {
+                if(i < 0 || i >= degree) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + degree);
+
+                return nodeIDs.get(targets.get(firstEdge + i));
+            }
+
+            @Override
+            public int size()
+            {
+                return degree;
+            }
+        };
+    }
+
+    /**
+     * Get the clusters' index offsets, which hold the index of the first node of each cluster followed by the total
+     * number of nodes.
+     * @return Copy of the cluster offsets
+     */
+    public int[] getClusterOffsets()
+    {
+        return clusterOffsets.clone();
+    }
+
+    /**
+     * Get a read-only view of the node ID of each index.
+     * @return
+     */
+    public IntBuffer getNodeIDs()
+    {
+        return nodeIDs.asReadOnlyBuffer();
+    }
+
+    /**
+     * Get a read-only view of the node IDs in ascending order.
+     * @return
+     */
+    public IntBuffer getSortedNodeIDs()
+    {
+        return sortedNodeIDs.asReadOnlyBuffer();
+    }
+
+    /**
+     * Get a read-only view of the indexes of the node IDs in ascending order.
+     * @return
+     */
+    public IntBuffer getSortedIndexes()
+    {
+        return sortedIndexes.asReadOnlyBuffer();
+    }
+
+    /**
+     * Get a read-only view of the position of the first edge of each node.
+     * @return
+     */
+    public IntBuffer getOffsets()
+    {
+        return offsets.asReadOnlyBuffer();
+    }
+
+    /**
+     * Get a read-only view of the index each edge leads to.
+     * @return
+     */
+    public IntBuffer getTargets()
+    {
+        return targets.asReadOnlyBuffer();
+    }
+
+    /**
+     * Get a read-only view of the bit set of boundary edges.
+     * @return
+     */
+    public LongBuffer getBoundaryFlags()
+    {
+        return boundaryFlags.asReadOnlyBuffer();
+    }
+}
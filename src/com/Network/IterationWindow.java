@@ -0,0 +1,127 @@
+package com.Network;
+
+import com.MessageHandler.Message;
+
+import java.util.ArrayDeque;
+
+/**
+ * Ring of message queues where each queue holds the messages a node received from one iteration. Since nodes wait
+ * on their neighbors every iteration, a neighbor can only get a few iterations ahead, so only a small window of
+ * iterations starting at the node's current iteration needs a queue. The ring grows if a message arrives from an
+ * iteration past the end of the window, so memory per node doesn't depend on the maximum number of iterations.
+ * Only the node the window belongs to uses it, so it isn't thread safe.
+ */
+public class IterationWindow
+{
+    /**
+     * Queues of the iterations in the window. The queue of an iteration is at index iteration & mask.
+     */
+    private ArrayDeque<Message>[] buckets;
+
+    /**
+     * Mask used to find the index of an iteration's queue. The number of queues is always a power of two.
+     */
+    private int mask;
+
+    /**
+     * First iteration in the window, which is the iteration the node is currently processing.
+     */
+    private int baseIteration = 0;
+
+    /**
+     * Primary constructor.
+     * @param initialSize Number of iterations the window covers before it has to grow
+     */
+    public IterationWindow(int initialSize)
+    {
+        int size = Integer.highestOneBit(Math.max(initialSize, 1) * 2 - 1);
+
+        this.buckets = newBuckets(size);
+
+        for(int i = 0; i < size; i++)
+        {
+            buckets[i] = new ArrayDeque<>();
+        }
+
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add a message to the queue of the iteration it was sent from. Messages from iterations the node has already
+     * moved past are dropped.
+     * @param message
+     * @param iteration Iteration the message was sent from
+     */
+    public void add(Message message, int iteration)
+    {
+        if(iteration < baseIteration) return;
+
+        while(iteration - baseIteration >= buckets.length)
+        {
+            grow();
+        }
+
+        buckets[iteration & mask].add(message);
+    }
+
+    /**
+     * Get the queue of the given iteration, moving the window forward to start at that iteration. Queues of the
+     * iterations before it are cleared so they can be reused for later iterations.
+     * @param iteration Iteration the node is currently processing
+     * @return Queue of messages from that iteration
+     */
+    public ArrayDeque<Message> getBucket(int iteration)
+    {
+        if(iteration > baseIteration)
+        {
+            int iterationsPassed = Math.min(iteration - baseIteration, buckets.length);
+
+            for(int i = 0; i < iterationsPassed; i++)
+            {
+                buckets[(baseIteration + i) & mask].clear();
+            }
+
+            baseIteration = iteration;
+        }
+
+        return buckets[iteration & mask];
+    }
+
+    /**
+     * Make an empty array of queues. Java can't create an array of a generic type, so the raw array is cast here.
+     * @param size
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static ArrayDeque<Message>[] newBuckets(int size)
+    {
+        return (ArrayDeque<Message>[])new ArrayDeque<?>[size];
+    }
+
+    /**
+     * Double the number of iterations the window covers. The queues of the iterations already in the window are
+     * kept, so a queue the node is currently reading from stays valid.
+     */
+    private void grow()
+    {
+        ArrayDeque<Message>[] largerBuckets = newBuckets(buckets.length * 2);
+
+        int largerMask = largerBuckets.length - 1;
+
+        for(int iteration = baseIteration; iteration < baseIteration + largerBuckets.length; iteration++)
+        {
+            if(iteration < baseIteration + buckets.length)
+            {
+                largerBuckets[iteration & largerMask] = buckets[iteration & mask];
+            }
+            else
+            {
+                largerBuckets[iteration & largerMask] = new ArrayDeque<>();
+            }
+        }
+
+        buckets = largerBuckets;
+
+        mask = largerMask;
+    }
+}
@@ -0,0 +1,11 @@
+package com.Network;
+
+/**
+ * Determines which values of a state variable are saved. EVERY saves every value, INTERVAL the values from every
+ * Nth iteration, FIRST_LAST only the first and last values, CHANGE the values that moved more than a threshold away
+ * from the last value saved, and NONE doesn't save the variable at all.
+ */
+public enum RecordingMode
+{
+    EVERY, INTERVAL, FIRST_LAST, CHANGE, NONE
+}
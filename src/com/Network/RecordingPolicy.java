@@ -0,0 +1,138 @@
+package com.Network;
+
+/**
+ * Which values of a state variable a node saves, read from the config file as one of "every", "every N",
+ * "first_last", "change N" or "none". Apart from "none", the last value a node sets is always saved when the node
+ * finishes, so the final state of every run is kept.
+ */
+public class RecordingPolicy
+{
+    /**
+     * Policy that saves every value.
+     */
+    public static final RecordingPolicy EVERY = new RecordingPolicy(RecordingMode.EVERY, 1, 0);
+
+    /**
+     * Which values are saved.
+     */
+    private final RecordingMode mode;
+
+    /**
+     * Number of iterations between saved values when the mode is INTERVAL.
+     */
+    private final int interval;
+
+    /**
+     * Amount a value has to change by to be saved when the mode is CHANGE.
+     */
+    private final double threshold;
+
+    /**
+     * Primary constructor.
+     * @param mode
+     * @param interval Number of iterations between saved values when the mode is INTERVAL
+     * @param threshold Amount a value has to change by to be saved when the mode is CHANGE
+     */
+    public RecordingPolicy(RecordingMode mode, int interval, double threshold)
+    {
+        this.mode = mode;
+
+        this.interval = interval;
+
+        this.threshold = threshold;
+    }
+
+    /**
+     * Parse a policy from the config file.
+     * @param text "every", "every N", "first_last", "change N" or "none"
+     * @return RecordingPolicy
+     * @throws IllegalArgumentException If the policy isn't recognized
+     */
+    public static RecordingPolicy parse(String text)
+    {
+        String[] parts = text.trim().split("\\s+");
+
+        String name = parts[0].toLowerCase();
+
+        if(name.equals("every") && parts.length == 1) return EVERY;
+
+        if(name.equals("every") && parts.length == 2)
+        {
+            int interval = Integer.parseInt(parts[1]);
+
+            if(interval < 1) throw new IllegalArgumentException("Recording interval must be at least 1: " + text);
+
+            return interval == 1 ? EVERY : new RecordingPolicy(RecordingMode.INTERVAL, interval, 0);
+        }
+
+        if(name.equals("first_last") && parts.length == 1)
+        {
+            return new RecordingPolicy(RecordingMode.FIRST_LAST, 1, 0);
+        }
+
+        if(name.equals("change") && parts.length == 2)
+        {
+            return new RecordingPolicy(RecordingMode.CHANGE, 1, Double.parseDouble(parts[1]));
+        }
+
+        if(name.equals("none") && parts.length == 1) return new RecordingPolicy(RecordingMode.NONE, 1, 0);
+
+        throw new IllegalArgumentException("Unknown recording policy: " + text);
+    }
+
+    /**
+     * Check if a value set by a node is saved.
+     * @param iterationNumber Iteration the value was set in
+     * @param value
+     * @param lastRecordedValue Last value of the variable the node saved
+     * @param isFirst True if the node hasn't saved a value of the variable yet
+     * @return
+     */
+    public boolean shouldRecord(int iterationNumber, double value, double lastRecordedValue, boolean isFirst)
+    {
+        switch(mode)
+        {
+            case INTERVAL:
+                return iterationNumber % interval == 0;
+
+            case FIRST_LAST:
+                return isFirst;
+
+            case CHANGE:
+                return isFirst || Math.abs(value - lastRecordedValue) > threshold;
+
+            case NONE:
+                return false;
+
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Get which values are saved.
+     * @return
+     */
+    public RecordingMode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Get number of iterations between saved values when the mode is INTERVAL.
+     * @return
+     */
+    public int getInterval()
+    {
+        return interval;
+    }
+
+    /**
+     * Get amount a value has to change by to be saved when the mode is CHANGE.
+     * @return
+     */
+    public double getThreshold()
+    {
+        return threshold;
+    }
+}
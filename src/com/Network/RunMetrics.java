@@ -0,0 +1,304 @@
+package com.Network;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Measures how fast a cluster runs the algorithm. Each node reports when it finishes an iteration, and the time the
+ * last node of the cluster finishes it is taken as the end of that iteration, so the latency of an iteration is the
+ * time between the end of the previous one and its own. Once the run is over, the metrics of the clusters of a network
+ * can be combined into the metrics of the whole network.
+ */
+public class RunMetrics
+{
+    /**
+     * Number of iterations that are counted in each chunk.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Counts of the nodes that have finished each of CHUNK_SIZE iterations, and the time each one ended. Chunks are
+     * only made once an iteration in them is reached, so a high iterationMax doesn't cost anything up front.
+     */
+    private static class IterationChunk
+    {
+        /**
+         * Number of nodes that have finished each iteration.
+         */
+        final AtomicIntegerArray finishedNodes = new AtomicIntegerArray(CHUNK_SIZE);
+
+        /**
+         * Time in nanoseconds the last node finished each iteration, written by that node.
+         */
+        final long[] endTimes = new long[CHUNK_SIZE];
+    }
+
+    /**
+     * Number of nodes the metrics cover.
+     */
+    private int nodeCount;
+
+    /**
+     * Chunks of the iterations being counted, null once the run is over.
+     */
+    private AtomicReferenceArray<IterationChunk> chunks;
+
+    /**
+     * Time in nanoseconds the nodes were sent their start messages.
+     */
+    private long startTime;
+
+    /**
+     * Time in nanoseconds every node had finished.
+     */
+    private long endTime;
+
+    /**
+     * Time in nanoseconds each iteration that every node finished ended, in order.
+     */
+    private long[] iterationEndTimes = new long[0];
+
+    /**
+     * Number of messages taken out of the mailboxes of the nodes.
+     */
+    private long messagesReceived;
+
+    /**
+     * Constructor for the metrics of a cluster that is about to run.
+     * @param nodeCount Number of nodes in the cluster
+     * @param iterationMax
+     */
+    RunMetrics(int nodeCount, int iterationMax)
+    {
+        this.nodeCount = nodeCount;
+
+        this.chunks = new AtomicReferenceArray<>((int)(((long)iterationMax + CHUNK_SIZE - 1) / CHUNK_SIZE));
+    }
+
+    /**
+     * Constructor for metrics that are already complete.
+     * @param nodeCount
+     * @param startTime
+     * @param endTime
+     * @param iterationEndTimes
+     * @param messagesReceived
+     */
+    private RunMetrics(int nodeCount, long startTime, long endTime, long[] iterationEndTimes, long messagesReceived)
+    {
+        this.nodeCount = nodeCount;
+
+        this.startTime = startTime;
+
+        this.endTime = endTime;
+
+        this.iterationEndTimes = iterationEndTimes;
+
+        this.messagesReceived = messagesReceived;
+    }
+
+    /**
+     * Mark the start of the run, just before the nodes are sent their start messages.
+     */
+    void start()
+    {
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Report that a node finished an iteration. The node that finishes it last records the time it ended.
+     * @param iteration
+     */
+    void finishIteration(int iteration)
+    {
+        int chunkIndex = iteration / CHUNK_SIZE;
+
+        if(chunkIndex >= chunks.length()) return;
+
+        IterationChunk chunk = chunks.get(chunkIndex);
+
+        if(chunk == null)
+        {
+            chunks.compareAndSet(chunkIndex, null, new IterationChunk());
+
+            chunk = chunks.get(chunkIndex);
+        }
+
+        int position = iteration % CHUNK_SIZE;
+
+        if(chunk.finishedNodes.incrementAndGet(position) == nodeCount) chunk.endTimes[position] = System.nanoTime();
+    }
+
+    /**
+     * Mark the end of the run, once every node has finished, and keep the end times of the iterations every node
+     * finished.
+     * @param messagesReceived Number of messages the nodes took out of their mailboxes
+     */
+    void finish(long messagesReceived)
+    {
+        endTime = System.nanoTime();
+
+        this.messagesReceived = messagesReceived;
+
+        long[] endTimes = new long[chunks.length() * CHUNK_SIZE];
+
+        int iterations = 0;
+
+        for(int chunkIndex = 0; chunkIndex < chunks.length(); chunkIndex++)
+        {
+            IterationChunk chunk = chunks.get(chunkIndex);
+
+            if(chunk == null) break;
+
+            int position = 0;
+
+            while(position < CHUNK_SIZE && chunk.finishedNodes.get(position) == nodeCount)
+            {
+                endTimes[iterations++] = chunk.endTimes[position++];
+            }
+
+            if(position < CHUNK_SIZE) break;
+        }
+
+        iterationEndTimes = Arrays.copyOf(endTimes, iterations);
+
+        chunks = null;
+    }
+
+    /**
+     * Combine the metrics of the clusters of a network that ran in the same process. The network starts when the
+     * first cluster starts, and an iteration ends once it has ended in every cluster.
+     * @param clusterMetrics Metrics of every cluster of the network
+     * @return Metrics of the whole network
+     */
+    public static RunMetrics combine(List<RunMetrics> clusterMetrics)
+    {
+        int nodeCount = 0;
+
+        long startTime = Long.MAX_VALUE;
+
+        long endTime = Long.MIN_VALUE;
+
+        int iterations = Integer.MAX_VALUE;
+
+        long messagesReceived = 0;
+
+        for(RunMetrics metrics : clusterMetrics)
+        {
+            nodeCount += metrics.nodeCount;
+
+            startTime = Math.min(startTime, metrics.startTime);
+
+            endTime = Math.max(endTime, metrics.endTime);
+
+            iterations = Math.min(iterations, metrics.iterationEndTimes.length);
+
+            messagesReceived += metrics.messagesReceived;
+        }
+
+        long[] iterationEndTimes = new long[clusterMetrics.isEmpty() ? 0 : iterations];
+
+        Arrays.fill(iterationEndTimes, Long.MIN_VALUE);
+
+        for(RunMetrics metrics : clusterMetrics)
+        {
+            for(int iteration = 0; iteration < iterationEndTimes.length; iteration++)
+            {
+                iterationEndTimes[iteration] = Math.max(iterationEndTimes[iteration],
+                                                        metrics.iterationEndTimes[iteration]);
+            }
+        }
+
+        return new RunMetrics(nodeCount, startTime, endTime, iterationEndTimes, messagesReceived);
+    }
+
+    /**
+     * Get number of nodes the metrics cover.
+     * @return
+     */
+    public int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Get number of iterations every node finished.
+     * @return
+     */
+    public int getIterations()
+    {
+        return iterationEndTimes.length;
+    }
+
+    /**
+     * Get number of messages the nodes took out of their mailboxes.
+     * @return
+     */
+    public long getMessagesReceived()
+    {
+        return messagesReceived;
+    }
+
+    /**
+     * Get time from the start of the run until every node had finished.
+     * @return Time in seconds
+     */
+    public double getElapsedSeconds()
+    {
+        return (endTime - startTime) / 1e9;
+    }
+
+    /**
+     * Get number of iterations finished per second over the whole run.
+     * @return
+     */
+    public double getIterationsPerSecond()
+    {
+        return getIterations() / getElapsedSeconds();
+    }
+
+    /**
+     * Get number of messages received per second over the whole run.
+     * @return
+     */
+    public double getMessagesPerSecond()
+    {
+        return messagesReceived / getElapsedSeconds();
+    }
+
+    /**
+     * Get latency of every iteration every node finished, which is the time between the end of the previous
+     * iteration and its own end. The first iteration only starts the nodes, so it's left out.
+     * @return Latencies in nanoseconds, in the order of the iterations
+     */
+    public long[] getIterationLatencies()
+    {
+        long[] latencies = new long[Math.max(0, iterationEndTimes.length - 1)];
+
+        for(int iteration = 1; iteration < iterationEndTimes.length; iteration++)
+        {
+            latencies[iteration - 1] = iterationEndTimes[iteration] - iterationEndTimes[iteration - 1];
+        }
+
+        return latencies;
+    }
+
+    /**
+     * Get a percentile of the iteration latencies, by the nearest rank.
+     * @param percentile Between 0 and 100
+     * @return Latency in milliseconds, or NaN if no iteration after the first was finished
+     */
+    public double getLatencyPercentile(double percentile)
+    {
+        long[] latencies = getIterationLatencies();
+
+        if(latencies.length == 0) return Double.NaN;
+
+        Arrays.sort(latencies);
+
+        int rank = (int)Math.ceil(percentile / 100 * latencies.length);
+
+        return latencies[Math.min(Math.max(rank, 1), latencies.length) - 1] / 1e6;
+    }
+}
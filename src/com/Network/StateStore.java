@@ -0,0 +1,265 @@
+package com.Network;
+
+import com.GraphLoaders.GraphInput;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the state variables of every node in a cluster as columns of doubles, one column per variable, indexed by
+ * the index of the node in the topology. Each node only writes its own entry of each column, so no locking is needed
+ * to read and write values. Columns are either arrays on the heap or direct buffers off the heap. A node that never
+ * set a variable has NaN as its value.
+ */
+public class StateStore
+{
+    /**
+     * Column of the values of one variable for every node in the cluster.
+     */
+    private static abstract class Column
+    {
+        /**
+         * Get the value of a node.
+         * @param position Position of the node in the cluster
+         * @return
+         */
+        abstract double get(int position);
+
+        /**
+         * Set the value of a node.
+         * @param position Position of the node in the cluster
+         * @param value
+         */
+        abstract void set(int position, double value);
+    }
+
+    /**
+     * Column stored in an array on the heap.
+     */
+    private static class HeapColumn extends Column
+    {
+        /**
+         * Values of the column.
+         */
+        private final double[] values;
+
+        /**
+         * Primary constructor.
+         * @param size Number of nodes in the column
+         */
+        HeapColumn(int size)
+        {
+            this.values = new double[size];
+
+            Arrays.fill(values, Double.NaN);
+        }
+
+        double get(int position)
+        {
+            return values[position];
+        }
+
+        void set(int position, double value)
+        {
+            values[position] = value;
+        }
+    }
+
+    /**
+     * Column stored in a direct buffer off the heap, so large clusters don't add to garbage collection work.
+     */
+    private static class OffHeapColumn extends Column
+    {
+        /**
+         * Values of the column.
+         */
+        private final DoubleBuffer values;
+
+        /**
+         * Primary constructor.
+         * @param size Number of nodes in the column
+         */
+        OffHeapColumn(int size)
+        {
+            this.values = ByteBuffer.allocateDirect(size * Double.BYTES).order(ByteOrder.nativeOrder())
+                                    .asDoubleBuffer();
+
+            for(int position = 0; position < size; position++)
+            {
+                values.put(position, Double.NaN);
+            }
+        }
+
+        double get(int position)
+        {
+            return values.get(position);
+        }
+
+        void set(int position, double value)
+        {
+            values.put(position, value);
+        }
+    }
+
+    /**
+     * Index of the first node of the cluster, which has the first entry of every column.
+     */
+    private final int firstIndex;
+
+    /**
+     * Number of nodes in the cluster.
+     */
+    private final int size;
+
+    /**
+     * Determines if new columns are stored off the heap.
+     */
+    private final boolean offHeap;
+
+    /**
+     * Dictionary that maps the name of each variable to the position of its column.
+     */
+    private final Map<String,Integer> variableIDs = new ConcurrentHashMap<>();
+
+    /**
+     * Names of the variables, by the position of their column.
+     */
+    private volatile String[] variableNames = new String[0];
+
+    /**
+     * Columns of the variables. Replaced by a larger array when a variable is added, so readers never need a lock.
+     */
+    private volatile Column[] columns = new Column[0];
+
+    /**
+     * Primary constructor.
+     * @param firstIndex Index of the first node of the cluster
+     * @param size Number of nodes in the cluster
+     * @param offHeap Store the columns in direct buffers instead of arrays
+     */
+    public StateStore(int firstIndex, int size, boolean offHeap)
+    {
+        this.firstIndex = firstIndex;
+
+        this.size = size;
+
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Get the ID of a variable, adding a column for it if it doesn't have one yet. The ID can be used to read and
+     * write the variable without looking up its name every time.
+     * @param name
+     * @return ID of the variable
+     */
+    public int getVariableID(String name)
+    {
+        Integer variableID = variableIDs.get(name);
+
+        return variableID != null ? variableID : addVariable(name);
+    }
+
+    /**
+     * Get the ID of a variable without adding it.
+     * @param name
+     * @return ID of the variable, or -1 if no node has set it
+     */
+    public int findVariableID(String name)
+    {
+        Integer variableID = variableIDs.get(name);
+
+        return variableID != null ? variableID : -1;
+    }
+
+    /**
+     * Get the name of a variable.
+     * @param variableID
+     * @return
+     */
+    public String getVariableName(int variableID)
+    {
+        return variableNames[variableID];
+    }
+
+    /**
+     * Get the number of variables in the store.
+     * @return
+     */
+    public int getVariableCount()
+    {
+        return columns.length;
+    }
+
+    /**
+     * Add a column for a new variable.
+     * @param name
+     * @return ID of the variable
+     */
+    private synchronized int addVariable(String name)
+    {
+        Integer variableID = variableIDs.get(name);
+
+        if(variableID != null) return variableID;
+
+        Column[] largerColumns = Arrays.copyOf(columns, columns.length + 1);
+
+        largerColumns[columns.length] = offHeap ? new OffHeapColumn(size) : new HeapColumn(size);
+
+        String[] largerNames = Arrays.copyOf(variableNames, variableNames.length + 1);
+
+        largerNames[variableNames.length] = name;
+
+        variableNames = largerNames;
+
+        columns = largerColumns;
+
+        variableIDs.put(name, columns.length - 1);
+
+        return columns.length - 1;
+    }
+
+    /**
+     * Get the value of a variable for a node.
+     * @param variableID
+     * @param nodeIndex Index of the node in the topology
+     * @return Value, or NaN if the node never set it
+     */
+    public double get(int variableID, int nodeIndex)
+    {
+        return columns[variableID].get(nodeIndex - firstIndex);
+    }
+
+    /**
+     * Set the value of a variable for a node.
+     * @param variableID
+     * @param nodeIndex Index of the node in the topology
+     * @param value
+     */
+    public void set(int variableID, int nodeIndex, double value)
+    {
+        columns[variableID].set(nodeIndex - firstIndex, value);
+    }
+
+    /**
+     * Load the initial values of the state variables of the nodes in the cluster from the input.
+     * @param input
+     */
+    public void load(GraphInput input)
+    {
+        for(int variable = 0; variable < input.getVariableCount(); variable++)
+        {
+            int variableID = getVariableID(input.getVariableName(variable));
+
+            DoubleBuffer initialValues = input.getInitialValues(variable);
+
+            for(int position = 0; position < size; position++)
+            {
+                columns[variableID].set(position, initialValues.get(firstIndex + position));
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.Network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Runs the nodes of a cluster as a series of supersteps, following the bulk synchronous model. A fixed pool of
+ * workers each own a share of the nodes. In superstep t every worker runs iteration t of each of its nodes, which
+ * sends out the messages for iteration t+1, and then waits at a barrier for the other workers before moving on to
+ * the next superstep.
+ */
+public class SuperstepEngine
+{
+    /**
+     * Thread that runs its share of the nodes through every superstep.
+     */
+    private class Worker extends Thread
+    {
+        /**
+         * Nodes this worker is responsible for.
+         */
+        private List<GenericNode> nodes = new ArrayList<>();
+
+        /**
+         * Primary constructor.
+         * @param workerID
+         */
+        public Worker(int workerID)
+        {
+            setName("Worker-" + workerID);
+        }
+
+        /**
+         * Run method that runs one iteration of every node per superstep.
+         */
+        public void run()
+        {
+            try
+            {
+                for(int superstep = 0; superstep < iterationMax; superstep++)
+                {
+                    for(GenericNode node : nodes)
+                    {
+                        if(!node.isFinished()) node.runIteration();
+                    }
+
+                    barrier.await();
+
+                    // Every node stops early once the network converges
+                    if(allFinished) break;
+                }
+            }
+            catch(InterruptedException | BrokenBarrierException ex)
+            {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Number of workers that run the nodes.
+     */
+    private int workerCount;
+
+    /**
+     * The maximum number of iterations the nodes should run the algorithm for.
+     */
+    private int iterationMax;
+
+    /**
+     * Barrier the workers wait at between supersteps.
+     */
+    private CyclicBarrier barrier;
+
+    /**
+     * Determines if every node has finished, checked by the barrier at the end of each superstep so all the
+     * workers see the same value.
+     */
+    private volatile boolean allFinished = false;
+
+    /**
+     * Primary constructor.
+     * @param workerCount Number of workers, the number of cores is used if this is 0 or less
+     * @param iterationMax
+     */
+    public SuperstepEngine(int workerCount, int iterationMax)
+    {
+        this.workerCount = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+
+        this.iterationMax = iterationMax;
+    }
+
+    /**
+     * Check if every node has finished running the algorithm.
+     * @param nodes
+     * @return
+     */
+    private static boolean allNodesFinished(Collection<? extends GenericNode> nodes)
+    {
+        for(GenericNode node : nodes)
+        {
+            if(!node.isFinished()) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Run the nodes through every superstep and wait until they have all finished.
+     * @param nodes Nodes to run, which must already have their start messages
+     */
+    public void run(Collection<? extends GenericNode> nodes)
+    {
+        int activeWorkers = Math.max(1, Math.min(workerCount, nodes.size()));
+
+        barrier = new CyclicBarrier(activeWorkers, () -> allFinished = allNodesFinished(nodes));
+
+        List<Worker> workers = new ArrayList<>();
+
+        for(int i = 0; i < activeWorkers; i++)
+        {
+            workers.add(new Worker(i));
+        }
+
+        // Deal the nodes out to the workers
+        int nodeIndex = 0;
+
+        for(GenericNode node : nodes)
+        {
+            workers.get(nodeIndex % activeWorkers).nodes.add(node);
+
+            nodeIndex++;
+        }
+
+        for(Worker worker : workers)
+        {
+            worker.start();
+        }
+
+        for(Worker worker : workers)
+        {
+            try
+            {
+                worker.join();
+            }
+            catch(InterruptedException ex)
+            {
+                ex.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.Network;
+
+/**
+ * Determines which trace messages from the nodes are printed. NONE prints nothing, INFO only the messages about the
+ * overall progress of a node, DEBUG also the messages from each iteration, and TRACE every message, including the
+ * ones about each message received. Each level prints the messages of the levels before it.
+ */
+public enum TraceLevel
+{
+    NONE, INFO, DEBUG, TRACE
+}
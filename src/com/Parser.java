@@ -1,15 +1,19 @@
 package com;
 
+import com.GraphLoaders.GraphInput;
 import com.Helpers.SocketInfo;
-import com.Helpers.OutputWriter.WriterThread;
-import com.MessageHandler.MessagePasser;
-import com.Network.CustomNode;
+import com.Network.GraphTopology;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -75,11 +79,11 @@ public class Parser
      * @param networkRepresentation
      * @return clusterID
      */
-    public static String getSelfClusterID(Map<String,Map> networkRepresentation)
+    public static String getSelfClusterID(Map<String,?> networkRepresentation)
     {
-        for(Map.Entry<String,Map> clusterEntry: networkRepresentation.entrySet())
+        for(Map.Entry<String,?> clusterEntry: networkRepresentation.entrySet())
         {
-            Map clusterInfo = clusterEntry.getValue();
+            Map<?,?> clusterInfo = (Map<?,?>)clusterEntry.getValue();
 
             boolean isSelfCluster = (boolean)clusterInfo.get("isSelfCluster");
 
@@ -126,21 +130,166 @@ public class Parser
     }
 
     /**
-     * Parse node entry to build Node structure.
-     * @param nodeId
-     * @param nodeDetails
-     * @param messagePasser
-     * @return CustomNode that was built
+     * Build the topology and initial state of the whole network from its representation. Nodes are indexed cluster by
+     * cluster, with the clusters sorted by ID and the nodes of each cluster sorted by node ID. The neighbor lists and
+     * data are removed from the representation once they are copied, since nothing else reads them.
+     * @param networkRepresentation
+     * @param selfClusterID ID of the cluster that runs on this instance, or null to use the one marked in the
+     *                      representation
+     * @return GraphInput of the network
+     */
+    public static GraphInput buildGraphInput(Map<String,Object> networkRepresentation, String selfClusterID)
+    {
+        List<String> clusterIDs = new ArrayList<>(networkRepresentation.keySet());
+
+        Collections.sort(clusterIDs);
+
+        if(selfClusterID == null) selfClusterID = getSelfClusterID(networkRepresentation);
+
+        if(!clusterIDs.contains(selfClusterID))
+        {
+            throw new IllegalArgumentException("Cluster " + selfClusterID + " isn't in the input file.");
+        }
+
+        SocketInfo[] clusterSockets = new SocketInfo[clusterIDs.size()];
+
+        int[] clusterOffsets = new int[clusterIDs.size() + 1];
+
+        List<Integer> nodeIDs = new ArrayList<>();
+
+        int edgeCount = 0;
+
+        for(int cluster = 0; cluster < clusterIDs.size(); cluster++)
+        {
+            String clusterID = clusterIDs.get(cluster);
+
+            clusterSockets[cluster] = getSocketInfo(clusterID, networkRepresentation);
+
+            Map<?,?> nodeList = getNodesInCluster(clusterID, networkRepresentation);
+
+            List<Integer> clusterNodeIDs = new ArrayList<>();
+
+            for(Object nodeID : nodeList.keySet())
+            {
+                clusterNodeIDs.add((Integer)nodeID);
+            }
+
+            Collections.sort(clusterNodeIDs);
+
+            nodeIDs.addAll(clusterNodeIDs);
+
+            clusterOffsets[cluster + 1] = nodeIDs.size();
+
+            for(Object nodeDetails : nodeList.values())
+            {
+                edgeCount += ((List<?>)((Map<?,?>)nodeDetails).get("neighbors")).size();
+            }
+        }
+
+        Map<Integer,Integer> nodeIndexes = new HashMap<>();
+
+        int[] nodeIDArray = new int[nodeIDs.size()];
+
+        for(int index = 0; index < nodeIDArray.length; index++)
+        {
+            nodeIDArray[index] = nodeIDs.get(index);
+
+            nodeIndexes.put(nodeIDArray[index], index);
+        }
+
+        int[] offsets = new int[nodeIDArray.length + 1];
+
+        int[] targets = new int[edgeCount];
+
+        Map<String,double[]> initialValues = new LinkedHashMap<>();
+
+        int edge = 0;
+
+        for(int cluster = 0; cluster < clusterIDs.size(); cluster++)
+        {
+            Map<?,?> nodeList = getNodesInCluster(clusterIDs.get(cluster), networkRepresentation);
+
+            for(int index = clusterOffsets[cluster]; index < clusterOffsets[cluster + 1]; index++)
+            {
+                Map<?,?> nodeDetails = (Map<?,?>)nodeList.get(nodeIDArray[index]);
+
+                offsets[index] = edge;
+
+                for(Object neighbor : (List<?>)nodeDetails.remove("neighbors"))
+                {
+                    Integer neighborIndex = nodeIndexes.get(neighbor);
+
+                    if(neighborIndex == null)
+                    {
+                        throw new IllegalArgumentException("Node " + nodeIDArray[index] + " has neighbor " +
+                                                           neighbor + " that isn't in any cluster.");
+                    }
+
+                    targets[edge++] = neighborIndex;
+                }
+
+                parseNodeData(nodeIDArray[index], index, (Map<?,?>)nodeDetails.remove("data"), nodeIDArray.length,
+                              initialValues);
+            }
+        }
+
+        offsets[nodeIDArray.length] = edge;
+
+        GraphTopology topology = new GraphTopology(clusterIDs.toArray(new String[0]), clusterSockets,
+                                                   clusterIDs.indexOf(selfClusterID), clusterOffsets, nodeIDArray,
+                                                   offsets, targets);
+
+        DoubleBuffer[] initialValueColumns = new DoubleBuffer[initialValues.size()];
+
+        int variable = 0;
+
+        for(double[] column : initialValues.values())
+        {
+            initialValueColumns[variable++] = DoubleBuffer.wrap(column);
+        }
+
+        return new GraphInput(topology, initialValues.keySet().toArray(new String[0]), initialValueColumns);
+    }
+
+    /**
+     * Copy the initial values of a node's state variables into the columns of initial values, adding a column for
+     * any variable that doesn't have one yet. Values that aren't numbers are skipped since every variable is stored
+     * as a double.
+     * @param nodeID
+     * @param nodeIndex Index of the node in the topology
+     * @param data Map of initial values for state variables
+     * @param nodeCount Number of nodes in the network, which is the length of each column
+     * @param initialValues Columns of initial values by variable name
      */
-    public static CustomNode parseNodeEntry(int nodeId, Map nodeDetails, MessagePasser messagePasser, WriterThread writer, int iterationMax)
+    private static void parseNodeData(int nodeID, int nodeIndex, Map<?,?> data, int nodeCount,
+                                      Map<String,double[]> initialValues)
     {
-        ArrayList neighbors = (ArrayList)nodeDetails.get("neighbors");
+        if(data == null) return;
+
+        for(Map.Entry<?,?> variable : data.entrySet())
+        {
+            String name = variable.getKey().toString();
 
-        Map data = (Map)nodeDetails.get("data");
+            if(!(variable.getValue() instanceof Number))
+            {
+                System.out.println("State variable " + name + " of node " + nodeID + " isn't a number, skipping it.");
+
+                continue;
+            }
 
-        CustomNode newNode = new CustomNode(nodeId, messagePasser, writer, neighbors, data, iterationMax);
+            double[] column = initialValues.get(name);
+
+            if(column == null)
+            {
+                column = new double[nodeCount];
 
-        return newNode;
+                Arrays.fill(column, Double.NaN);
+
+                initialValues.put(name, column);
+            }
+
+            column[nodeIndex] = ((Number)variable.getValue()).doubleValue();
+        }
     }
 
     /**